@@ -0,0 +1,277 @@
+package src;
+
+import java.lang.invoke.VarHandle;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Protocol;
+import src.Artifacts.StarChart;
+
+/**
+ * A bounded, thread-safe memo of a protocol's verdicts on artifact pairs.
+ *
+ * Each artifact is reduced to a 64-bit fingerprint that encodes its type and every field
+ * exactly (destinations and colors by their {@link Artifacts#SYMBOLS} ids), so a pair's key is two longs
+ * and a hit can only ever come from an identical pair. Artifacts whose fields do not fit the
+ * fingerprint are simply not cached. Entries live in 4-way sets evicted by CLOCK, and each
+ * set is guarded by a sequence number so that lookups never lock.
+ *
+ * Only pairs the wrapped protocol declares deterministic ({@link Protocol#isDeterministic})
+ * are cached, so the risk-taker's coin flip between two rocks is always re-evaluated. Nothing
+ * is cached at the NARRATIVE output level either, since a hit would skip the narrative, nor
+ * while {@link DecisionTrace} is enabled, since a hit would skip recording the decision.
+ * {@link EncounterMetrics} counts analyses per encounter, outside the protocol, so it sees
+ * hits and misses alike.
+ */
+final class AnalysisCache implements Protocol {
+
+    static final int WAYS = 4;                            // Entries per set
+    private static final int FIELD_BITS = 15;             // Bits per star chart coordinate
+    private static final int FIELD_MIN = -(1 << (FIELD_BITS - 1));
+    private static final int FIELD_MAX = (1 << (FIELD_BITS - 1)) - 1;
+    static final long NO_FINGERPRINT = 0;                 // Artifact cannot be cached (also marks empty entries)
+    private static final AnalysisResult[] RESULTS = AnalysisResult.values();
+
+    private final Protocol protocol;                      // The protocol whose verdicts are cached
+    private final int setMask;                            // Number of sets minus one
+    private final long[] ownedKeys;                       // Fingerprint of the owned artifact per entry
+    private final long[] foundKeys;                       // Fingerprint of the new artifact per entry
+    private final byte[] results;                         // AnalysisResult ordinal per entry
+    private final byte[] referenced;                      // CLOCK reference bit per entry
+    private final byte[] hands;                           // CLOCK hand per set
+    private final AtomicIntegerArray versions;            // Per-set sequence number, odd while being written
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();   // Calls that were not eligible for caching
+
+    /**
+     * Wraps a protocol in a cache, if the protocol can say which of its verdicts are repeatable
+     * @param protocol The protocol to wrap
+     * @param capacity Approximate number of pairs to remember
+     * @return A caching protocol, or the protocol itself if it is a plain BiFunction that
+     *         cannot vouch for its own determinism
+     */
+    static BiFunction<Artifact, Artifact, AnalysisResult> wrap(BiFunction<Artifact, Artifact, AnalysisResult> protocol, int capacity) {
+        return protocol instanceof Protocol ? new AnalysisCache((Protocol) protocol, capacity) : protocol;
+    }
+
+    /**
+     * Constructs a cache around a protocol
+     * @param protocol The protocol to wrap
+     * @param capacity Approximate number of pairs to remember (rounded up to a power of two)
+     */
+    AnalysisCache(Protocol protocol, int capacity) {
+        if (capacity < WAYS || capacity > 1 << 28) {
+            throw new IllegalArgumentException("Cache capacity must be between " + WAYS + " and " + (1 << 28) + ": " + capacity);
+        }
+        int sets = Integer.highestOneBit((capacity + WAYS - 1) / WAYS - 1) << 1;
+        sets = Math.max(sets, 1);
+        this.protocol = protocol;
+        this.setMask = sets - 1;
+        this.ownedKeys = new long[sets * WAYS];
+        this.foundKeys = new long[sets * WAYS];
+        this.results = new byte[sets * WAYS];
+        this.referenced = new byte[sets * WAYS];
+        this.hands = new byte[sets];
+        this.versions = new AtomicIntegerArray(sets);
+    }
+
+    @Override
+    public AnalysisResult apply(Artifact ownedArtifact, Artifact newArtifact) {
+        return analyze(ownedArtifact, newArtifact, OutputLevel.NARRATIVE);
+    }
+
+    @Override
+    public AnalysisResult analyze(Artifact ownedArtifact, Artifact newArtifact, OutputLevel level) {
+        if (level == OutputLevel.NARRATIVE || DecisionTrace.enabled || !protocol.isDeterministic(ownedArtifact, newArtifact)) {
+            bypasses.increment();
+            return protocol.analyze(ownedArtifact, newArtifact, level);
+        }
+        long owned = fingerprint(ownedArtifact);
+        long found = fingerprint(newArtifact);
+        if (owned == NO_FINGERPRINT || found == NO_FINGERPRINT) {
+            bypasses.increment();
+            return protocol.analyze(ownedArtifact, newArtifact, level);
+        }
+
+        int set = setOf(owned, found);
+        int version = versions.get(set);
+        if ((version & 1) == 0) {
+            int base = set * WAYS;
+            for (int way = 0; way < WAYS; way++) {
+                int entry = base + way;
+                if (ownedKeys[entry] == owned && foundKeys[entry] == found) {
+                    int result = results[entry];
+                    // Validate the optimistic read, as StampedLock.validate does
+                    VarHandle.acquireFence();
+                    if (versions.get(set) == version) {
+                        referenced[entry] = 1;
+                        hits.increment();
+                        return RESULTS[result];
+                    }
+                    break;
+                }
+            }
+        }
+
+        misses.increment();
+        AnalysisResult result = protocol.analyze(ownedArtifact, newArtifact, level);
+        insert(set, owned, found, result);
+        return result;
+    }
+
+    /** @return The protocol whose verdicts are cached */
+    Protocol wrapped() {
+        return protocol;
+    }
+
+    @Override
+    public int valuableTypes(ArtifactType ownedType) {
+        return protocol.valuableTypes(ownedType);
+    }
+
+    @Override
+    public boolean isDeterministic(Artifact ownedArtifact, Artifact newArtifact) {
+        return protocol.isDeterministic(ownedArtifact, newArtifact);
+    }
+
+    /**
+     * Stores a verdict, unless another thread is writing the same set (it is only a cache)
+     */
+    private void insert(int set, long owned, long found, AnalysisResult result) {
+        int version = versions.get(set);
+        if ((version & 1) != 0 || !versions.compareAndSet(set, version, version + 1)) {
+            return;
+        }
+        int base = set * WAYS;
+        int victim = -1;
+        for (int way = 0; way < WAYS; way++) {
+            if (ownedKeys[base + way] == NO_FINGERPRINT) {
+                victim = base + way;
+                break;
+            }
+        }
+        if (victim < 0) {
+            int hand = hands[set];
+            while (referenced[base + hand] != 0) {
+                referenced[base + hand] = 0;
+                hand = (hand + 1) & (WAYS - 1);
+            }
+            victim = base + hand;
+            hands[set] = (byte) ((hand + 1) & (WAYS - 1));
+            evictions.increment();
+        }
+        ownedKeys[victim] = owned;
+        foundKeys[victim] = found;
+        results[victim] = (byte) result.ordinal();
+        referenced[victim] = 0;
+        versions.set(set, version + 2);
+    }
+
+    private int setOf(long owned, long found) {
+        long h = owned * 0x9E3779B97F4A7C15L ^ found;
+        h = (h ^ (h >>> 32)) * 0xBF58476D1CE4E5B9L;
+        return (int) (h >>> 32) & setMask;
+    }
+
+    /**
+     * Encodes an artifact exactly as a non-zero long: the type (plus one) in the top two bits,
+     * then the crystal's power, the rock's color id, or the chart's destination id and its
+     * risk, sector and system in FIELD_BITS each.
+     * @return The fingerprint, or NO_FINGERPRINT if the artifact's fields do not fit
+     */
+    static long fingerprint(Artifact artifact) {
+        long type = (long) (artifact.getType().ordinal() + 1) << 62;
+        if (artifact instanceof StarChart) {
+            StarChart chart = (StarChart) artifact;
+            int risk = chart.getRiskFactor();
+            int sector = chart.getSector();
+            int system = chart.getSystem();
+            int destination = chart.getDestinationId();
+            if (destination < 0 || !fits(risk) || !fits(sector) || !fits(system)) {
+                return NO_FINGERPRINT;
+            }
+            return type | (long) destination << (3 * FIELD_BITS) | field(risk) << (2 * FIELD_BITS)
+                | field(sector) << FIELD_BITS | field(system);
+        } else if (artifact instanceof EnergyCrystal) {
+            return type | (((EnergyCrystal) artifact).getPowerLevel() & 0xFFFFFFFFL);
+        } else if (artifact instanceof InertRock) {
+            int color = ((InertRock) artifact).getColorId();
+            return color < 0 ? NO_FINGERPRINT : type | color;
+        }
+        return NO_FINGERPRINT;
+    }
+
+    private static boolean fits(int value) {
+        return value >= FIELD_MIN && value <= FIELD_MAX;
+    }
+
+    private static long field(int value) {
+        return value & ((1L << FIELD_BITS) - 1);
+    }
+
+    /** @return Lookups answered from the cache */
+    long hits() {
+        return hits.sum();
+    }
+
+    /** @return Lookups that had to run the protocol */
+    long misses() {
+        return misses.sum();
+    }
+
+    /** @return Entries evicted to make room */
+    long evictions() {
+        return evictions.sum();
+    }
+
+    /** @return Calls passed straight to the protocol because they were not eligible for caching */
+    long bypasses() {
+        return bypasses.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits() + ", misses=" + misses() + ", evictions=" + evictions() + ", bypasses=" + bypasses();
+    }
+
+    /**
+     * Checks a cached rational protocol against the uncached one on random pairs and reports
+     * the cache's counters.
+     *
+     * @param args Optional number of pairs, cache capacity and seed
+     */
+    public static void main(String[] args) {
+        long pairs = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000L;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 16;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1110L;
+
+        AnalysisCache rational = new AnalysisCache(Artifacts.RATIONAL_PROTOCOL, capacity);
+        AnalysisCache riskTaker = new AnalysisCache(Artifacts.RISK_TAKER_PROTOCOL, capacity);
+        SplittableRandom random = new SplittableRandom(seed);
+        for (long i = 0; i < pairs; i++) {
+            Artifact owned = FleetSimulation.MIXED_FIELD.next(random);
+            Artifact found = FleetSimulation.MIXED_FIELD.next(random);
+            AnalysisResult expected = Artifacts.rationalScavengerAnalysis(owned, found, OutputLevel.SILENT);
+            AnalysisResult actual = rational.analyze(owned, found, OutputLevel.SILENT);
+            if (expected != actual) {
+                System.out.println("Error: cached result " + actual + " differs from " + expected + " for "
+                                   + Artifacts.describeArtifact(owned) + " / " + Artifacts.describeArtifact(found));
+                return;
+            }
+            riskTaker.analyze(owned, found, OutputLevel.SILENT);
+        }
+        System.out.println("Rational cache matches the protocol on " + pairs + " pairs: " + rational);
+        System.out.println("Risk-taker cache: " + riskTaker);
+    }
+}
@@ -0,0 +1,330 @@
+package src;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.OutputLevel;
+
+/**
+ * Batch ingestion of rational scavenger encounter logs.
+ *
+ * A log file holds one entry per line in the same format accepted by {@link Artifacts#main}
+ * (for example {@code ASTEROID | StarChart:Alpha Centauri; RISK=5; SEC=3; SYS=7 | EnergyCrystal:POWER=10}).
+ * The file is memory-mapped, split on line boundaries into chunks, and every chunk is run
+ * through parse, analyze and decide on a worker thread. Entries are parsed in place from the
+ * mapping by {@link ArtifactParser}. Each worker keeps its own tally, so workers share
+ * nothing until the tallies are merged into the final-cargo report.
+ */
+public class ArtifactBatch {
+
+    static final int CHUNKS_PER_THREAD = 4;            // Extra chunks so fast workers can pick up slack
+    static final long MAX_CHUNK_BYTES = 1L << 30;      // Upper bound for a single mapping
+    static final int MAX_REPORTED_ERRORS = 10;         // Error samples kept in the report
+
+    /**
+     * Per-worker (and, after merging, global) counters describing the outcome of a batch run.
+     *
+     * Final cargo is counted by its {@link AnalysisCache#fingerprint} in an open-addressing
+     * table, keeping one artifact per fingerprint, so recording an entry builds no strings and
+     * allocates nothing. Descriptors are only rendered for the report. The rare cargo without
+     * a fingerprint is counted by descriptor instead.
+     */
+    static class Tally {
+        long entries;                                        // Log entries processed successfully
+        long errors;                                         // Log entries that failed to parse or simulate
+        final long[] byType = new long[ArtifactType.values().length]; // Final cargo count per artifact type
+        final List<String> errorSamples = new ArrayList<>(); // First few error messages, with byte offsets
+        private long[] fingerprints = new long[64];          // Fingerprint per slot, NO_FINGERPRINT if free
+        private long[] counts = new long[64];                // Final cargo count per slot
+        private Artifact[] samples = new Artifact[64];       // An artifact with the slot's fingerprint
+        private int distinct;                                // Slots in use
+        private final Map<String, long[]> unfingerprinted = new HashMap<>(); // Count per descriptor otherwise
+
+        /**
+         * Records the final cargo of one successfully processed entry
+         * @param finalCargo The artifact held after the encounter
+         */
+        void record(Artifact finalCargo) {
+            entries++;
+            byType[finalCargo.getType().ordinal()]++;
+            long fingerprint = AnalysisCache.fingerprint(finalCargo);
+            if (fingerprint == AnalysisCache.NO_FINGERPRINT) {
+                unfingerprinted.computeIfAbsent(Artifacts.describeArtifact(finalCargo), k -> new long[1])[0]++;
+            } else {
+                add(fingerprint, finalCargo, 1);
+            }
+        }
+
+        private void add(long fingerprint, Artifact sample, long count) {
+            if (2 * (distinct + 1) > fingerprints.length) {
+                long[] oldFingerprints = fingerprints;
+                long[] oldCounts = counts;
+                Artifact[] oldSamples = samples;
+                fingerprints = new long[oldFingerprints.length * 2];
+                counts = new long[fingerprints.length];
+                samples = new Artifact[fingerprints.length];
+                distinct = 0;
+                for (int i = 0; i < oldFingerprints.length; i++) {
+                    if (oldFingerprints[i] != AnalysisCache.NO_FINGERPRINT) {
+                        add(oldFingerprints[i], oldSamples[i], oldCounts[i]);
+                    }
+                }
+            }
+            int mask = fingerprints.length - 1;
+            long h = fingerprint * 0x9E3779B97F4A7C15L;
+            int i = (int) (h ^ (h >>> 32)) & mask;
+            while (fingerprints[i] != fingerprint) {
+                if (fingerprints[i] == AnalysisCache.NO_FINGERPRINT) {
+                    fingerprints[i] = fingerprint;
+                    samples[i] = sample;
+                    distinct++;
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+            counts[i] += count;
+        }
+
+        /**
+         * Renders the final cargo counts
+         * @return Final cargo count per cargo descriptor
+         */
+        Map<String, long[]> byCargo() {
+            Map<String, long[]> byCargo = new HashMap<>();
+            for (int i = 0; i < fingerprints.length; i++) {
+                if (fingerprints[i] != AnalysisCache.NO_FINGERPRINT) {
+                    byCargo.computeIfAbsent(Artifacts.describeArtifact(samples[i]), k -> new long[1])[0] += counts[i];
+                }
+            }
+            for (Map.Entry<String, long[]> e : unfingerprinted.entrySet()) {
+                byCargo.computeIfAbsent(e.getKey(), k -> new long[1])[0] += e.getValue()[0];
+            }
+            return byCargo;
+        }
+
+        /**
+         * Records an entry that could not be processed
+         * @param offset Byte offset of the entry within the log file
+         * @param e The failure raised while processing the entry
+         */
+        void recordError(long offset, Exception e) {
+            errors++;
+            if (errorSamples.size() < MAX_REPORTED_ERRORS) {
+                errorSamples.add("offset " + offset + ": " + e.getMessage());
+            }
+        }
+
+        /**
+         * Adds another tally into this one
+         * @param other The tally to merge in
+         */
+        void merge(Tally other) {
+            entries += other.entries;
+            errors += other.errors;
+            for (int i = 0; i < byType.length; i++) {
+                byType[i] += other.byType[i];
+            }
+            for (int i = 0; i < other.fingerprints.length; i++) {
+                if (other.fingerprints[i] != AnalysisCache.NO_FINGERPRINT) {
+                    add(other.fingerprints[i], other.samples[i], other.counts[i]);
+                }
+            }
+            for (Map.Entry<String, long[]> e : other.unfingerprinted.entrySet()) {
+                unfingerprinted.computeIfAbsent(e.getKey(), k -> new long[1])[0] += e.getValue()[0];
+            }
+            for (String sample : other.errorSamples) {
+                if (errorSamples.size() < MAX_REPORTED_ERRORS) {
+                    errorSamples.add(sample);
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits the byte range of a file into chunks that start and end on line boundaries.
+     * Chunk i covers [bounds[i], bounds[i + 1]).
+     *
+     * @param channel Channel of the log file
+     * @param size Size of the file in bytes
+     * @param chunks Desired number of chunks
+     * @return Chunk boundaries, including 0 and size
+     * @throws IOException if the file cannot be read
+     */
+    static long[] splitOnLines(FileChannel channel, long size, int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        bounds[chunks] = size;
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < chunks; i++) {
+            long pos = Math.max(size / chunks * i, bounds[i - 1]);
+            long start = size;
+            // The chunk starts just after the first newline at or beyond its nominal start
+            scan:
+            while (pos < size) {
+                probe.clear();
+                int n = channel.read(probe, pos);
+                if (n <= 0) {
+                    break;
+                }
+                for (int j = 0; j < n; j++) {
+                    if (probe.get(j) == '\n') {
+                        start = pos + j + 1;
+                        break scan;
+                    }
+                }
+                pos += n;
+            }
+            bounds[i] = start;
+        }
+        return bounds;
+    }
+
+    /**
+     * Processes every line of one mapped chunk.
+     *
+     * @param chunk The mapped bytes of the chunk
+     * @param baseOffset File offset of the first byte of the chunk
+     * @return Tally of the chunk's entries
+     */
+    static Tally processChunk(MappedByteBuffer chunk, long baseOffset) {
+        Tally tally = new Tally();
+        ArtifactParser.Entry entry = new ArtifactParser.Entry();
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd;
+            if (end > lineStart && chunk.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end > lineStart) {
+                try {
+                    ArtifactParser.parseEntry(chunk, lineStart, end - lineStart, entry);
+                    // The per-encounter narrative is of no use for a whole-file replay
+                    tally.record(Artifacts.simulateRationalEncounter(entry.encounterType, entry.owned, entry.other,
+                                                                     OutputLevel.SILENT));
+                } catch (RuntimeException e) {
+                    tally.recordError(baseOffset + lineStart, e);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return tally;
+    }
+
+    /**
+     * Replays an entire log file across a pool of worker threads.
+     *
+     * @param logFile Path of the log file
+     * @param threads Number of worker threads
+     * @return Merged tally of the whole file
+     * @throws IOException if the file cannot be mapped or read
+     */
+    static Tally run(Path logFile, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threads);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max((long) threads * CHUNKS_PER_THREAD, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+            long[] bounds = splitOnLines(channel, size, chunks);
+
+            List<Future<Tally>> results = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                long start = bounds[i];
+                long length = bounds[i + 1] - start;
+                if (length <= 0) {
+                    continue;
+                }
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                Callable<Tally> task = () -> processChunk(chunk, start);
+                results.add(pool.submit(task));
+            }
+
+            Tally total = new Tally();
+            for (Future<Tally> result : results) {
+                total.merge(result.get());
+            }
+            return total;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Batch worker failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Prints the aggregate final-cargo report for a batch run
+     * @param tally The merged tally
+     * @param elapsedNanos Wall-clock time taken by the run
+     */
+    static void printReport(Tally tally, long elapsedNanos) {
+        System.out.println("\n===== Batch Final Cargo Report =====");
+        System.out.println("Entries processed: " + tally.entries);
+        System.out.println("Entries rejected: " + tally.errors);
+        double seconds = elapsedNanos / 1e9;
+        System.out.println(String.format("Elapsed: %.3f s (%.0f entries/s)", seconds,
+                                         seconds > 0 ? (tally.entries + tally.errors) / seconds : 0.0));
+
+        System.out.println("\nFinal cargo by item type:");
+        for (ArtifactType type : ArtifactType.values()) {
+            System.out.println("  " + type + ": " + tally.byType[type.ordinal()]);
+        }
+
+        System.out.println("\nFinal cargo by item:");
+        List<Map.Entry<String, long[]>> rows = new ArrayList<>(tally.byCargo().entrySet());
+        rows.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (Map.Entry<String, long[]> row : rows) {
+            System.out.println(String.format("  %12d  %s", row.getValue()[0], row.getKey()));
+        }
+
+        if (!tally.errorSamples.isEmpty()) {
+            System.out.println("\nSample errors:");
+            for (String sample : tally.errorSamples) {
+                System.out.println("  " + sample);
+            }
+        }
+    }
+
+    /**
+     * Runs a batch replay of a log file and prints the final-cargo report.
+     *
+     * @param args Log file path, optionally followed by the number of worker threads
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: java src.ArtifactBatch <log file> [threads]");
+            return;
+        }
+        try {
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+            long start = System.nanoTime();
+            Tally tally = run(Path.of(args[0]), threads);
+            printReport(tally, System.nanoTime() - start);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
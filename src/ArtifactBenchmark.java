@@ -0,0 +1,332 @@
+package src;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+
+/**
+ * Micro-benchmarks for the hot paths of the Artifacts engine: rational analysis, artifact
+ * parsing and description, asteroid exploration and starport trading.
+ *
+ * Every benchmark cycles through a fixed set of mixed artifacts drawn from
+ * {@link FleetSimulation#MIXED_FIELD} with a fixed seed, so runs of different versions see
+ * identical inputs. Each benchmark is run at every output level, with System.out pointed at
+ * a discarding stream so that the cost of building the output is measured but the terminal
+ * is not flooded. Per benchmark and level, the harness reports throughput, average time per
+ * operation and bytes allocated per operation, measured over several timed iterations after
+ * a warmup, and writes the results as CSV or JSON for comparison across versions.
+ */
+final class ArtifactBenchmark {
+
+    static final int INPUTS = 1 << 12;                 // Distinct inputs cycled through (power of two)
+    static final int BATCH = 256;                      // Operations between clock reads
+    static final int WARMUP_ITERATIONS = 3;
+    static final int MEASURED_ITERATIONS = 5;
+    static final long DEFAULT_ITERATION_MILLIS = 500;
+    static final long SEED = 1110L;
+
+    /**
+     * One benchmarked operation. Implementations return a value derived from their result so
+     * the JIT cannot eliminate the work.
+     */
+    interface Operation {
+        /**
+         * Runs the operation once
+         * @param i Index of the input to use (already reduced modulo {@link #INPUTS})
+         * @param level Output level to run at, for operations that print
+         * @return A value depending on the operation's result
+         */
+        int run(int i, OutputLevel level);
+    }
+
+    /**
+     * The measurements for one benchmark at one output level.
+     */
+    static final class Result {
+        final String benchmark;          // Name of the benchmark
+        final OutputLevel level;         // Output level it ran at
+        final long operations;           // Operations over all measured iterations
+        final double opsPerSecond;       // Mean throughput of the measured iterations
+        final double opsPerSecondError;  // Standard deviation of the throughput
+        final double nanosPerOp;         // Mean time per operation
+        final double bytesPerOp;         // Mean bytes allocated per operation (NaN if unsupported)
+
+        Result(String benchmark, OutputLevel level, long operations, double opsPerSecond,
+               double opsPerSecondError, double nanosPerOp, double bytesPerOp) {
+            this.benchmark = benchmark;
+            this.level = level;
+            this.operations = operations;
+            this.opsPerSecond = opsPerSecond;
+            this.opsPerSecondError = opsPerSecondError;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static volatile int sink;   // Consumes operation results
+
+    private final String[] names;
+    private final Operation[] operations;
+    private final long iterationNanos;
+
+    /**
+     * Builds the benchmark inputs
+     * @param iterationMillis Length of each warmup and measured iteration
+     */
+    ArtifactBenchmark(long iterationMillis) {
+        this.iterationNanos = iterationMillis * 1_000_000L;
+        SplittableRandom random = new SplittableRandom(SEED);
+        Artifact[] owned = new Artifact[INPUTS];
+        Artifact[] found = new Artifact[INPUTS];
+        String[] descriptions = new String[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            owned[i] = FleetSimulation.MIXED_FIELD.next(random);
+            found[i] = FleetSimulation.MIXED_FIELD.next(random);
+            descriptions[i] = Artifacts.describeArtifact(found[i]);
+        }
+        Scavenger explorer = Artifacts.makeScavenger("Benchmark Explorer", Artifacts.RATIONAL_PROTOCOL, owned[0]);
+        Scavenger rational = Artifacts.makeScavenger("Benchmark Rational", Artifacts.RATIONAL_PROTOCOL, owned[0]);
+        Scavenger riskTaker = Artifacts.makeScavenger("Benchmark Risk-taker", Artifacts.RISK_TAKER_PROTOCOL, found[0]);
+        SplittableRandom decisions = new SplittableRandom(SEED);
+
+        this.names = new String[] {
+            "rationalScavengerAnalysis",
+            "parseArtifactDescription",
+            "describeArtifact",
+            "exploreAsteroid",
+            "tradeAtStarport"
+        };
+        this.operations = new Operation[] {
+            (i, level) -> Artifacts.rationalScavengerAnalysis(owned[i], found[i], level).ordinal(),
+            (i, level) -> Artifacts.parseArtifactDescription(descriptions[i]).getType().ordinal(),
+            (i, level) -> Artifacts.describeArtifact(owned[i]).length(),
+            (i, level) -> {
+                explorer.setCargo(owned[i]);
+                Artifacts.exploreAsteroid(explorer, found[i], decisions, level);
+                return explorer.getCargo().getType().ordinal();
+            },
+            (i, level) -> {
+                rational.setCargo(owned[i]);
+                riskTaker.setCargo(found[i]);
+                Artifacts.tradeAtStarport(rational, riskTaker, level);
+                return rational.getCargo().getType().ordinal();
+            }
+        };
+    }
+
+    /**
+     * Runs every benchmark at every output level
+     * @return One result per benchmark and level
+     */
+    List<Result> runAll() {
+        List<Result> results = new ArrayList<>();
+        PrintStream previousOut = System.out;
+        RandomGenerator previousRandom = Randomness.bind(new SplittableRandom(SEED));   // Risk-taker coin flips
+        System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+        try {
+            for (int b = 0; b < operations.length; b++) {
+                for (OutputLevel level : OutputLevel.values()) {
+                    results.add(measure(names[b], operations[b], level));
+                }
+            }
+        } finally {
+            System.setOut(previousOut);
+            Randomness.bind(previousRandom);
+        }
+        return results;
+    }
+
+    private Result measure(String name, Operation operation, OutputLevel level) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iterate(operation, level);
+        }
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        long threadId = Thread.currentThread().threadId();
+        long totalOps = 0;
+        long totalNanos = 0;
+        long totalBytes = 0;
+        double[] throughput = new double[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long bytesBefore = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+            long start = System.nanoTime();
+            long ops = iterate(operation, level);
+            long elapsed = System.nanoTime() - start;
+            long bytesAfter = threads != null ? threads.getThreadAllocatedBytes(threadId) : 0;
+            throughput[i] = ops * 1e9 / elapsed;
+            totalOps += ops;
+            totalNanos += elapsed;
+            totalBytes += bytesAfter - bytesBefore;
+        }
+        double mean = 0;
+        for (double t : throughput) {
+            mean += t / MEASURED_ITERATIONS;
+        }
+        double variance = 0;
+        for (double t : throughput) {
+            variance += (t - mean) * (t - mean) / Math.max(1, MEASURED_ITERATIONS - 1);
+        }
+        return new Result(name, level, totalOps, mean, Math.sqrt(variance), (double) totalNanos / totalOps,
+                          threads != null ? (double) totalBytes / totalOps : Double.NaN);
+    }
+
+    /**
+     * Runs the operation in batches until one iteration's time is up
+     * @return Number of operations run
+     */
+    private long iterate(Operation operation, OutputLevel level) {
+        long deadline = System.nanoTime() + iterationNanos;
+        long ops = 0;
+        int acc = 0;
+        int i = 0;
+        do {
+            for (int k = 0; k < BATCH; k++) {
+                acc += operation.run(i, level);
+                i = (i + 1) & (INPUTS - 1);
+            }
+            ops += BATCH;
+        } while (System.nanoTime() < deadline);
+        sink = acc;
+        return ops;
+    }
+
+    /**
+     * Draws {@link #INPUTS} artifacts from {@link FleetSimulation#MIXED_FIELD}
+     * @param random Generator to draw from
+     * @return The artifacts, indexable by an operation's input index
+     */
+    static Artifact[] mixedInputs(SplittableRandom random) {
+        Artifact[] inputs = new Artifact[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = FleetSimulation.MIXED_FIELD.next(random);
+        }
+        return inputs;
+    }
+
+    /**
+     * The encounter workload of the recording mains: each run sends one scavenger to an
+     * asteroid from the field, or, with trades, every fourth run has two scavengers trade instead
+     * @param fleet The scavengers (a power of two of them)
+     * @param field The found artifacts, indexed by input
+     * @param random Generator for the scavengers' risk decisions
+     * @param trades Whether every fourth encounter is a starport trade
+     * @return The operation
+     */
+    static Operation encounters(Scavenger[] fleet, Artifact[] field, SplittableRandom random, boolean trades) {
+        int mask = fleet.length - 1;
+        return (i, level) -> {
+            Scavenger scavenger = fleet[i & mask];
+            if (trades && (i & 3) == 3) {
+                return Artifacts.tradeAtStarport(scavenger, fleet[(i >>> 2) & mask], level).first() == scavenger ? 1 : 0;
+            }
+            return Artifacts.exploreAsteroid(scavenger, field[i], random, level).second() == null ? 1 : 0;
+        };
+    }
+
+    /**
+     * Times a fixed number of runs of one operation, for mains that compare two versions of a
+     * path rather than run the whole suite. System.out is left alone.
+     * @param operation The operation to time
+     * @param level Output level to run at
+     * @param runs Number of runs, cycling through the input indices
+     * @return Mean nanoseconds per run
+     */
+    static double nanosPerOp(Operation operation, OutputLevel level, long runs) {
+        int acc = 0;
+        int i = 0;
+        long start = System.nanoTime();
+        for (long n = 0; n < runs; n++) {
+            acc += operation.run(i, level);
+            i = (i + 1) & (INPUTS - 1);
+        }
+        long elapsed = System.nanoTime() - start;
+        sink = acc;
+        return (double) elapsed / runs;
+    }
+
+    /**
+     * @return The JVM's per-thread allocation counter, or null if it is unavailable
+     */
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Formats results as CSV, one row per benchmark and level
+     * @param results The results to format
+     * @return CSV text with a header row
+     */
+    static String toCsv(List<Result> results) {
+        StringBuilder out = new StringBuilder("benchmark,level,operations,ops_per_s,ops_per_s_error,ns_per_op,bytes_per_op\n");
+        for (Result r : results) {
+            out.append(String.format(Locale.ROOT, "%s,%s,%d,%.1f,%.1f,%.2f,%.2f%n", r.benchmark, r.level, r.operations,
+                                     r.opsPerSecond, r.opsPerSecondError, r.nanosPerOp, r.bytesPerOp));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Formats results as a JSON array of objects
+     * @param results The results to format
+     * @return JSON text
+     */
+    static String toJson(List<Result> results) {
+        StringBuilder out = new StringBuilder("[\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result r = results.get(i);
+            out.append(String.format(Locale.ROOT,
+                "  {\"benchmark\": \"%s\", \"level\": \"%s\", \"operations\": %d, \"opsPerSecond\": %.1f, "
+                + "\"opsPerSecondError\": %.1f, \"nanosPerOp\": %.2f, \"bytesPerOp\": %s}%s%n",
+                r.benchmark, r.level, r.operations, r.opsPerSecond, r.opsPerSecondError, r.nanosPerOp,
+                Double.isNaN(r.bytesPerOp) ? "null" : String.format(Locale.ROOT, "%.2f", r.bytesPerOp),
+                i + 1 < results.size() ? "," : ""));
+        }
+        return out.append("]\n").toString();
+    }
+
+    /**
+     * Runs the benchmarks and prints or saves the results.
+     *
+     * @param args Output format (csv or json), optionally followed by the iteration length in
+     *             milliseconds and an output file
+     */
+    public static void main(String[] args) {
+        if (args.length > 3 || (args.length > 0 && !args[0].equals("csv") && !args[0].equals("json"))) {
+            System.out.println("Usage: java src.ArtifactBenchmark [csv|json] [iteration millis] [output file]");
+            return;
+        }
+        try {
+            boolean json = args.length > 0 && args[0].equals("json");
+            long iterationMillis = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_ITERATION_MILLIS;
+            List<Result> results = new ArtifactBenchmark(iterationMillis).runAll();
+            String report = json ? toJson(results) : toCsv(results);
+            if (args.length > 2) {
+                Files.writeString(Path.of(args[2]), report);
+                System.out.println("Wrote " + results.size() + " results to " + args[2]);
+            } else {
+                System.out.print(report);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
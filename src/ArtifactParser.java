@@ -0,0 +1,299 @@
+package src;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.EncounterType;
+
+/**
+ * Byte-level parser for artifact descriptions and rational scavenger log entries.
+ *
+ * The parser reads straight from a byte[] or ByteBuffer slice (for example a memory-mapped
+ * log file) and decodes RISK/SEC/SYS/POWER digits in place. Destinations and colors are
+ * resolved through the process-wide dictionary {@link Artifacts#SYMBOLS}, so a description
+ * whose strings have been seen before is parsed without creating any String at all, and the
+ * artifacts it yields already carry their dictionary ids.
+ *
+ * Results match {@link Artifacts#parseArtifactDescription} and
+ * {@link Artifacts#parseRationalScavengerLog} exactly. Whenever a slice contains non-ASCII
+ * bytes, or the fast path would fail, the slice is decoded and handed to the String parser,
+ * so malformed input raises the very same exception with the very same message.
+ */
+final class ArtifactParser {
+
+    private static final byte[] STAR_CHART = ascii("StarChart:");
+    private static final byte[] ENERGY_CRYSTAL = ascii("EnergyCrystal:");
+    private static final byte[] INERT_ROCK = ascii("InertRock:");
+    private static final byte[] RISK = ascii("RISK=");
+    private static final byte[] SEC = ascii("SEC=");
+    private static final byte[] SYS = ascii("SYS=");
+    private static final byte[] POWER = ascii("POWER=");
+    private static final byte[] COLOR = ascii("COLOR=");
+    private static final byte[] SEMICOLON = ascii(";");
+    private static final byte[] SEPARATOR = ascii(" | ");
+    private static final byte[] ASTEROID = ascii("ASTEROID");
+    private static final byte[] TRADING_POST = ascii("TRADING_POST");
+
+    private static final long INVALID = Long.MIN_VALUE;   // Marks a number the fast path cannot decode
+
+    private ArtifactParser() {
+    }
+
+    /**
+     * A parsed rational scavenger log entry. Instances are meant to be reused across calls
+     * so that parsing a stream of entries allocates nothing beyond the artifacts themselves.
+     */
+    static final class Entry {
+        EncounterType encounterType;   // Kind of encounter
+        Artifact owned;                // The rational scavenger's starting cargo
+        Artifact other;                // The discovered artifact or the trading partner's cargo
+    }
+
+    /**
+     * Parses an artifact description held in a byte array
+     * @param buf The bytes
+     * @param off Index of the first byte of the description
+     * @param len Length of the description in bytes
+     * @return Artifact instance matching the description
+     * @throws IllegalArgumentException if description format is invalid
+     */
+    static Artifact parseArtifact(byte[] buf, int off, int len) {
+        return parseArtifact(ByteBuffer.wrap(buf), off, len);
+    }
+
+    /**
+     * Parses an artifact description held in a buffer, using absolute indexes only.
+     *
+     * @param buf The buffer (its position and limit are not used or changed)
+     * @param off Absolute index of the first byte of the description
+     * @param len Length of the description in bytes
+     * @return Artifact instance matching the description
+     * @throws IllegalArgumentException if description format is invalid
+     */
+    static Artifact parseArtifact(ByteBuffer buf, int off, int len) {
+        if (!isAscii(buf, off, len)) {
+            return Artifacts.parseArtifactDescription(decode(buf, off, len));
+        }
+        if (startsWith(buf, off, len, STAR_CHART)) {
+            // StarChart:destination; RISK=risk; SEC=sector; SYS=system
+            int destEnd = indexOf(buf, off, len, SEMICOLON, 0);
+            if (destEnd < 0) {
+                return fallback(buf, off, len);
+            }
+
+            int riskStart = indexOf(buf, off, len, RISK, 0) + RISK.length;
+            int riskEnd = indexOf(buf, off, len, SEMICOLON, riskStart);
+            long risk = riskEnd < 0 ? INVALID : parseInt(buf, off + riskStart, riskEnd - riskStart);
+
+            int secStart = indexOf(buf, off, len, SEC, 0) + SEC.length;
+            int secEnd = indexOf(buf, off, len, SEMICOLON, secStart);
+            long sector = secEnd < 0 ? INVALID : parseInt(buf, off + secStart, secEnd - secStart);
+
+            int sysStart = indexOf(buf, off, len, SYS, 0) + SYS.length;
+            long system = parseInt(buf, off + sysStart, len - sysStart);
+
+            if (risk == INVALID || sector == INVALID || system == INVALID) {
+                return fallback(buf, off, len);
+            }
+            int destination = Artifacts.SYMBOLS.intern(buf, off + STAR_CHART.length, destEnd - STAR_CHART.length);
+            if (destination == SymbolTable.NOT_FOUND) {
+                return Artifacts.makeStarChart(decode(buf, off + STAR_CHART.length, destEnd - STAR_CHART.length),
+                                               (int) risk, (int) sector, (int) system);
+            }
+            return Artifacts.makeStarChart(destination, (int) risk, (int) sector, (int) system);
+        } else if (startsWith(buf, off, len, ENERGY_CRYSTAL)) {
+            // EnergyCrystal:POWER=power
+            int powerStart = indexOf(buf, off, len, POWER, 0) + POWER.length;
+            long power = parseInt(buf, off + powerStart, len - powerStart);
+            if (power == INVALID) {
+                return fallback(buf, off, len);
+            }
+            return Artifacts.makeEnergyCrystal((int) power);
+        } else if (startsWith(buf, off, len, INERT_ROCK)) {
+            // InertRock:COLOR=color
+            int colorStart = indexOf(buf, off, len, COLOR, 0) + COLOR.length;
+            return Artifacts.makeInertRock(symbol(buf, off + colorStart, len - colorStart));
+        }
+        return fallback(buf, off, len);
+    }
+
+    /**
+     * Parses a rational scavenger log entry held in a byte array
+     * @param buf The bytes
+     * @param off Index of the first byte of the entry
+     * @param len Length of the entry in bytes (excluding any line terminator)
+     * @param entry Entry to fill in
+     * @return The filled-in entry
+     * @throws IllegalArgumentException if log format is invalid
+     */
+    static Entry parseEntry(byte[] buf, int off, int len, Entry entry) {
+        return parseEntry(ByteBuffer.wrap(buf), off, len, entry);
+    }
+
+    /**
+     * Parses a rational scavenger log entry held in a buffer. Fields are split on " | " exactly
+     * as {@code String.split(" \\| ")} would, including its removal of trailing empty fields,
+     * and errors are raised in the same order as {@link Artifacts#parseRationalScavengerLog}.
+     *
+     * @param buf The buffer (its position and limit are not used or changed)
+     * @param off Absolute index of the first byte of the entry
+     * @param len Length of the entry in bytes (excluding any line terminator)
+     * @param entry Entry to fill in
+     * @return The filled-in entry
+     * @throws IllegalArgumentException if log format is invalid
+     */
+    static Entry parseEntry(ByteBuffer buf, int off, int len, Entry entry) {
+        int firstSep = -1;
+        int secondSep = -1;
+        int thirdSep = -1;
+        int lastNonEmptyField = -1;
+        int field = 0;
+        int fieldStart = 0;
+        int sep;
+        while ((sep = indexOf(buf, off, len, SEPARATOR, fieldStart)) >= 0) {
+            if (sep > fieldStart) {
+                lastNonEmptyField = field;
+            }
+            if (field == 0) {
+                firstSep = sep;
+            } else if (field == 1) {
+                secondSep = sep;
+            } else if (field == 2) {
+                thirdSep = sep;
+            }
+            field++;
+            fieldStart = sep + SEPARATOR.length;
+        }
+        if (fieldStart < len || field == 0) {
+            lastNonEmptyField = field;
+        }
+        // split() drops trailing empty fields, so exactly three fields must survive
+        if (lastNonEmptyField != 2) {
+            throw new IllegalArgumentException("Invalid log format");
+        }
+        int ownedStart = firstSep + SEPARATOR.length;
+        int otherStart = secondSep + SEPARATOR.length;
+        int otherEnd = thirdSep >= 0 ? thirdSep : len;
+
+        Artifact owned = parseArtifact(buf, off + ownedStart, secondSep - ownedStart);
+        Artifact other = parseArtifact(buf, off + otherStart, otherEnd - otherStart);
+
+        EncounterType type;
+        if (equalsBytes(buf, off, firstSep, ASTEROID)) {
+            type = EncounterType.ASTEROID;
+        } else if (equalsBytes(buf, off, firstSep, TRADING_POST)) {
+            type = EncounterType.TRADING_POST;
+        } else {
+            throw new IllegalArgumentException("Unknown encounter type: " + decode(buf, off, firstSep));
+        }
+        entry.encounterType = type;
+        entry.owned = owned;
+        entry.other = other;
+        return entry;
+    }
+
+    /**
+     * Hands a description the fast path cannot decode to the String parser, which either
+     * parses it or raises the exception the String-based caller would have seen.
+     */
+    private static Artifact fallback(ByteBuffer buf, int off, int len) {
+        return Artifacts.parseArtifactDescription(decode(buf, off, len));
+    }
+
+    /**
+     * Resolves a byte slice to its canonical String, decoding only if the symbol table is full.
+     */
+    private static String symbol(ByteBuffer buf, int off, int len) {
+        int id = Artifacts.SYMBOLS.intern(buf, off, len);
+        return id != SymbolTable.NOT_FOUND ? Artifacts.SYMBOLS.symbol(id) : decode(buf, off, len);
+    }
+
+    /**
+     * Decodes an ASCII decimal integer with the same acceptance rules as Integer.parseInt.
+     *
+     * @return The value, or INVALID if Integer.parseInt would reject the digits
+     */
+    private static long parseInt(ByteBuffer buf, int off, int len) {
+        if (len <= 0) {
+            return INVALID;
+        }
+        int i = 0;
+        boolean negative = false;
+        byte first = buf.get(off);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (len == 1) {
+                return INVALID;
+            }
+        }
+        long value = 0;
+        for (; i < len; i++) {
+            int digit = buf.get(off + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return INVALID;
+            }
+        }
+        value = negative ? -value : value;
+        return value > Integer.MAX_VALUE ? INVALID : value;
+    }
+
+    /**
+     * Finds a byte sequence within a slice, mirroring String.indexOf(String, int).
+     *
+     * @return Index relative to off, or -1 if absent
+     */
+    private static int indexOf(ByteBuffer buf, int off, int len, byte[] needle, int from) {
+        int last = len - needle.length;
+        outer:
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buf.get(off + i + j) != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int off, int len, byte[] prefix) {
+        return len >= prefix.length && equalsBytes(buf, off, prefix.length, prefix);
+    }
+
+    private static boolean equalsBytes(ByteBuffer buf, int off, int len, byte[] expected) {
+        if (len != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (buf.get(off + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(ByteBuffer buf, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            if (buf.get(off + i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String decode(ByteBuffer buf, int off, int len) {
+        byte[] bytes = new byte[len];
+        buf.get(off, bytes, 0, len);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,157 @@
+package src;
+
+import static comp1110.testing.Comp1110Unit.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.OutputLevel;
+
+/**
+ * Tests that the byte-level {@link ArtifactParser} agrees with the String parser in
+ * {@link Artifacts}: the same artifact for well-formed input, and the same exception with the
+ * same message for everything else.
+ */
+final class ArtifactParserTest {
+
+    private static final String[] DESCRIPTIONS = {
+        // Well-formed
+        "StarChart:Alpha Centauri; RISK=5; SEC=3; SYS=7",
+        "StarChart:Vega; RISK=-2; SEC=0; SYS=13",
+        "EnergyCrystal:POWER=0",
+        "EnergyCrystal:POWER=-2147483648",
+        "InertRock:COLOR=red",
+        "InertRock:COLOR=dull grey",
+        // Malformed
+        "",
+        "StarChart:",
+        "StarChart:Vega",
+        "StarChart:Vega; RISK=5; SEC=3",
+        "StarChart:Vega; RISK=x; SEC=3; SYS=7",
+        "StarChart:Vega; RISK= 5; SEC=3; SYS=7",
+        "StarChart:Vega; RISK=5; SEC=3; SYS=",
+        "StarChart:Vega; SYS=7; SEC=3; RISK=5",
+        "EnergyCrystal:",
+        "EnergyCrystal:POWER=",
+        "EnergyCrystal:POWER=+5",
+        "EnergyCrystal:POWER=2147483648",
+        "EnergyCrystal:POWER=5 ",
+        "InertRock:",
+        "InertRock:COLOR=",
+        "Inertrock:COLOR=red",
+        "Rock:COLOR=red",
+        // Non-ASCII
+        "StarChart:Végà; RISK=5; SEC=3; SYS=7",
+        "StarChart:织女星; RISK=9; SEC=1; SYS=11",
+        "StarChart:Vega; RISK=５; SEC=3; SYS=7",
+        "EnergyCrystal:POWER=４２",
+        "EnergyCrystal:POWER=4é",
+        "InertRock:COLOR=红",
+        "InertRock:COLOR=grey\u0000",
+        "ÉnergyCrystal:POWER=5"
+    };
+
+    private static final String[] ENTRIES = {
+        // Well-formed
+        "ASTEROID | StarChart:Alpha Centauri; RISK=5; SEC=3; SYS=7 | EnergyCrystal:POWER=80",
+        "TRADING_POST | InertRock:COLOR=red | StarChart:Vega; RISK=9; SEC=1; SYS=11",
+        "ASTEROID | InertRock:COLOR=blue | InertRock:COLOR=blue",
+        // Malformed
+        "",
+        "ASTEROID",
+        "ASTEROID | InertRock:COLOR=red",
+        "ASTEROID | InertRock:COLOR=red | InertRock:COLOR=blue | InertRock:COLOR=green",
+        "COMET | InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "asteroid | InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "ASTEROID |InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "ASTEROID  | InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "ASTEROID | Rock:COLOR=red | EnergyCrystal:POWER=5",
+        "COMET | Rock:COLOR=red | EnergyCrystal:POWER=5",
+        " | InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "ASTEROID |  | EnergyCrystal:POWER=5",
+        // Trailing separators, which String.split drops as empty trailing fields
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 | ",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 |  | ",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 |  |  | ",
+        "ASTEROID | InertRock:COLOR=red | ",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 |",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 | x",
+        // Non-ASCII
+        "ASTEROID | StarChart:Végà; RISK=5; SEC=3; SYS=7 | InertRock:COLOR=红",
+        "ASTÉROÏDE | InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "TRADING_POST | InertRock:COLOR=red | EnergyCrystal:POWER=４２",
+        "ASTEROID｜InertRock:COLOR=red｜EnergyCrystal:POWER=5"
+    };
+
+    /**
+     * Runs a parse and renders its result, or the exception it threw, as text
+     */
+    private static String outcome(Supplier<Artifact> parse) {
+        try {
+            return Artifacts.describeArtifact(parse.get());
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    /**
+     * Places text in the middle of a larger buffer, so the parser must honour the offset
+     */
+    private static byte[] padded(byte[] bytes) {
+        byte[] buf = new byte[bytes.length + 6];
+        buf[0] = buf[1] = buf[2] = (byte) '|';
+        System.arraycopy(bytes, 0, buf, 3, bytes.length);
+        buf[buf.length - 3] = buf[buf.length - 2] = buf[buf.length - 1] = (byte) ';';
+        return buf;
+    }
+
+    /**
+     * Simulates a parsed entry, as parseRationalScavengerLog does once it has parsed the line
+     */
+    private static Artifact simulate(ArtifactParser.Entry entry) {
+        return Artifacts.simulateRationalEncounter(entry.encounterType, entry.owned, entry.other, OutputLevel.SILENT);
+    }
+
+    static void testDescriptionParity() {
+        for (String description : DESCRIPTIONS) {
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            String expected = outcome(() -> Artifacts.parseArtifactDescription(description));
+            testEqual(expected, outcome(() -> ArtifactParser.parseArtifact(bytes, 0, bytes.length)), description);
+            testEqual(expected, outcome(() -> ArtifactParser.parseArtifact(padded(bytes), 3, bytes.length)), description);
+            testEqual(expected, outcome(() -> ArtifactParser.parseArtifact(ByteBuffer.wrap(padded(bytes)).asReadOnlyBuffer(),
+                                                                           3, bytes.length)), description);
+        }
+    }
+
+    static void testEntryParity() {
+        ArtifactParser.Entry entry = new ArtifactParser.Entry();
+        for (String line : ENTRIES) {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            // Both sides simulate the encounter from the same seed, so hazardous gambles agree
+            Randomness.bind(new SplittableRandom(1110L));
+            String expected = outcome(() -> Artifacts.parseRationalScavengerLog(line, OutputLevel.SILENT));
+            Randomness.bind(new SplittableRandom(1110L));
+            String actual = outcome(() -> simulate(ArtifactParser.parseEntry(padded(bytes), 3, bytes.length, entry)));
+            testEqual(expected, actual, line);
+        }
+        Randomness.bind(null);
+    }
+
+    static void testSymbolsAreCanonical() {
+        byte[] first = "InertRock:COLOR=dull grey".getBytes(StandardCharsets.UTF_8);
+        byte[] second = padded(first);
+        Artifacts.InertRock a = (Artifacts.InertRock) ArtifactParser.parseArtifact(first, 0, first.length);
+        Artifacts.InertRock b = (Artifacts.InertRock) ArtifactParser.parseArtifact(second, 3, first.length);
+        testTrue(a.getColor() == b.getColor(), "Repeated colors should share one String");
+        testEqual(a.getColorId(), b.getColorId());
+    }
+
+    public static void main(String[] args) {
+        runAsTest(ArtifactParserTest::testDescriptionParity);
+        runAsTest(ArtifactParserTest::testEntryParity);
+        runAsTest(ArtifactParserTest::testSymbolsAreCanonical);
+    }
+}
@@ -0,0 +1,369 @@
+package src;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+import src.Artifacts.StarChart;
+
+/**
+ * Columnar (struct-of-arrays) storage for large numbers of artifacts.
+ *
+ * Instead of one object per artifact, each row is spread across parallel primitive columns:
+ * a type tag, the star chart's risk/sector/system, the crystal's power, and a dictionary id
+ * for the chart's destination or the rock's color. A million-row store is a handful of flat
+ * arrays, and fleet-wide sweeps such as {@link #analyzeAll} walk those arrays sequentially
+ * without touching a single Artifact object.
+ *
+ * Stores are not thread-safe for writes; concurrent reads of rows that are no longer being
+ * written are fine.
+ */
+final class ArtifactStore {
+
+    static final int DEFAULT_MAX_SYMBOLS = 1 << 20;   // Distinct destinations/colors per dictionary
+    static final int ROW_BYTES = 1 + 5 * Integer.BYTES;  // One type tag and five int columns
+    private static final ArtifactType[] TYPES = ArtifactType.values();
+
+    private final SymbolTable symbols;  // Dictionary for destinations and colors
+    private byte[] types;               // ArtifactType ordinal per row
+    private int[] risk;                 // Star chart risk factor per row
+    private int[] sector;               // Star chart sector per row
+    private int[] system;               // Star chart system per row
+    private int[] power;                // Energy crystal power level per row
+    private int[] symbol;               // Destination (charts) or color (rocks) id per row
+    private byte[] colorClasses;        // DecisionTable color class per symbol id used by this store
+    private int size;                   // Number of rows in use
+
+    /**
+     * Constructs an empty store with its own symbol dictionary
+     * @param initialCapacity Number of rows to allocate up front
+     */
+    ArtifactStore(int initialCapacity) {
+        this(initialCapacity, new SymbolTable(DEFAULT_MAX_SYMBOLS));
+    }
+
+    /**
+     * Constructs an empty store sharing a symbol dictionary with other stores.
+     * Stores must share a dictionary to be swept against each other.
+     * @param initialCapacity Number of rows to allocate up front
+     * @param symbols Dictionary used to encode destinations and colors
+     */
+    ArtifactStore(int initialCapacity, SymbolTable symbols) {
+        int capacity = Math.max(initialCapacity, 16);
+        this.symbols = symbols;
+        this.types = new byte[capacity];
+        this.risk = new int[capacity];
+        this.sector = new int[capacity];
+        this.system = new int[capacity];
+        this.power = new int[capacity];
+        this.symbol = new int[capacity];
+        this.colorClasses = new byte[64];
+    }
+
+    /**
+     * Snapshots a fleet's cargo into a new store, one row per scavenger in fleet order
+     * @param fleet The fleet whose cargo to store
+     * @return A store whose row i holds the cargo of fleet[i]
+     */
+    static ArtifactStore ofCargo(Scavenger[] fleet) {
+        ArtifactStore store = new ArtifactStore(fleet.length);
+        for (Scavenger scavenger : fleet) {
+            store.add(scavenger.getCargo());
+        }
+        return store;
+    }
+
+    /** @return The number of rows in the store */
+    int size() {
+        return size;
+    }
+
+    /** @return The dictionary encoding this store's destinations and colors */
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    /**
+     * Appends an artifact as a new row
+     * @param artifact The artifact to store
+     * @return Index of the new row
+     */
+    int add(Artifact artifact) {
+        if (size == types.length) {
+            grow();
+        }
+        set(size, artifact);
+        return size++;
+    }
+
+    /**
+     * Overwrites an existing row with another artifact
+     * @param row Index of the row
+     * @param artifact The artifact to store
+     */
+    void set(int row, Artifact artifact) {
+        if (row > size || row >= types.length) {
+            throw new IndexOutOfBoundsException("Row " + row + " outside store of size " + size);
+        }
+        types[row] = (byte) artifact.getType().ordinal();
+        switch (artifact.getType()) {
+            case STAR_CHART:
+                StarChart chart = (StarChart) artifact;
+                risk[row] = chart.getRiskFactor();
+                sector[row] = chart.getSector();
+                system[row] = chart.getSystem();
+                power[row] = 0;
+                symbol[row] = encode(chart.getDestination());
+                break;
+            case ENERGY_CRYSTAL:
+                risk[row] = 0;
+                sector[row] = 0;
+                system[row] = 0;
+                power[row] = ((EnergyCrystal) artifact).getPowerLevel();
+                symbol[row] = SymbolTable.NOT_FOUND;
+                break;
+            case INERT_ROCK:
+                risk[row] = 0;
+                sector[row] = 0;
+                system[row] = 0;
+                power[row] = 0;
+                symbol[row] = encode(((InertRock) artifact).getColor());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported artifact type: " + artifact.getType());
+        }
+    }
+
+    /**
+     * Materializes a row back into an Artifact (crystals and rocks come from the interning caches)
+     * @param row Index of the row
+     * @return Artifact equivalent to the one stored
+     */
+    Artifact get(int row) {
+        checkRow(row);
+        switch (TYPES[types[row]]) {
+            case STAR_CHART:
+                return Artifacts.makeStarChart(symbols.symbol(symbol[row]), risk[row], sector[row], system[row]);
+            case ENERGY_CRYSTAL:
+                return Artifacts.makeEnergyCrystal(power[row]);
+            default:
+                return Artifacts.makeInertRock(symbols.symbol(symbol[row]));
+        }
+    }
+
+    /**
+     * Returns the type of a row without materializing it
+     * @param row Index of the row
+     * @return The row's artifact type
+     */
+    ArtifactType type(int row) {
+        checkRow(row);
+        return TYPES[types[row]];
+    }
+
+    /**
+     * Evaluates the rational protocol on two rows, reading only the columns.
+     * Produces exactly what {@link Artifacts#rationalScavengerAnalysis} produces for the
+     * materialized artifacts, without any output.
+     *
+     * @param ownedRow Row holding the owned artifact
+     * @param found Store holding the new artifact (must share this store's dictionary)
+     * @param foundRow Row of the new artifact
+     * @return AnalysisResult indicating the scavenger's assessment of the new artifact
+     */
+    AnalysisResult rationalAnalysis(int ownedRow, ArtifactStore found, int foundRow) {
+        checkRow(ownedRow);
+        found.checkRow(foundRow);
+        requireSharedSymbols(found);
+        return rational(ownedRow, found, foundRow);
+    }
+
+    /**
+     * Evaluates the rational protocol row by row: row i of this store (the owned cargo)
+     * against row i of the other store (the new artifact).
+     *
+     * @param found Store holding the new artifacts (must share this store's dictionary)
+     * @param results Receives the AnalysisResult ordinal for each row
+     */
+    void analyzeAll(ArtifactStore found, byte[] results) {
+        requireSharedSymbols(found);
+        int rows = Math.min(size, found.size);
+        if (results.length < rows) {
+            throw new IllegalArgumentException("Result array too small: " + results.length + " < " + rows);
+        }
+        for (int row = 0; row < rows; row++) {
+            results[row] = (byte) rational(row, found, row).ordinal();
+        }
+    }
+
+    /**
+     * Evaluates the rational protocol for every row against a single new artifact and
+     * counts the outcomes.
+     *
+     * @param newArtifact The artifact every row's holder is evaluating
+     * @return Number of rows per AnalysisResult, indexed by ordinal
+     */
+    long[] analyzeAll(Artifact newArtifact) {
+        ArtifactStore found = new ArtifactStore(1, symbols);
+        found.add(newArtifact);
+        long[] counts = new long[AnalysisResult.values().length];
+        for (int row = 0; row < size; row++) {
+            counts[rational(row, found, 0).ordinal()]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Column-only rational protocol; callers have checked bounds and dictionaries.
+     */
+    private AnalysisResult rational(int ownedRow, ArtifactStore found, int foundRow) {
+        ArtifactType ownedType = TYPES[types[ownedRow]];
+        ArtifactType newType = TYPES[found.types[foundRow]];
+        int features = 0;
+        if (ownedType == ArtifactType.STAR_CHART) {
+            switch (newType) {
+                case ENERGY_CRYSTAL:
+                    features = DecisionTable.chartCrystalFeatures(risk[ownedRow] > 7, system[ownedRow] > 10,
+                                                                  DecisionTable.powerBucket(found.power[foundRow]));
+                    break;
+                case INERT_ROCK:
+                    features = found.colorClasses[found.symbol[foundRow]];
+                    break;
+                case STAR_CHART:
+                    features = DecisionTable.chartChartFeatures(found.symbol[foundRow] == symbol[ownedRow],
+                                                                found.risk[foundRow] >= risk[ownedRow] + 2,
+                                                                found.sector[foundRow] == sector[ownedRow]
+                                                                    && found.system[foundRow] != system[ownedRow]);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return DecisionTable.lookup(ownedType, newType, features);
+    }
+
+    /**
+     * Encodes a destination or color, recording the color class of every id this store uses.
+     */
+    private int encode(String text) {
+        if (text == null) {
+            throw new NullPointerException("Artifact stores cannot hold a null destination or color");
+        }
+        int id = symbols.intern(text);
+        if (id == SymbolTable.NOT_FOUND) {
+            throw new IllegalStateException("Too many distinct destinations and colors for one store dictionary");
+        }
+        if (id >= colorClasses.length) {
+            colorClasses = Arrays.copyOf(colorClasses, Math.max(colorClasses.length * 2, id + 1));
+        }
+        colorClasses[id] = (byte) DecisionTable.colorClass(text);
+        return id;
+    }
+
+    private void requireSharedSymbols(ArtifactStore other) {
+        if (other.symbols != symbols) {
+            throw new IllegalArgumentException("Artifact stores must share a symbol dictionary to be compared");
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " outside store of size " + size);
+        }
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        risk = Arrays.copyOf(risk, capacity);
+        sector = Arrays.copyOf(sector, capacity);
+        system = Arrays.copyOf(system, capacity);
+        power = Arrays.copyOf(power, capacity);
+        symbol = Arrays.copyOf(symbol, capacity);
+    }
+
+    /**
+     * Checks the column protocol against {@link Artifacts#rationalScavengerAnalysis} on random
+     * pairs, then sweeps a fleet's cargo against found artifacts both ways and reports the
+     * time per row and the memory per row.
+     *
+     * @param args Optional number of pairs, fleet size and seed
+     */
+    public static void main(String[] args) {
+        int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int fleetSize = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1110L;
+        SplittableRandom random = new SplittableRandom(seed);
+
+        ArtifactStore ownedStore = new ArtifactStore(pairs);
+        ArtifactStore foundStore = new ArtifactStore(pairs, ownedStore.symbols());
+        Artifact[] owned = new Artifact[pairs];
+        Artifact[] found = new Artifact[pairs];
+        for (int i = 0; i < pairs; i++) {
+            owned[i] = FleetSimulation.MIXED_FIELD.next(random);
+            found[i] = FleetSimulation.MIXED_FIELD.next(random);
+            ownedStore.add(owned[i]);
+            foundStore.add(found[i]);
+        }
+        byte[] results = new byte[pairs];
+        ownedStore.analyzeAll(foundStore, results);
+        AnalysisResult[] verdicts = AnalysisResult.values();
+        for (int i = 0; i < pairs; i++) {
+            AnalysisResult expected = Artifacts.rationalScavengerAnalysis(owned[i], found[i], OutputLevel.SILENT);
+            if (verdicts[results[i]] != expected) {
+                System.out.println("Error: column result " + verdicts[results[i]] + " differs from " + expected + " for "
+                                   + Artifacts.describeArtifact(owned[i]) + " / " + Artifacts.describeArtifact(found[i]));
+                return;
+            }
+        }
+        System.out.println("Column protocol matches the rational protocol on " + pairs + " pairs");
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        Scavenger[] fleet = FleetSimulation.mixedFleet(fleetSize, Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7),
+                                                       Artifacts.makeInertRock("red"));
+        for (Scavenger scavenger : fleet) {
+            scavenger.setCargo(FleetSimulation.MIXED_FIELD.next(random));
+        }
+        System.gc();
+        long objects = runtime.totalMemory() - runtime.freeMemory() - before;
+        ArtifactStore cargo = ofCargo(fleet);
+
+        int sweeps = 20;
+        long columnNanos = 0;
+        long objectNanos = 0;
+        for (int sweep = 0; sweep < sweeps; sweep++) {
+            Artifact newArtifact = FleetSimulation.MIXED_FIELD.next(random);
+            long t0 = System.nanoTime();
+            long[] columnCounts = cargo.analyzeAll(newArtifact);
+            long t1 = System.nanoTime();
+            long[] objectCounts = new long[verdicts.length];
+            for (Scavenger scavenger : fleet) {
+                objectCounts[Artifacts.rationalScavengerAnalysis(scavenger.getCargo(), newArtifact, OutputLevel.SILENT).ordinal()]++;
+            }
+            long t2 = System.nanoTime();
+            if (!Arrays.equals(columnCounts, objectCounts)) {
+                System.out.println("Error: fleet sweep counts " + Arrays.toString(columnCounts) + " differ from "
+                                   + Arrays.toString(objectCounts) + " for " + Artifacts.describeArtifact(newArtifact));
+                return;
+            }
+            // The first few sweeps warm up both paths
+            if (sweep >= sweeps / 4) {
+                columnNanos += t1 - t0;
+                objectNanos += t2 - t1;
+            }
+        }
+        double rows = (double) fleetSize * (sweeps - sweeps / 4);
+        System.out.println(String.format("Fleet sweep over %d scavengers: columns %.2f ns/row, objects %.2f ns/row",
+                                         fleetSize, columnNanos / rows, objectNanos / rows));
+        System.out.println(String.format("Cargo footprint: columns %d bytes/row, scavengers and their cargo about %d bytes/row",
+                                         ROW_BYTES, objects / Math.max(1, fleetSize)));
+    }
+}
@@ -2,8 +2,10 @@ package src;
 
 import comp1110.lib.Pair;
 import static comp1110.lib.Functions.*;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.random.RandomGenerator;
 import java.util.Scanner;
 
 /**
@@ -29,9 +31,10 @@ public class Artifacts {
     
     /**
      * Interface representing all types of artifacts in the simulation.
-     * All artifacts must implement this interface to provide type identification.
+     * The hierarchy is sealed: StarChart, EnergyCrystal and InertRock are the only artifacts,
+     * so every (owned, new) type pair can be dispatched on directly.
      */
-    interface Artifact {
+    sealed interface Artifact permits StarChart, EnergyCrystal, InertRock {
         /**
          * Returns the type of artifact (STAR_CHART, ENERGY_CRYSTAL, or INERT_ROCK)
          * @return The ArtifactType enum value for this artifact
@@ -48,12 +51,148 @@ public class Artifacts {
         INERT_ROCK     // A non-reactive rock with distinctive coloration
     }
     
+    /**
+     * Enumeration defining the two kinds of encounters recorded in scavenger logs.
+     * The constant names match the encounter tokens used in the log format.
+     */
+    enum EncounterType {
+        ASTEROID,      // Discovering an artifact on an asteroid
+        TRADING_POST   // Trading with a risk-taking scavenger at a starport
+    }
+    
+    /**
+     * Enumeration of what a scavenger did with the item found on an asteroid.
+     */
+    enum AsteroidOutcome {
+        ACQUIRED,      // VALUABLE item taken
+        TOOK_RISK,     // HAZARDOUS item taken on the 30% gamble
+        DESTROYED,     // HAZARDOUS item destroyed the cargo
+        IGNORED;       // Item left behind
+        
+        /** @return Whether the found item became the scavenger's cargo */
+        boolean taken() {
+            return this == ACQUIRED || this == TOOK_RISK;
+        }
+    }
+    
+    /**
+     * Enumeration of how much console output the analysis and encounter methods produce.
+     * Each call is given its level; the overloads without one print the full narrative.
+     */
+    enum OutputLevel {
+        SILENT,      // Nothing is printed and no output strings are built
+        SUMMARY,     // One line per encounter or trade
+        NARRATIVE    // The full step-by-step narrative
+    }
+    
+    // Asynchronous destination of narrative and summary lines, or null to print them directly
+    private static volatile NarrativeSink narrativeSink;
+    
+    /** @return The installed narrative sink, or null if lines go straight to System.out */
+    static NarrativeSink getNarrativeSink() {
+        return narrativeSink;
+    }
+    
+    /**
+     * Routes narrative and summary output through a sink instead of System.out. Install the
+     * sink before encounters start and remove it after they end, so no encounter straddles the
+     * change.
+     * @param sink The sink, or null to print directly again
+     */
+    static void setNarrativeSink(NarrativeSink sink) {
+        narrativeSink = sink;
+    }
+    
+    /**
+     * Prints one line of narrative or summary output
+     * @param line The line
+     */
+    private static void narrate(String line) {
+        NarrativeSink sink = narrativeSink;
+        if (sink == null) {
+            System.out.println(line);
+        } else {
+            sink.println(line);
+        }
+    }
+    
+    /**
+     * Observer of cargo changes, called by {@link Scavenger#setCargo} on the changing thread.
+     */
+    interface CargoListener {
+        /**
+         * Called after a scavenger's cargo has been replaced
+         * @param scavenger The scavenger whose cargo changed
+         * @param previous The cargo it held before
+         * @param cargo The cargo it holds now
+         */
+        void cargoChanged(Scavenger scavenger, Artifact previous, Artifact cargo);
+    }
+    
+    // Process-wide cargo listeners, replaced as a whole when one is added or removed
+    private static volatile CargoListener[] cargoListeners = new CargoListener[0];
+    
+    /**
+     * Registers a listener for every later cargo change
+     * @param listener The listener to add
+     */
+    static synchronized void addCargoListener(CargoListener listener) {
+        CargoListener[] listeners = Arrays.copyOf(cargoListeners, cargoListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        cargoListeners = listeners;
+    }
+    
+    /**
+     * Unregisters a listener
+     * @param listener The listener to remove
+     */
+    static synchronized void removeCargoListener(CargoListener listener) {
+        CargoListener[] listeners = cargoListeners;
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                CargoListener[] remaining = new CargoListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, remaining, 0, i);
+                System.arraycopy(listeners, i + 1, remaining, i, listeners.length - i - 1);
+                cargoListeners = remaining;
+                return;
+            }
+        }
+    }
+    
+    // Process-wide dictionary of destinations and colors. Every chart and rock carries the id
+    // of its string, so the protocols compare ints; strings that are null or arrive after the
+    // dictionary is full get SymbolTable.NOT_FOUND and are compared as strings instead.
+    static final int MAX_SYMBOLS = 1 << 16;                    // Distinct destinations/colors given ids
+    static final SymbolTable SYMBOLS = new SymbolTable(MAX_SYMBOLS);
+    
+    // Color classes as bit sets over color ids; interned first, so their ids are below 64
+    private static final long SPECIAL_COLORS = colorMask("blue", "green", "purple");
+    private static final long HAZARDOUS_COLORS = colorMask("red");
+    
+    private static long colorMask(String... colors) {
+        long mask = 0;
+        for (String color : colors) {
+            mask |= 1L << SYMBOLS.intern(color);
+        }
+        return mask;
+    }
+    
+    /**
+     * Returns the dictionary id of a destination or color
+     * @param text The destination or color
+     * @return Its id, or SymbolTable.NOT_FOUND if text is null or the dictionary is full
+     */
+    static int symbolId(String text) {
+        return text == null ? SymbolTable.NOT_FOUND : SYMBOLS.intern(text);
+    }
+    
     /**
      * Represents a star chart artifact - a complex navigation tool containing
      * information about space destinations, risk levels, and location coordinates.
      */
-    static class StarChart implements Artifact {
+    static final class StarChart implements Artifact {
         private final String destination;  // The celestial destination marked on the chart
+        private final int destinationId;   // Dictionary id of the destination
         private final int riskFactor;      // Numerical risk assessment (higher = more dangerous)
         private final int sector;          // Galactic sector coordinate
         private final int system;          // Star system coordinate within the sector
@@ -66,7 +205,15 @@ public class Artifacts {
          * @param system Star system coordinate within the sector
          */
         public StarChart(String destination, int riskFactor, int sector, int system) {
+            this(destination, symbolId(destination), riskFactor, sector, system);
+        }
+        
+        /**
+         * Constructs a star chart whose destination has already been looked up in the dictionary
+         */
+        StarChart(String destination, int destinationId, int riskFactor, int sector, int system) {
             this.destination = destination;
+            this.destinationId = destinationId;
             this.riskFactor = riskFactor;
             this.sector = sector;
             this.system = system;
@@ -77,6 +224,23 @@ public class Artifacts {
             return destination;
         }
         
+        /** @return The dictionary id of the destination, or SymbolTable.NOT_FOUND */
+        int getDestinationId() {
+            return destinationId;
+        }
+        
+        /**
+         * Tells whether another chart leads to the same destination
+         * @param other The other chart
+         * @return true if the destinations are equal (throws like String.equals if this one is null)
+         */
+        boolean sameDestination(StarChart other) {
+            if (destinationId != SymbolTable.NOT_FOUND) {
+                return destinationId == other.destinationId;
+            }
+            return destination.equals(other.destination);
+        }
+        
         /** @return The risk factor associated with this destination */
         public int getRiskFactor() {
             return riskFactor;
@@ -106,7 +270,7 @@ public class Artifacts {
      * Represents an energy crystal artifact - a concentrated energy source
      * with a measurable power level that determines its value and utility.
      */
-    static class EnergyCrystal implements Artifact {
+    static final class EnergyCrystal implements Artifact {
         private final int powerLevel;  // The energy output rating of the crystal
         
         /**
@@ -136,8 +300,9 @@ public class Artifacts {
      * Represents an inert rock artifact - a non-reactive mineral formation
      * distinguished by its color, which may indicate hidden properties.
      */
-    static class InertRock implements Artifact {
+    static final class InertRock implements Artifact {
         private final String color;  // The dominant color of the rock
+        private final int colorId;   // Dictionary id of the color
         
         /**
          * Constructs a new InertRock with a specific color
@@ -145,6 +310,7 @@ public class Artifacts {
          */
         public InertRock(String color) {
             this.color = color;
+            this.colorId = symbolId(color);
         }
         
         /** @return The color of this inert rock */
@@ -152,6 +318,33 @@ public class Artifacts {
             return color;
         }
         
+        /** @return The dictionary id of the color, or SymbolTable.NOT_FOUND */
+        int getColorId() {
+            return colorId;
+        }
+        
+        /**
+         * Tells whether another rock has the same color
+         * @param other The other rock
+         * @return true if the colors are equal (throws like String.equals if this one is null)
+         */
+        boolean sameColor(InertRock other) {
+            if (colorId != SymbolTable.NOT_FOUND) {
+                return colorId == other.colorId;
+            }
+            return color.equals(other.color);
+        }
+        
+        /** @return DecisionTable.COLOR_SPECIAL, COLOR_RED or COLOR_OTHER (throws if the color is null) */
+        int colorClass() {
+            if (colorId == SymbolTable.NOT_FOUND) {
+                return DecisionTable.colorClass(color);
+            }
+            long bit = colorId < Long.SIZE ? 1L << colorId : 0;
+            return (SPECIAL_COLORS & bit) != 0 ? DecisionTable.COLOR_SPECIAL
+                : (HAZARDOUS_COLORS & bit) != 0 ? DecisionTable.COLOR_RED : DecisionTable.COLOR_OTHER;
+        }
+        
         /**
          * Returns the artifact type as INERT_ROCK
          * @return ArtifactType.INERT_ROCK
@@ -172,153 +365,369 @@ public class Artifacts {
      * @return AnalysisResult indicating the scavenger's assessment of the new artifact
      */
     static AnalysisResult rationalScavengerAnalysis(Artifact ownedArtifact, Artifact newArtifact) {
-        System.out.println("\n----- Rational Scavenger Analysis Process -----");
-        System.out.println("Analyzing currently held item: " + describeArtifact(ownedArtifact) + " and new item: " + describeArtifact(newArtifact));
+        return rationalScavengerAnalysis(ownedArtifact, newArtifact, OutputLevel.NARRATIVE);
+    }
+    
+    /**
+     * Implements the rational scavenger's analysis protocol at an explicit output level.
+     * Only the NARRATIVE level prints; the analysis itself has nothing to summarize.
+     * 
+     * @param ownedArtifact The artifact the scavenger currently possesses
+     * @param newArtifact The newly discovered artifact being evaluated
+     * @param level How much output to produce
+     * @return AnalysisResult indicating the scavenger's assessment of the new artifact
+     */
+    static AnalysisResult rationalScavengerAnalysis(Artifact ownedArtifact, Artifact newArtifact, OutputLevel level) {
+        boolean narrative = level == OutputLevel.NARRATIVE;
+        if (narrative) {
+            narrate("\n----- Rational Scavenger Analysis Process -----");
+            narrate("Analyzing currently held item: " + describeArtifact(ownedArtifact) + " and new item: " + describeArtifact(newArtifact));
+        }
         
-        // Handle case where owned artifact is a StarChart
-        if (ownedArtifact.getType() == ArtifactType.STAR_CHART) {
-            StarChart ownedChart = (StarChart) ownedArtifact;
-            System.out.println("Currently holding star chart - Destination: " + ownedChart.getDestination() + ", Risk: " + ownedChart.getRiskFactor() + ", Sector: " + ownedChart.getSector() + ", System: " + ownedChart.getSystem());
+        int pair = typePair(ownedArtifact, newArtifact);
+        switch (pair) {
+            case PAIR_CHART_CHART:
+                return rationalChartChart((StarChart) ownedArtifact, (StarChart) newArtifact, narrative);
+            case PAIR_CHART_CRYSTAL:
+                return rationalChartCrystal((StarChart) ownedArtifact, (EnergyCrystal) newArtifact, narrative);
+            case PAIR_CHART_ROCK:
+                return rationalChartRock((StarChart) ownedArtifact, (InertRock) newArtifact, narrative);
+            case PAIR_CRYSTAL_CHART:
+                // A star chart offered to a crystal holder is hazardous
+                return verdict(DecisionTrace.CRYSTAL_HOLDER_CHART, AnalysisResult.HAZARDOUS, false, ownedArtifact, newArtifact, 0, 0, 0);
+            default:
+                // Default case for unhandled artifact combinations
+                return verdict(DecisionTrace.RATIONAL_UNKNOWN, AnalysisResult.UNKNOWN, narrative, ownedArtifact, newArtifact, pair, 0, 0);
+        }
+    }
+    
+    // Indexes of the dispatch matrix: owned type ordinal * TYPE_COUNT + new type ordinal
+    private static final int TYPE_COUNT = 3;
+    private static final int PAIR_CHART_CHART = 0;
+    private static final int PAIR_CHART_CRYSTAL = 1;
+    private static final int PAIR_CHART_ROCK = 2;
+    private static final int PAIR_CRYSTAL_CHART = 3;
+    private static final int PAIR_CRYSTAL_CRYSTAL = 4;
+    private static final int PAIR_ROCK_CHART = 6;
+    private static final int PAIR_ROCK_ROCK = 8;
+    
+    /**
+     * Computes the dispatch matrix index of an artifact type pair. The analysis protocols
+     * switch on it, so each pair goes straight to its own handler with a single jump.
+     * 
+     * @param ownedArtifact The artifact the scavenger currently possesses
+     * @param newArtifact The newly discovered artifact being evaluated
+     * @return ownedType.ordinal() * 3 + newType.ordinal()
+     */
+    static int typePair(Artifact ownedArtifact, Artifact newArtifact) {
+        return ownedArtifact.getType().ordinal() * TYPE_COUNT + newArtifact.getType().ordinal();
+    }
+    
+    /**
+     * Prints the owned star chart, which every star chart holder's analysis starts with
+     */
+    private static void narrateOwnedChart(StarChart ownedChart) {
+        narrate("Currently holding star chart - Destination: " + ownedChart.getDestination() + ", Risk: " + ownedChart.getRiskFactor() + ", Sector: " + ownedChart.getSector() + ", System: " + ownedChart.getSystem());
+    }
+    
+    /**
+     * Returns a protocol verdict, narrating the rule that reached it and recording it in the
+     * decision trace when tracing is enabled
+     * 
+     * @param rule The deciding rule, one of the DecisionTrace rule ids
+     * @param result The verdict
+     * @param narrative Whether to print the rule's sentence
+     * @param ownedArtifact The artifact the scavenger currently possesses
+     * @param newArtifact The artifact being evaluated
+     * @param a First operand the rule compared
+     * @param b Second operand
+     * @param c Third operand
+     * @return The verdict
+     */
+    private static AnalysisResult verdict(int rule, AnalysisResult result, boolean narrative,
+                                          Artifact ownedArtifact, Artifact newArtifact, int a, int b, int c) {
+        if (narrative) {
+            narrate(DecisionTrace.text(rule));
+        }
+        if (DecisionTrace.enabled) {
+            DecisionTrace.record(rule, result, ownedArtifact, newArtifact, a, b, c);
+        }
+        return result;
+    }
+    
+    /**
+     * Rational protocol for a star chart holder evaluating an energy crystal
+     */
+    private static AnalysisResult rationalChartCrystal(StarChart ownedChart, EnergyCrystal crystal, boolean narrative) {
+        if (narrative) {
+            narrateOwnedChart(ownedChart);
+            narrate("Discovered energy crystal - Power: " + crystal.getPowerLevel());
+        }
+        
+        // Check if star chart has ideal risk/system configuration
+        if ((ownedChart.getRiskFactor() > 7 && ownedChart.getSystem() > 10) || 
+            (ownedChart.getRiskFactor() <= 7 && ownedChart.getSystem() <= 10)) {
+            if (narrative) {
+                narrate("Star chart is particularly valuable - ideal risk and system configuration");
+            }
             
-            // Evaluate new EnergyCrystal against owned StarChart
-            if (newArtifact.getType() == ArtifactType.ENERGY_CRYSTAL) {
-                EnergyCrystal crystal = (EnergyCrystal) newArtifact;
-                System.out.println("Discovered energy crystal - Power: " + crystal.getPowerLevel());
-                
-                // Check if star chart has ideal risk/system configuration
-                if ((ownedChart.getRiskFactor() > 7 && ownedChart.getSystem() > 10) || 
-                    (ownedChart.getRiskFactor() <= 7 && ownedChart.getSystem() <= 10)) {
-                    System.out.println("Star chart is particularly valuable - ideal risk and system configuration");
-                    
-                    // Evaluate crystal based on power level thresholds
-                    if (crystal.getPowerLevel() < 5) {
-                        System.out.println("Low power energy crystal (power < 5) considered hazardous");
-                        return AnalysisResult.HAZARDOUS;
-                    } else if (crystal.getPowerLevel() < 15) {
-                        System.out.println("Medium power energy crystal (power 5-14) considered mundane");
-                        return AnalysisResult.MUNDANE;
-                    } else {
-                        System.out.println("High power energy crystal (power >=15) considered incompatible");
-                        return AnalysisResult.INCOMPATIBLE;
-                    }
-                } else {
-                    System.out.println("Star chart has regular value");
-                    
-                    // Alternative evaluation criteria for regular value star charts
-                    if (crystal.getPowerLevel() >= 10) {
-                        System.out.println("High power energy crystal (power >=10) considered valuable");
-                        return AnalysisResult.VALUABLE;
-                    } else if (crystal.getPowerLevel() < 5) {
-                        System.out.println("Low power energy crystal (power <5) considered hazardous");
-                        return AnalysisResult.HAZARDOUS;
-                    } else {
-                        System.out.println("Medium power energy crystal (power 5-9) considered mundane");
-                        return AnalysisResult.MUNDANE;
-                    }
-                }
+            // Evaluate crystal based on power level thresholds
+            if (crystal.getPowerLevel() < 5) {
+                return verdict(DecisionTrace.IDEAL_CHART_LOW_POWER, AnalysisResult.HAZARDOUS, narrative, ownedChart, crystal,
+                               crystal.getPowerLevel(), ownedChart.getRiskFactor(), ownedChart.getSystem());
+            } else if (crystal.getPowerLevel() < 15) {
+                return verdict(DecisionTrace.IDEAL_CHART_MEDIUM_POWER, AnalysisResult.MUNDANE, narrative, ownedChart, crystal,
+                               crystal.getPowerLevel(), ownedChart.getRiskFactor(), ownedChart.getSystem());
+            } else {
+                return verdict(DecisionTrace.IDEAL_CHART_HIGH_POWER, AnalysisResult.INCOMPATIBLE, narrative, ownedChart, crystal,
+                               crystal.getPowerLevel(), ownedChart.getRiskFactor(), ownedChart.getSystem());
             }
-            // Evaluate new InertRock against owned StarChart
-            else if (newArtifact.getType() == ArtifactType.INERT_ROCK) {
-                InertRock rock = (InertRock) newArtifact;
-                System.out.println("Discovered inert rock - Color: " + rock.getColor());
-                
-                // Evaluate based on rock color
-                if (rock.getColor().equals("blue") || rock.getColor().equals("green") || rock.getColor().equals("purple")) {
-                    System.out.println("Special color rock (blue/green/purple) considered valuable");
-                    return AnalysisResult.VALUABLE;
-                } else if (rock.getColor().equals("red")) {
-                    System.out.println("Red rock considered hazardous");
-                    return AnalysisResult.HAZARDOUS;
-                } else {
-                    System.out.println("Other color rock considered mundane");
-                    return AnalysisResult.MUNDANE;
-                }
+        } else {
+            if (narrative) {
+                narrate("Star chart has regular value");
             }
-            // Evaluate new StarChart against owned StarChart
-            else if (newArtifact.getType() == ArtifactType.STAR_CHART) {
-                StarChart newChart = (StarChart) newArtifact;
-                System.out.println("Discovered new star chart - Destination: " + newChart.getDestination() + ", Risk: " + newChart.getRiskFactor() + ", Sector: " + newChart.getSector() + ", System: " + newChart.getSystem());
-                
-                // Evaluate based on destination, risk factor, and coordinates
-                if (newChart.getDestination().equals(ownedChart.getDestination())) {
-                    System.out.println("Star charts with same destination considered incompatible");
-                    return AnalysisResult.INCOMPATIBLE;
-                } else if (newChart.getRiskFactor() >= ownedChart.getRiskFactor() + 2) {
-                    System.out.println("High risk star chart (risk +2 or more) considered hazardous");
-                    return AnalysisResult.HAZARDOUS;
-                } else if (newChart.getSector() == ownedChart.getSector() && newChart.getSystem() != ownedChart.getSystem()) {
-                    System.out.println("Star charts with same sector different system considered valuable");
-                    return AnalysisResult.VALUABLE;
-                } else {
-                    System.out.println("Other star chart cases considered mundane");
-                    return AnalysisResult.MUNDANE;
-                }
+            
+            // Alternative evaluation criteria for regular value star charts
+            if (crystal.getPowerLevel() >= 10) {
+                return verdict(DecisionTrace.REGULAR_CHART_HIGH_POWER, AnalysisResult.VALUABLE, narrative, ownedChart, crystal,
+                               crystal.getPowerLevel(), ownedChart.getRiskFactor(), ownedChart.getSystem());
+            } else if (crystal.getPowerLevel() < 5) {
+                return verdict(DecisionTrace.REGULAR_CHART_LOW_POWER, AnalysisResult.HAZARDOUS, narrative, ownedChart, crystal,
+                               crystal.getPowerLevel(), ownedChart.getRiskFactor(), ownedChart.getSystem());
+            } else {
+                return verdict(DecisionTrace.REGULAR_CHART_MEDIUM_POWER, AnalysisResult.MUNDANE, narrative, ownedChart, crystal,
+                               crystal.getPowerLevel(), ownedChart.getRiskFactor(), ownedChart.getSystem());
             }
         }
+    }
+    
+    /**
+     * Rational protocol for a star chart holder evaluating an inert rock
+     */
+    private static AnalysisResult rationalChartRock(StarChart ownedChart, InertRock rock, boolean narrative) {
+        if (narrative) {
+            narrateOwnedChart(ownedChart);
+            narrate("Discovered inert rock - Color: " + rock.getColor());
+        }
         
-        // Handle comparisons between StarChart and EnergyCrystal in either order
-        if ((ownedArtifact.getType() == ArtifactType.STAR_CHART && newArtifact.getType() == ArtifactType.ENERGY_CRYSTAL) ||
-            (ownedArtifact.getType() == ArtifactType.ENERGY_CRYSTAL && newArtifact.getType() == ArtifactType.STAR_CHART)) {
-            // If new artifact is star chart, result is hazardous; otherwise mundane
-            return (newArtifact.getType() == ArtifactType.STAR_CHART) ? 
-                AnalysisResult.HAZARDOUS : AnalysisResult.MUNDANE;
+        // Evaluate based on rock color
+        int colorClass = rock.colorClass();
+        if (colorClass == DecisionTable.COLOR_SPECIAL) {
+            return verdict(DecisionTrace.SPECIAL_COLOR_ROCK, AnalysisResult.VALUABLE, narrative, ownedChart, rock, 0, 0, 0);
+        } else if (colorClass == DecisionTable.COLOR_RED) {
+            return verdict(DecisionTrace.RED_ROCK, AnalysisResult.HAZARDOUS, narrative, ownedChart, rock, 0, 0, 0);
+        } else {
+            return verdict(DecisionTrace.OTHER_COLOR_ROCK, AnalysisResult.MUNDANE, narrative, ownedChart, rock, 0, 0, 0);
+        }
+    }
+    
+    /**
+     * Rational protocol for a star chart holder evaluating another star chart
+     */
+    private static AnalysisResult rationalChartChart(StarChart ownedChart, StarChart newChart, boolean narrative) {
+        if (narrative) {
+            narrateOwnedChart(ownedChart);
+            narrate("Discovered new star chart - Destination: " + newChart.getDestination() + ", Risk: " + newChart.getRiskFactor() + ", Sector: " + newChart.getSector() + ", System: " + newChart.getSystem());
         }
         
-        // Default case for unhandled artifact combinations
-        System.out.println("Cannot perform specific analysis, returning unknown result");
-        return AnalysisResult.UNKNOWN;
+        // Evaluate based on destination, risk factor, and coordinates
+        if (newChart.sameDestination(ownedChart)) {
+            return verdict(DecisionTrace.CHART_SAME_DESTINATION, AnalysisResult.INCOMPATIBLE, narrative, ownedChart, newChart, 0, 0, 0);
+        } else if (newChart.getRiskFactor() >= ownedChart.getRiskFactor() + 2) {
+            return verdict(DecisionTrace.CHART_RISKIER, AnalysisResult.HAZARDOUS, narrative, ownedChart, newChart,
+                           newChart.getRiskFactor(), ownedChart.getRiskFactor(), 0);
+        } else if (newChart.getSector() == ownedChart.getSector() && newChart.getSystem() != ownedChart.getSystem()) {
+            return verdict(DecisionTrace.CHART_NEIGHBOR, AnalysisResult.VALUABLE, narrative, ownedChart, newChart,
+                           newChart.getSector(), newChart.getSystem(), ownedChart.getSystem());
+        } else {
+            return verdict(DecisionTrace.CHART_OTHER, AnalysisResult.MUNDANE, narrative, ownedChart, newChart, 0, 0, 0);
+        }
     }
     
     /**
      * Implements the risk-taking scavenger's analysis protocol for evaluating new artifacts.
      * This method follows simpler, more risk-tolerant decision logic compared to the rational protocol.
+     * Its coin flip between differently colored rocks is drawn from the calling thread's
+     * {@link Randomness} generator.
      * 
      * @param ownedArtifact The artifact the scavenger currently possesses
      * @param newArtifact The newly discovered artifact being evaluated
      * @return AnalysisResult indicating the scavenger's assessment of the new artifact
      */
     static AnalysisResult riskTakerScavengerAnalysis(Artifact ownedArtifact, Artifact newArtifact) {
-        // Get types of both artifacts for comparison
-        ArtifactType ownedType = ownedArtifact.getType();
-        ArtifactType newType = newArtifact.getType();
+        int pair = typePair(ownedArtifact, newArtifact);
+        switch (pair) {
+            case PAIR_CHART_CHART:
+            case PAIR_CRYSTAL_CHART:
+            case PAIR_ROCK_CHART:
+                // Risk-takers always value new star charts
+                return verdict(DecisionTrace.RISK_NEW_CHART, AnalysisResult.VALUABLE, false, ownedArtifact, newArtifact, 0, 0, 0);
+            case PAIR_CHART_CRYSTAL:
+            case PAIR_CHART_ROCK:
+                // If owning a star chart, other artifact types are considered mundane
+                return verdict(DecisionTrace.RISK_CHART_HOLDER, AnalysisResult.MUNDANE, false, ownedArtifact, newArtifact, 0, 0, 0);
+            case PAIR_CRYSTAL_CRYSTAL:
+                return riskTakerCrystalCrystal((EnergyCrystal) ownedArtifact, (EnergyCrystal) newArtifact);
+            case PAIR_ROCK_ROCK:
+                return riskTakerRockRock((InertRock) ownedArtifact, (InertRock) newArtifact);
+            default:
+                // Unhandled combinations result in unknown
+                return verdict(DecisionTrace.RISK_UNKNOWN, AnalysisResult.UNKNOWN, false, ownedArtifact, newArtifact, pair, 0, 0);
+        }
+    }
+    
+    /**
+     * Risk-taking protocol comparing two energy crystals based on power levels
+     */
+    private static AnalysisResult riskTakerCrystalCrystal(EnergyCrystal ownedCrystal, EnergyCrystal newCrystal) {
+        // More powerful crystals are valued
+        if (newCrystal.getPowerLevel() > ownedCrystal.getPowerLevel()) {
+            return verdict(DecisionTrace.RISK_STRONGER_CRYSTAL, AnalysisResult.VALUABLE, false, ownedCrystal, newCrystal,
+                           newCrystal.getPowerLevel(), ownedCrystal.getPowerLevel(), 0);
+        }
+        return verdict(DecisionTrace.RISK_WEAKER_CRYSTAL, AnalysisResult.MUNDANE, false, ownedCrystal, newCrystal,
+                       newCrystal.getPowerLevel(), ownedCrystal.getPowerLevel(), 0);
+    }
+    
+    /**
+     * Risk-taking protocol comparing two inert rocks based on color
+     */
+    private static AnalysisResult riskTakerRockRock(InertRock ownedRock, InertRock newRock) {
+        // Same color is mundane
+        if (ownedRock.sameColor(newRock)) {
+            return verdict(DecisionTrace.RISK_SAME_COLOR, AnalysisResult.MUNDANE, false, ownedRock, newRock, 0, 0, 0);
+        } else {
+            // Different colors decided by random chance
+            AnalysisResult result = Randomness.current().nextBoolean() ? 
+                AnalysisResult.VALUABLE : AnalysisResult.INCOMPATIBLE;
+            return verdict(DecisionTrace.RISK_COIN_FLIP, result, false, ownedRock, newRock, 0, 0, 0);
+        }
+    }
+    
+    /**
+     * An analysis protocol that can also tell, before analyzing anything, which artifact
+     * types it could ever rate VALUABLE and whether its verdict on a pair is repeatable.
+     * Trading engines use the former to skip scavenger pairs that can never agree on a
+     * trade; analysis caches use the latter to decide what they may remember.
+     */
+    interface Protocol extends BiFunction<Artifact, Artifact, AnalysisResult> {
+        /**
+         * Returns the new-artifact types this protocol may rate VALUABLE while holding the given type
+         * @param ownedType Type of the artifact currently held
+         * @return Bit set of typeBit values; ALL_TYPES if nothing can be ruled out
+         */
+        default int valuableTypes(ArtifactType ownedType) {
+            return ALL_TYPES;
+        }
+        
+        /**
+         * Tells whether this protocol always gives the same result for artifacts equal to these
+         * @param ownedArtifact The artifact the scavenger currently possesses
+         * @param newArtifact The newly discovered artifact being evaluated
+         * @return true if the result depends only on the artifacts' fields; false if it may
+         *         involve chance (the default, since nothing is known about the protocol)
+         */
+        default boolean isDeterministic(Artifact ownedArtifact, Artifact newArtifact) {
+            return false;
+        }
+        
+        /**
+         * Analyzes a new artifact at an explicit output level. Protocols that print nothing
+         * need not override this.
+         * @param ownedArtifact The artifact the scavenger currently possesses
+         * @param newArtifact The newly discovered artifact being evaluated
+         * @param level How much output to produce
+         * @return AnalysisResult indicating the assessment of the new artifact
+         */
+        default AnalysisResult analyze(Artifact ownedArtifact, Artifact newArtifact, OutputLevel level) {
+            return apply(ownedArtifact, newArtifact);
+        }
+    }
+    
+    /** Bit set containing every artifact type */
+    static final int ALL_TYPES = (1 << ArtifactType.values().length) - 1;
+    
+    /**
+     * Returns the bit representing an artifact type in valuableTypes bit sets
+     * @param type The artifact type
+     * @return Bit for the type
+     */
+    static int typeBit(ArtifactType type) {
+        return 1 << type.ordinal();
+    }
+    
+    /**
+     * Returns the new-artifact types a protocol may rate VALUABLE. Protocols that are plain
+     * BiFunctions cannot rule anything out.
+     * @param protocol The analysis protocol
+     * @param ownedType Type of the artifact currently held
+     * @return Bit set of typeBit values
+     */
+    static int valuableTypes(BiFunction<Artifact, Artifact, AnalysisResult> protocol, ArtifactType ownedType) {
+        return protocol instanceof Protocol ? ((Protocol) protocol).valuableTypes(ownedType) : ALL_TYPES;
+    }
+    
+    /**
+     * Runs a protocol at an output level. Protocols that are plain BiFunctions are simply
+     * applied, as they know of no levels.
+     * @param protocol The analysis protocol
+     * @param ownedArtifact The artifact the scavenger currently possesses
+     * @param newArtifact The newly discovered artifact being evaluated
+     * @param level How much output to produce
+     * @return The protocol's assessment of the new artifact
+     */
+    static AnalysisResult analyze(BiFunction<Artifact, Artifact, AnalysisResult> protocol,
+                                  Artifact ownedArtifact, Artifact newArtifact, OutputLevel level) {
+        return protocol instanceof Protocol ? ((Protocol) protocol).analyze(ownedArtifact, newArtifact, level)
+            : protocol.apply(ownedArtifact, newArtifact);
+    }
+    
+    /** The rational protocol: only a star chart holder ever finds anything valuable */
+    static final Protocol RATIONAL_PROTOCOL = new Protocol() {
+        @Override
+        public AnalysisResult apply(Artifact ownedArtifact, Artifact newArtifact) {
+            return rationalScavengerAnalysis(ownedArtifact, newArtifact);
+        }
+        
+        @Override
+        public AnalysisResult analyze(Artifact ownedArtifact, Artifact newArtifact, OutputLevel level) {
+            return rationalScavengerAnalysis(ownedArtifact, newArtifact, level);
+        }
         
-        // Risk-takers always value new star charts
-        if (newType == ArtifactType.STAR_CHART) {
-            return AnalysisResult.VALUABLE;
+        @Override
+        public int valuableTypes(ArtifactType ownedType) {
+            return ownedType == ArtifactType.STAR_CHART ? ALL_TYPES : 0;
         }
         
-        // If owning a star chart, other artifact types are considered mundane
-        if (ownedType == ArtifactType.STAR_CHART) {
-            return AnalysisResult.MUNDANE;
+        @Override
+        public boolean isDeterministic(Artifact ownedArtifact, Artifact newArtifact) {
+            return true;
+        }
+    };
+    
+    /** The risk-taking protocol: star charts always, or a matching crystal/rock type */
+    static final Protocol RISK_TAKER_PROTOCOL = new Protocol() {
+        @Override
+        public AnalysisResult apply(Artifact ownedArtifact, Artifact newArtifact) {
+            return riskTakerScavengerAnalysis(ownedArtifact, newArtifact);
         }
         
-        // Compare two energy crystals based on power levels
-        if (ownedType == ArtifactType.ENERGY_CRYSTAL && newType == ArtifactType.ENERGY_CRYSTAL) {
-            EnergyCrystal ownedCrystal = (EnergyCrystal) ownedArtifact;
-            EnergyCrystal newCrystal = (EnergyCrystal) newArtifact;
-            // More powerful crystals are valued
-            return (newCrystal.getPowerLevel() > ownedCrystal.getPowerLevel()) ? 
-                AnalysisResult.VALUABLE : AnalysisResult.MUNDANE;
+        @Override
+        public int valuableTypes(ArtifactType ownedType) {
+            return ownedType == ArtifactType.STAR_CHART ? typeBit(ArtifactType.STAR_CHART)
+                : typeBit(ArtifactType.STAR_CHART) | typeBit(ownedType);
         }
         
-        // Compare two inert rocks based on color
-        if (ownedType == ArtifactType.INERT_ROCK && newType == ArtifactType.INERT_ROCK) {
-            InertRock ownedRock = (InertRock) ownedArtifact;
-            InertRock newRock = (InertRock) newArtifact;
-            
-            // Same color is mundane
-            if (ownedRock.getColor().equals(newRock.getColor())) {
-                return AnalysisResult.MUNDANE;
-            } else {
-                // Different colors decided by random chance
-                return (new Random().nextBoolean()) ? 
-                    AnalysisResult.VALUABLE : AnalysisResult.INCOMPATIBLE;
+        @Override
+        public boolean isDeterministic(Artifact ownedArtifact, Artifact newArtifact) {
+            // Two rocks of different colors are decided by a coin flip
+            if (ownedArtifact.getType() != ArtifactType.INERT_ROCK || newArtifact.getType() != ArtifactType.INERT_ROCK) {
+                return true;
             }
+            InertRock ownedRock = (InertRock) ownedArtifact;
+            return ownedRock.getColor() != null && ownedRock.sameColor((InertRock) newArtifact);
         }
-        
-        // Unhandled combinations result in unknown
-        return AnalysisResult.UNKNOWN;
-    }
+    };
     
     // Helper methods for evaluating analysis results
     /** @return true if the result is VALUABLE */
@@ -360,21 +769,89 @@ public class Artifacts {
     }
     
     /**
-     * Creates a new EnergyCrystal artifact
+     * Creates a new StarChart artifact from a destination already in the dictionary, as
+     * parsers that intern their input do
+     * @param destinationId Dictionary id of the destination
+     * @param risk Risk factor value
+     * @param sector Sector coordinate
+     * @param system System coordinate
+     * @return New StarChart instance
+     */
+    static Artifact makeStarChart(int destinationId, int risk, int sector, int system) {
+        return new StarChart(SYMBOLS.symbol(destinationId), destinationId, risk, sector, system);
+    }
+    
+    /**
+     * Returns an EnergyCrystal artifact. Crystals whose power lies within the interning
+     * range are shared canonical instances, so they may be compared with ==.
      * @param power Power level value
-     * @return New EnergyCrystal instance
+     * @return EnergyCrystal instance with the given power
      */
     static Artifact makeEnergyCrystal(int power) {
+        CrystalCache cache = crystalCache;
+        int slot = power - cache.minPower;
+        if (slot >= 0 && slot < cache.crystals.length) {
+            return cache.crystals[slot];
+        }
         return new EnergyCrystal(power);
     }
     
     /**
-     * Creates a new InertRock artifact
+     * Returns an InertRock artifact. Each color gets one canonical instance (up to
+     * MAX_INTERNED_COLORS colors), so interned rocks may be compared with ==.
      * @param color Color description
-     * @return New InertRock instance
+     * @return InertRock instance with the given color
      */
     static Artifact makeInertRock(String color) {
-        return new InertRock(color);
+        if (color == null) {
+            return new InertRock(null);
+        }
+        InertRock rock = internedRocks.get(color);
+        if (rock != null) {
+            return rock;
+        }
+        if (internedRocks.size() >= MAX_INTERNED_COLORS) {
+            return new InertRock(color);
+        }
+        return internedRocks.computeIfAbsent(color, InertRock::new);
+    }
+    
+    // Interning caches for the immutable, low-cardinality artifact types
+    static final int MAX_INTERNED_COLORS = 1024;               // Colors beyond this get fresh instances
+    static final int MAX_CRYSTAL_CACHE_SIZE = 1 << 16;         // Largest configurable power range
+    private static final ConcurrentHashMap<String, InertRock> internedRocks = new ConcurrentHashMap<>();
+    private static volatile CrystalCache crystalCache = new CrystalCache(0, 127);
+    
+    /** The rock left behind when hazardous radiation destroys a scavenger's cargo */
+    static final Artifact DULL_GREY_ROCK = makeInertRock("dull grey");
+    
+    /**
+     * Canonical EnergyCrystal instances for a contiguous range of power levels.
+     */
+    private static final class CrystalCache {
+        final int minPower;                // Power level of crystals[0]
+        final EnergyCrystal[] crystals;    // One instance per power level in the range
+        
+        CrystalCache(int minPower, int maxPower) {
+            this.minPower = minPower;
+            this.crystals = new EnergyCrystal[maxPower - minPower + 1];
+            for (int i = 0; i < crystals.length; i++) {
+                crystals[i] = new EnergyCrystal(minPower + i);
+            }
+        }
+    }
+    
+    /**
+     * Sets the range of power levels for which makeEnergyCrystal returns canonical instances.
+     * Crystals handed out before the change stay valid but are no longer canonical.
+     * @param minPower Lowest interned power level
+     * @param maxPower Highest interned power level
+     */
+    static void configureCrystalCache(int minPower, int maxPower) {
+        if (maxPower < minPower || (long) maxPower - minPower >= MAX_CRYSTAL_CACHE_SIZE) {
+            throw new IllegalArgumentException("Invalid crystal cache range: " + minPower + ".." + maxPower);
+        }
+        crystalCache = new CrystalCache(minPower, maxPower);
     }
     
     /**
@@ -413,7 +890,11 @@ public class Artifacts {
          * @param artifact The new artifact to carry
          */
         public void setCargo(Artifact artifact) {
+            Artifact previous = cargo;
             this.cargo = artifact;
+            for (CargoListener listener : cargoListeners) {
+                listener.cargoChanged(this, previous, artifact);
+            }
         }
         
         /** @return The scavenger's personal analysis protocol */
@@ -426,140 +907,292 @@ public class Artifacts {
      * Simulates a scavenger exploring an asteroid and discovering a new artifact.
      * The scavenger uses their personal analysis protocol to evaluate the new artifact
      * and decides whether to keep it, discard their current cargo, or avoid it entirely.
+     * The full narrative is printed, and the hazardous-item risk decision is drawn from the
+     * calling thread's {@link Randomness} generator.
      * 
      * @param scavenger The scavenger exploring the asteroid
      * @param foundArtifact The newly discovered artifact
      * @return A Pair containing the updated scavenger and the artifact left behind
      */
     static Pair<Scavenger, Artifact> exploreAsteroid(Scavenger scavenger, Artifact foundArtifact) {
-        System.out.println("\n----- Exploring Asteroid -----");
-        System.out.println("Scavenger: " + scavenger.getName());
-        System.out.println("Currently holding: " + describeArtifact(scavenger.getCargo()));
-        System.out.println("Held item details: " + getDetailedArtifactInfo(scavenger.getCargo()));
-        System.out.println("Discovered item: " + describeArtifact(foundArtifact));
-        System.out.println("Discovered item details: " + getDetailedArtifactInfo(foundArtifact));
+        return exploreAsteroid(scavenger, foundArtifact, Randomness.current(), OutputLevel.NARRATIVE);
+    }
+    
+    /**
+     * Simulates a scavenger exploring an asteroid at an explicit output level, drawing the
+     * hazardous-item risk decision from the given generator so that simulations can be
+     * replayed from a seed.
+     * 
+     * @param scavenger The scavenger exploring the asteroid
+     * @param foundArtifact The newly discovered artifact
+     * @param random Source of the hazardous-item risk decision
+     * @param level How much output to produce
+     * @return A Pair containing the updated scavenger and the artifact left behind
+     */
+    static Pair<Scavenger, Artifact> exploreAsteroid(Scavenger scavenger, Artifact foundArtifact, RandomGenerator random,
+                                                     OutputLevel level) {
+        Artifact heldArtifact = scavenger.getCargo();
+        AsteroidOutcome outcome = exploreAsteroidOutcome(scavenger, foundArtifact, random, level);
+        return new Pair<>(scavenger, outcome.taken() ? heldArtifact : foundArtifact);
+    }
+    
+    /**
+     * Simulates a scavenger exploring an asteroid and reports what happened. Interned rocks
+     * and crystals make the cargo before and after an unreliable guide to that, since the
+     * found artifact may be the very instance already held.
+     * 
+     * @param scavenger The scavenger exploring the asteroid
+     * @param foundArtifact The newly discovered artifact
+     * @param random Source of the hazardous-item risk decision
+     * @param level How much output to produce
+     * @return What the scavenger did with the found artifact
+     */
+    static AsteroidOutcome exploreAsteroidOutcome(Scavenger scavenger, Artifact foundArtifact, RandomGenerator random, OutputLevel level) {
+        NarrativeSink sink = narrativeSink;
+        if (sink == null || level == OutputLevel.SILENT) {
+            return explore(scavenger, foundArtifact, random, level);
+        }
+        // Publish the whole encounter as one record, so other workers' lines cannot split it
+        sink.begin();
+        try {
+            return explore(scavenger, foundArtifact, random, level);
+        } finally {
+            sink.end();
+        }
+    }
+    
+    /**
+     * Simulates a scavenger exploring an asteroid; the body of exploreAsteroid
+     * @return The encounter's outcome, as for exploreAsteroidOutcome
+     */
+    private static AsteroidOutcome explore(Scavenger scavenger, Artifact foundArtifact, RandomGenerator random, OutputLevel level) {
+        boolean narrative = level == OutputLevel.NARRATIVE;
+        EncounterMetrics.Sample metrics = EncounterMetrics.enabled ? EncounterMetrics.sampleEncounter() : null;
+        if (narrative) {
+            narrate("\n----- Exploring Asteroid -----");
+            narrate("Scavenger: " + scavenger.getName());
+            narrate("Currently holding: " + describeArtifact(scavenger.getCargo()));
+            narrate("Held item details: " + getDetailedArtifactInfo(scavenger.getCargo()));
+            narrate("Discovered item: " + describeArtifact(foundArtifact));
+            narrate("Discovered item details: " + getDetailedArtifactInfo(foundArtifact));
+        }
         
         // Analyze the new artifact using the scavenger's protocol
-        AnalysisResult result = scavenger.getPersonalProtocol().apply(scavenger.getCargo(), foundArtifact);
-        System.out.println("Analysis result: " + translateAnalysisResult(result) + " (" + result + ")");
-        
-        // Determine action based on analysis result
-        System.out.println("Executing decision based on analysis result:");
+        Artifact heldArtifact = scavenger.getCargo();
+        AnalysisResult result = analyze(scavenger.getPersonalProtocol(), heldArtifact, foundArtifact, level);
+        if (metrics != null) {
+            metrics.recordAnalysis(scavenger.getPersonalProtocol(), heldArtifact, foundArtifact, result);
+        }
+        if (narrative) {
+            narrate("Analysis result: " + translateAnalysisResult(result) + " (" + result + ")");
+            
+            // Determine action based on analysis result
+            narrate("Executing decision based on analysis result:");
+        }
+        AsteroidOutcome outcome = AsteroidOutcome.IGNORED;
+        int rule = DecisionTrace.ASTEROID_UNKNOWN;   // Decision recorded in the trace
+        double chance = 0;
         switch (result) {
             case VALUABLE:
                 // Replace current cargo with the valuable new artifact
-                System.out.println("Discovered item is more valuable, deciding to replace current cargo");
-                System.out.println("Discarding: " + describeArtifact(scavenger.getCargo()));
-                System.out.println("Acquiring: " + describeArtifact(foundArtifact));
-                Artifact oldCargo = scavenger.getCargo();
+                if (narrative) {
+                    narrate(DecisionTrace.text(DecisionTrace.ASTEROID_ACQUIRED));
+                    narrate("Discarding: " + describeArtifact(scavenger.getCargo()));
+                    narrate("Acquiring: " + describeArtifact(foundArtifact));
+                }
                 scavenger.setCargo(foundArtifact);
-                return new Pair<>(scavenger, oldCargo);
+                outcome = AsteroidOutcome.ACQUIRED;
+                rule = DecisionTrace.ASTEROID_ACQUIRED;
+                break;
                 
             case HAZARDOUS:
                 // 30% chance to take the hazardous item, 70% chance of cargo destruction
-                Random random = new Random();
-                double chance = random.nextDouble();
-                System.out.println("Item determined to be hazardous, making risk decision (random value: " + String.format("%.2f", chance) + ")");
+                chance = random.nextDouble();
+                if (narrative) {
+                    narrate("Item determined to be hazardous, making risk decision (random value: " + String.format("%.2f", chance) + ")");
+                }
                 
                 if (chance < 0.3) { 
-                    System.out.println("Item is hazardous, but scavenger decides to take the risk (30% success probability)");
-                    Artifact oldCargoHazard = scavenger.getCargo();
+                    if (narrative) {
+                        narrate(DecisionTrace.text(DecisionTrace.ASTEROID_TOOK_RISK));
+                    }
                     scavenger.setCargo(foundArtifact);
-                    return new Pair<>(scavenger, oldCargoHazard);
+                    outcome = AsteroidOutcome.TOOK_RISK;
+                    rule = DecisionTrace.ASTEROID_TOOK_RISK;
                 } else {
-                    System.out.println("Item is hazardous, scavenger decides not to take risk (70% failure probability)");
-                    System.out.println("Current cargo destroyed by hazardous radiation");
-                    System.out.println("Original item: " + describeArtifact(scavenger.getCargo()) + " replaced with dull grey inert rock");
-                    scavenger.setCargo(makeInertRock("dull grey"));
-                    return new Pair<>(scavenger, foundArtifact);
+                    if (narrative) {
+                        narrate(DecisionTrace.text(DecisionTrace.ASTEROID_DESTROYED));
+                        narrate("Current cargo destroyed by hazardous radiation");
+                        narrate("Original item: " + describeArtifact(scavenger.getCargo()) + " replaced with dull grey inert rock");
+                    }
+                    scavenger.setCargo(DULL_GREY_ROCK);
+                    outcome = AsteroidOutcome.DESTROYED;
+                    rule = DecisionTrace.ASTEROID_DESTROYED;
                 }
+                break;
                 
             case MUNDANE:
                 // Ignore the mundane item
-                System.out.println("Discovered item is mundane, deciding to ignore and keep current cargo");
-                System.out.println("Keeping: " + describeArtifact(scavenger.getCargo()));
+                rule = DecisionTrace.ASTEROID_MUNDANE;
+                if (narrative) {
+                    narrate(DecisionTrace.text(rule));
+                    narrate("Keeping: " + describeArtifact(scavenger.getCargo()));
+                }
                 break;
                 
             case INCOMPATIBLE:
                 // Ignore incompatible item
-                System.out.println("Discovered item is incompatible with current cargo, deciding to ignore");
-                System.out.println("Keeping: " + describeArtifact(scavenger.getCargo()));
+                rule = DecisionTrace.ASTEROID_INCOMPATIBLE;
+                if (narrative) {
+                    narrate(DecisionTrace.text(rule));
+                    narrate("Keeping: " + describeArtifact(scavenger.getCargo()));
+                }
                 break;
                 
             case UNKNOWN:
                 // Ignore unknown item for safety
-                System.out.println("Cannot analyze discovered item, deciding to ignore for safety");
-                System.out.println("Keeping: " + describeArtifact(scavenger.getCargo()));
+                if (narrative) {
+                    narrate(DecisionTrace.text(DecisionTrace.ASTEROID_UNKNOWN));
+                    narrate("Keeping: " + describeArtifact(scavenger.getCargo()));
+                }
                 break;
                 
             default:
                 // Default to ignoring the item
-                System.out.println("Other case, scavenger decides to ignore discovered item");
-                System.out.println("Keeping: " + describeArtifact(scavenger.getCargo()));
+                if (narrative) {
+                    narrate("Other case, scavenger decides to ignore discovered item");
+                    narrate("Keeping: " + describeArtifact(scavenger.getCargo()));
+                }
         }
-        return new Pair<>(scavenger, foundArtifact);
+        if (level == OutputLevel.SUMMARY) {
+            narrate("Asteroid: " + scavenger.getName() + " found " + describeArtifact(foundArtifact)
+                + " -> " + result + ", now holding " + describeArtifact(scavenger.getCargo()));
+        }
+        if (DecisionTrace.enabled) {
+            DecisionTrace.record(rule, result, heldArtifact, foundArtifact, DecisionTrace.chance(chance), 0, 0);
+        }
+        if (metrics != null) {
+            metrics.recordAsteroid(outcome);
+        }
+        return outcome;
     }
     
     /**
      * Simulates a trading interaction between two scavengers at a starport.
      * A trade occurs only if both scavengers independently determine that
      * the other's artifact is valuable according to their personal protocols.
+     * The full narrative is printed.
      * 
      * @param scavengerA First scavenger participating in the trade
      * @param scavengerB Second scavenger participating in the trade
      * @return A Pair containing the updated scavengers in their original order
      */
     static Pair<Scavenger, Scavenger> tradeAtStarport(Scavenger scavengerA, Scavenger scavengerB) {
-        System.out.println("\n----- Trading at Starport -----");
-        System.out.println("Starport lights flicker as two scavengers stand in negotiation area preparing to trade");
-        System.out.println("Scavenger A (" + scavengerA.getName() + "):");
-        System.out.println("  Holding: " + describeArtifact(scavengerA.getCargo()));
-        System.out.println("  Details: " + getDetailedArtifactInfo(scavengerA.getCargo()));
-        
-        System.out.println("Scavenger B (" + scavengerB.getName() + "):");
-        System.out.println("  Holding: " + describeArtifact(scavengerB.getCargo()));
-        System.out.println("  Details: " + getDetailedArtifactInfo(scavengerB.getCargo()));
+        return tradeAtStarport(scavengerA, scavengerB, OutputLevel.NARRATIVE);
+    }
+    
+    /**
+     * Simulates a trading interaction between two scavengers at an explicit output level.
+     * 
+     * @param scavengerA First scavenger participating in the trade
+     * @param scavengerB Second scavenger participating in the trade
+     * @param level How much output to produce
+     * @return A Pair containing the updated scavengers in their original order
+     */
+    static Pair<Scavenger, Scavenger> tradeAtStarport(Scavenger scavengerA, Scavenger scavengerB, OutputLevel level) {
+        NarrativeSink sink = narrativeSink;
+        if (sink == null || level == OutputLevel.SILENT) {
+            return trade(scavengerA, scavengerB, level);
+        }
+        sink.begin();
+        try {
+            return trade(scavengerA, scavengerB, level);
+        } finally {
+            sink.end();
+        }
+    }
+    
+    /**
+     * Simulates a trading interaction between two scavengers; the body of tradeAtStarport
+     */
+    private static Pair<Scavenger, Scavenger> trade(Scavenger scavengerA, Scavenger scavengerB, OutputLevel level) {
+        boolean narrative = level == OutputLevel.NARRATIVE;
+        EncounterMetrics.Sample metrics = EncounterMetrics.enabled ? EncounterMetrics.sampleEncounter() : null;
+        if (narrative) {
+            narrate("\n----- Trading at Starport -----");
+            narrate("Starport lights flicker as two scavengers stand in negotiation area preparing to trade");
+            narrate("Scavenger A (" + scavengerA.getName() + "):");
+            narrate("  Holding: " + describeArtifact(scavengerA.getCargo()));
+            narrate("  Details: " + getDetailedArtifactInfo(scavengerA.getCargo()));
+            
+            narrate("Scavenger B (" + scavengerB.getName() + "):");
+            narrate("  Holding: " + describeArtifact(scavengerB.getCargo()));
+            narrate("  Details: " + getDetailedArtifactInfo(scavengerB.getCargo()));
+        }
         
         // Get current cargo for both scavengers
         Artifact cargoA = scavengerA.getCargo();
         Artifact cargoB = scavengerB.getCargo();
         
         // Both analyze each other's cargo
-        System.out.println("\nBoth parties begin analyzing each other's items...");
-        AnalysisResult aAnalysisOfB = scavengerA.getPersonalProtocol().apply(cargoA, cargoB);
-        AnalysisResult bAnalysisOfA = scavengerB.getPersonalProtocol().apply(cargoB, cargoA);
-        
-        System.out.println("Scavenger A's analysis of B's cargo: " + translateAnalysisResult(aAnalysisOfB) + " (" + aAnalysisOfB + ")");
-        System.out.println("Scavenger B's analysis of A's cargo: " + translateAnalysisResult(bAnalysisOfA) + " (" + bAnalysisOfA + ")");
-        
-        // Determine if trade occurs (both must find each other's cargo valuable)
-        System.out.println("\nEntering trade decision phase:");
-        if (isValuable(aAnalysisOfB) && isValuable(bAnalysisOfA)) {
-            System.out.println("Both parties consider each other's cargo valuable, reaching trade agreement");
-            System.out.println("Scavenger A will receive: " + describeArtifact(cargoB));
-            System.out.println("Scavenger B will receive: " + describeArtifact(cargoA));
+        if (narrative) {
+            narrate("\nBoth parties begin analyzing each other's items...");
+        }
+        AnalysisResult aAnalysisOfB = analyze(scavengerA.getPersonalProtocol(), cargoA, cargoB, level);
+        AnalysisResult bAnalysisOfA = analyze(scavengerB.getPersonalProtocol(), cargoB, cargoA, level);
+        if (metrics != null) {
+            metrics.recordAnalysis(scavengerA.getPersonalProtocol(), cargoA, cargoB, aAnalysisOfB);
+            metrics.recordAnalysis(scavengerB.getPersonalProtocol(), cargoB, cargoA, bAnalysisOfA);
+        }
+        
+        if (narrative) {
+            narrate("Scavenger A's analysis of B's cargo: " + translateAnalysisResult(aAnalysisOfB) + " (" + aAnalysisOfB + ")");
+            narrate("Scavenger B's analysis of A's cargo: " + translateAnalysisResult(bAnalysisOfA) + " (" + bAnalysisOfA + ")");
+            
+            // Determine if trade occurs (both must find each other's cargo valuable)
+            narrate("\nEntering trade decision phase:");
+        }
+        boolean traded = isValuable(aAnalysisOfB) && isValuable(bAnalysisOfA);
+        if (traded) {
+            if (narrative) {
+                narrate(DecisionTrace.text(DecisionTrace.TRADE_AGREED));
+                narrate("Scavenger A will receive: " + describeArtifact(cargoB));
+                narrate("Scavenger B will receive: " + describeArtifact(cargoA));
+            }
             scavengerA.setCargo(cargoB);
             scavengerB.setCargo(cargoA);
-        } else {
-            System.out.println("Trade failed, at least one party does not consider the other's cargo valuable");
+        } else if (narrative) {
+            narrate(DecisionTrace.text(DecisionTrace.TRADE_FAILED));
             if (!isValuable(aAnalysisOfB)) {
-                System.out.println("Scavenger A does not consider B's cargo valuable");
+                narrate("Scavenger A does not consider B's cargo valuable");
             }
             if (!isValuable(bAnalysisOfA)) {
-                System.out.println("Scavenger B does not consider A's cargo valuable");
+                narrate("Scavenger B does not consider A's cargo valuable");
             }
-            System.out.println("Both parties keep their original cargo");
+            narrate("Both parties keep their original cargo");
         }
         
         // Display post-trade status
-        System.out.println("\nPost-trade status:");
-        System.out.println("Scavenger A (" + scavengerA.getName() + "):");
-        System.out.println("  Holding: " + describeArtifact(scavengerA.getCargo()));
-        System.out.println("  Details: " + getDetailedArtifactInfo(scavengerA.getCargo()));
-        
-        System.out.println("Scavenger B (" + scavengerB.getName() + "):");
-        System.out.println("  Holding: " + describeArtifact(scavengerB.getCargo()));
-        System.out.println("  Details: " + getDetailedArtifactInfo(scavengerB.getCargo()));
+        if (narrative) {
+            narrate("\nPost-trade status:");
+            narrate("Scavenger A (" + scavengerA.getName() + "):");
+            narrate("  Holding: " + describeArtifact(scavengerA.getCargo()));
+            narrate("  Details: " + getDetailedArtifactInfo(scavengerA.getCargo()));
+            
+            narrate("Scavenger B (" + scavengerB.getName() + "):");
+            narrate("  Holding: " + describeArtifact(scavengerB.getCargo()));
+            narrate("  Details: " + getDetailedArtifactInfo(scavengerB.getCargo()));
+        } else if (level == OutputLevel.SUMMARY) {
+            narrate("Starport: " + scavengerA.getName() + " (" + aAnalysisOfB + ") and " + scavengerB.getName()
+                + " (" + bAnalysisOfA + ") -> " + (traded ? "traded" : "no trade"));
+        }
+        if (DecisionTrace.enabled) {
+            DecisionTrace.record(traded ? DecisionTrace.TRADE_AGREED : DecisionTrace.TRADE_FAILED, aAnalysisOfB,
+                                 cargoA, cargoB, bAnalysisOfA.ordinal(), 0, 0);
+        }
+        if (metrics != null) {
+            metrics.recordTrade(traded);
+        }
         
         return new Pair<>(scavengerA, scavengerB);
     }
@@ -625,6 +1258,18 @@ public class Artifacts {
      * @throws IllegalArgumentException if log format is invalid
      */
     static Artifact parseRationalScavengerLog(String s) {
+        return parseRationalScavengerLog(s, OutputLevel.NARRATIVE);
+    }
+    
+    /**
+     * Parses and simulates a rational scavenger's log entry at an explicit output level.
+     * 
+     * @param s Log entry string in specified format
+     * @param level How much output to produce
+     * @return The artifact the rational scavenger possesses after the encounter
+     * @throws IllegalArgumentException if log format is invalid
+     */
+    static Artifact parseRationalScavengerLog(String s, OutputLevel level) {
         // Split log into components using " | " as delimiter
         String[] parts = s.split(" \\| ");
         if (parts.length != 3) {
@@ -635,10 +1280,12 @@ public class Artifacts {
         String ownedArtifactStr = parts[1];
         String otherArtifactStr = parts[2];
         
-        System.out.println("\n----- Parsing Log -----");
-        System.out.println("Encounter type: " + translateEncounterType(encounterType));
-        System.out.println("Owned item: " + ownedArtifactStr);
-        System.out.println("Encountered item: " + otherArtifactStr);
+        if (level == OutputLevel.NARRATIVE) {
+            narrate("\n----- Parsing Log -----");
+            narrate("Encounter type: " + translateEncounterType(encounterType));
+            narrate("Owned item: " + ownedArtifactStr);
+            narrate("Encountered item: " + otherArtifactStr);
+        }
         
         // Parse both artifacts from their string descriptions
         Artifact ownedArtifact = parseArtifactDescription(ownedArtifactStr);
@@ -646,19 +1293,36 @@ public class Artifacts {
         
         // Simulate appropriate encounter based on type
         if (encounterType.equals("ASTEROID")) {
-            Scavenger rationalScavenger = makeScavenger("Rational Scavenger", Artifacts::rationalScavengerAnalysis, ownedArtifact);
-            Pair<Scavenger, Artifact> result = exploreAsteroid(rationalScavenger, otherArtifact);
-            return result.first().getCargo();
+            return simulateRationalEncounter(EncounterType.ASTEROID, ownedArtifact, otherArtifact, level);
         } else if (encounterType.equals("TRADING_POST")) {
-            Scavenger rationalScavenger = makeScavenger("Rational Scavenger", Artifacts::rationalScavengerAnalysis, ownedArtifact);
-            Scavenger riskTaker = makeScavenger("Risk-taking Scavenger", Artifacts::riskTakerScavengerAnalysis, otherArtifact);
-            Pair<Scavenger, Scavenger> result = tradeAtStarport(rationalScavenger, riskTaker);
-            return result.first().getCargo();
+            return simulateRationalEncounter(EncounterType.TRADING_POST, ownedArtifact, otherArtifact, level);
         } else {
             throw new IllegalArgumentException("Unknown encounter type: " + encounterType);
         }
     }
     
+    /**
+     * Simulates an already-parsed log encounter for a rational scavenger.
+     * 
+     * @param encounterType The kind of encounter
+     * @param ownedArtifact The artifact the rational scavenger starts with
+     * @param otherArtifact The discovered artifact, or the risk-taking trading partner's cargo
+     * @param level How much output to produce
+     * @return The artifact the rational scavenger possesses after the encounter
+     */
+    static Artifact simulateRationalEncounter(EncounterType encounterType, Artifact ownedArtifact, Artifact otherArtifact,
+                                              OutputLevel level) {
+        Scavenger rationalScavenger = makeScavenger("Rational Scavenger", RATIONAL_PROTOCOL, ownedArtifact);
+        if (encounterType == EncounterType.ASTEROID) {
+            Pair<Scavenger, Artifact> result = exploreAsteroid(rationalScavenger, otherArtifact, Randomness.current(), level);
+            return result.first().getCargo();
+        } else {
+            Scavenger riskTaker = makeScavenger("Risk-taking Scavenger", RISK_TAKER_PROTOCOL, otherArtifact);
+            Pair<Scavenger, Scavenger> result = tradeAtStarport(rationalScavenger, riskTaker, level);
+            return result.first().getCargo();
+        }
+    }
+    
     /**
      * Parses a string description of an artifact into the corresponding
      * Artifact object instance.
@@ -667,7 +1331,7 @@ public class Artifacts {
      * @return Artifact instance matching the description
      * @throws IllegalArgumentException if description format is invalid
      */
-    private static Artifact parseArtifactDescription(String description) {
+    static Artifact parseArtifactDescription(String description) {
         if (description.startsWith("StarChart:")) {
             // Parse StarChart format: StarChart:destination; RISK=risk; SEC=sector; SYS=system
             int destEnd = description.indexOf(";");
@@ -704,9 +1368,19 @@ public class Artifacts {
      * Main method that processes user input as a log entry, simulates the
      * described encounter, and displays the final result.
      * 
-     * @param args Command line arguments (not used)
+     * @param args Optional output level for the simulation (SILENT, SUMMARY or NARRATIVE)
      */
     public static void main(String[] args) {
+        OutputLevel level = OutputLevel.NARRATIVE;
+        if (args.length > 0) {
+            try {
+                level = OutputLevel.valueOf(args[0].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Unknown output level: " + args[0] + " (expected SILENT, SUMMARY or NARRATIVE)");
+                return;
+            }
+        }
+        
         // Print program information and instructions
         System.out.println("*************************************************************");
         System.out.println("*             Space Scavenger Simulation Program             *");
@@ -739,7 +1413,7 @@ public class Artifacts {
         
         try {
             // Process log entry and display result
-            Artifact finalArtifact = parseRationalScavengerLog(logEntry);
+            Artifact finalArtifact = parseRationalScavengerLog(logEntry, level);
             
             System.out.println("\n===== Final Result =====");
             System.out.println("Final cargo: " + describeArtifact(finalArtifact));
@@ -798,23 +1472,18 @@ public class Artifacts {
             return "No item";
         }
         
-        switch (artifact.getType()) {
-            case STAR_CHART:
-                StarChart chart = (StarChart) artifact;
-                return String.format("Star Chart [Destination: %s, Risk Factor: %d, Sector: %d, System: %d]", 
-                                    chart.getDestination(), chart.getRiskFactor(), 
-                                    chart.getSector(), chart.getSystem());
-            
-            case ENERGY_CRYSTAL:
-                EnergyCrystal crystal = (EnergyCrystal) artifact;
-                return String.format("Energy Crystal [Power: %d]", crystal.getPowerLevel());
-            
-            case INERT_ROCK:
-                InertRock rock = (InertRock) artifact;
-                return String.format("Inert Rock [Color: %s]", rock.getColor());
-            
-            default:
-                return "Unknown item";
+        if (artifact instanceof StarChart) {
+            StarChart chart = (StarChart) artifact;
+            return String.format("Star Chart [Destination: %s, Risk Factor: %d, Sector: %d, System: %d]", 
+                                chart.getDestination(), chart.getRiskFactor(), 
+                                chart.getSector(), chart.getSystem());
+        } else if (artifact instanceof EnergyCrystal) {
+            EnergyCrystal crystal = (EnergyCrystal) artifact;
+            return String.format("Energy Crystal [Power: %d]", crystal.getPowerLevel());
+        } else if (artifact instanceof InertRock) {
+            InertRock rock = (InertRock) artifact;
+            return String.format("Inert Rock [Color: %s]", rock.getColor());
         }
+        return "Unknown item";
     }
 }
@@ -0,0 +1,532 @@
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EncounterType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.StarChart;
+
+/**
+ * Compact binary encoding of rational scavenger encounter logs.
+ *
+ * A binary log starts with the magic bytes {@code SCVL} and a version byte, followed by
+ * records that each begin with a tag byte:
+ * <ul>
+ *   <li>{@code TAG_SYMBOL}: defines the next dictionary id as a varint length and UTF-8 bytes.
+ *       Every destination and color is written once per file, before its first use.</li>
+ *   <li>{@code TAG_ENCOUNTER + encounter ordinal}: the owned artifact and the other artifact.
+ *       Each artifact is a type byte followed by its fields: a star chart's destination id and
+ *       zigzag varint risk, sector and system, a crystal's zigzag varint power, or a rock's
+ *       color id.</li>
+ *   <li>{@code TAG_RAW}: a text line kept verbatim (varint length and UTF-8 bytes), used for
+ *       any line that does not survive a describe/parse round trip unchanged, including
+ *       malformed lines. Replay reports them exactly like the text path would.</li>
+ * </ul>
+ * Conversion is therefore lossless line for line in both directions. Replay reads records
+ * straight from a memory-mapped file into {@link Artifacts#simulateRationalEncounter}
+ * without producing any text.
+ */
+final class BinaryLog {
+
+    static final byte[] MAGIC = {'S', 'C', 'V', 'L'};
+    static final int VERSION = 1;
+    static final int TAG_SYMBOL = 0x01;
+    static final int TAG_RAW = 0x02;
+    static final int TAG_ENCOUNTER = 0x10;               // Plus the EncounterType ordinal
+    static final int MAX_RECORD_BYTES = 1 << 20;         // Longest text line or symbol accepted
+    static final long MAX_WINDOW_BYTES = 1L << 30;       // Upper bound for a single mapping
+
+    private static final ArtifactType[] TYPES = ArtifactType.values();
+    private static final EncounterType[] ENCOUNTERS = EncounterType.values();
+
+    private BinaryLog() {
+    }
+
+    /**
+     * Converts a text log to the binary format, one record per line
+     * @param in Text log, one entry per line
+     * @param out Destination of the binary log
+     * @return Number of lines converted
+     * @throws IOException if reading or writing fails, or a line exceeds MAX_RECORD_BYTES
+     */
+    static long encode(BufferedReader in, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder(out);
+        long lines = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            encoder.writeLine(line);
+            lines++;
+        }
+        encoder.flush();
+        return lines;
+    }
+
+    /**
+     * Converts a binary log back to the text format, one line per record
+     * @param in The binary log (read from its position to its limit)
+     * @param out Destination of the text log
+     * @return Number of lines written
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the binary log is malformed
+     */
+    static long decode(ByteBuffer in, Writer out) throws IOException {
+        Decoder decoder = new Decoder(in);
+        long lines = 0;
+        while (decoder.hasNext()) {
+            int tag = decoder.next();
+            if (tag == TAG_RAW) {
+                out.write(decoder.rawText());
+            } else {
+                out.write(ENCOUNTERS[tag - TAG_ENCOUNTER].name());
+                out.write(" | ");
+                out.write(Artifacts.describeArtifact(decoder.owned));
+                out.write(" | ");
+                out.write(Artifacts.describeArtifact(decoder.other));
+            }
+            out.write('\n');
+            lines++;
+        }
+        out.flush();
+        return lines;
+    }
+
+    /**
+     * Replays a binary log through the rational scavenger simulation
+     * @param logFile Path of the binary log
+     * @return Tally of the final cargo, in the same form as {@link ArtifactBatch#run}
+     * @throws IOException if the file cannot be mapped or is malformed
+     */
+    static ArtifactBatch.Tally replay(Path logFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            ArtifactBatch.Tally tally = new ArtifactBatch.Tally();
+            ArtifactParser.Entry entry = new ArtifactParser.Entry();
+            Decoder decoder = new Decoder(channel);
+            while (decoder.hasNext()) {
+                long offset = decoder.offset();
+                try {
+                    int tag = decoder.next();
+                    if (tag == TAG_RAW) {
+                        if (decoder.rawLength == 0) {
+                            continue;   // Blank lines are skipped, as in the text replay
+                        }
+                        ArtifactParser.parseEntry(decoder.buffer, decoder.rawOffset, decoder.rawLength, entry);
+                        tally.record(Artifacts.simulateRationalEncounter(entry.encounterType, entry.owned, entry.other,
+                                                                         OutputLevel.SILENT));
+                    } else {
+                        tally.record(Artifacts.simulateRationalEncounter(ENCOUNTERS[tag - TAG_ENCOUNTER],
+                                                                         decoder.owned, decoder.other, OutputLevel.SILENT));
+                    }
+                } catch (RuntimeException e) {
+                    if (decoder.corrupt) {
+                        throw new IOException("Malformed binary log at offset " + offset + ": " + e.getMessage(), e);
+                    }
+                    tally.recordError(offset, e);
+                }
+            }
+            return tally;
+        }
+    }
+
+    /**
+     * Streaming writer of binary log records. Keeps the per-file dictionary of destinations
+     * and colors written so far.
+     */
+    static final class Encoder {
+        private final OutputStream out;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final ArtifactParser.Entry entry = new ArtifactParser.Entry();
+
+        /**
+         * Writes the file header
+         * @param out Destination of the binary log
+         * @throws IOException if writing fails
+         */
+        Encoder(OutputStream out) throws IOException {
+            this.out = out instanceof BufferedOutputStream ? out : new BufferedOutputStream(out, 1 << 16);
+            this.out.write(MAGIC);
+            this.out.write(VERSION);
+        }
+
+        /**
+         * Encodes one text log line, as an encounter record if it round-trips exactly and as
+         * a raw line otherwise
+         * @param line The text line, without its line terminator
+         * @throws IOException if writing fails or the line exceeds MAX_RECORD_BYTES
+         */
+        void writeLine(String line) throws IOException {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_RECORD_BYTES) {
+                throw new IOException("Log line longer than " + MAX_RECORD_BYTES + " bytes");
+            }
+            if (bytes.length > 0 && parses(bytes) && line.equals(entry.encounterType.name() + " | "
+                    + Artifacts.describeArtifact(entry.owned) + " | " + Artifacts.describeArtifact(entry.other))) {
+                writeEncounter(entry.encounterType, entry.owned, entry.other);
+            } else {
+                out.write(TAG_RAW);
+                writeVarint(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        /**
+         * Encodes one encounter record
+         * @param encounterType The kind of encounter
+         * @param owned The rational scavenger's starting cargo
+         * @param other The discovered artifact or the trading partner's cargo
+         * @throws IOException if writing fails
+         */
+        void writeEncounter(EncounterType encounterType, Artifact owned, Artifact other) throws IOException {
+            // Dictionary definitions must precede the record that uses them
+            int ownedSymbol = define(owned);
+            int otherSymbol = define(other);
+            out.write(TAG_ENCOUNTER + encounterType.ordinal());
+            writeArtifact(owned, ownedSymbol);
+            writeArtifact(other, otherSymbol);
+        }
+
+        /**
+         * Flushes buffered records to the underlying stream
+         * @throws IOException if writing fails
+         */
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        private boolean parses(byte[] bytes) {
+            try {
+                ArtifactParser.parseEntry(bytes, 0, bytes.length, entry);
+                return true;
+            } catch (RuntimeException e) {   // The String fallback also throws index exceptions on malformed lines
+                return false;
+            }
+        }
+
+        /**
+         * Ensures the artifact's destination or color is in the dictionary
+         * @return Its id, or -1 for artifacts without one
+         */
+        private int define(Artifact artifact) throws IOException {
+            String text;
+            if (artifact instanceof StarChart) {
+                text = ((StarChart) artifact).getDestination();
+            } else if (artifact instanceof InertRock) {
+                text = ((InertRock) artifact).getColor();
+            } else {
+                return -1;
+            }
+            Integer id = dictionary.get(text);
+            if (id == null) {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                id = dictionary.size();
+                dictionary.put(text, id);
+                out.write(TAG_SYMBOL);
+                writeVarint(bytes.length);
+                out.write(bytes);
+            }
+            return id;
+        }
+
+        private void writeArtifact(Artifact artifact, int symbol) throws IOException {
+            out.write(artifact.getType().ordinal());
+            switch (artifact.getType()) {
+                case STAR_CHART:
+                    StarChart chart = (StarChart) artifact;
+                    writeVarint(symbol);
+                    writeVarint(zigzag(chart.getRiskFactor()));
+                    writeVarint(zigzag(chart.getSector()));
+                    writeVarint(zigzag(chart.getSystem()));
+                    break;
+                case ENERGY_CRYSTAL:
+                    writeVarint(zigzag(((EnergyCrystal) artifact).getPowerLevel()));
+                    break;
+                default:
+                    writeVarint(symbol);
+                    break;
+            }
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+
+    /**
+     * Sequential reader of binary log records over a buffer, or over a file mapped window by window.
+     */
+    static final class Decoder {
+        private final FileChannel channel;    // Source file, or null when reading a single buffer
+        private long windowStart;             // File offset of the current window
+        private ByteBuffer buffer;            // Current window
+        private int pos;                      // Read position within the window
+        private final List<String> symbols = new ArrayList<>();
+
+        Artifact owned;                       // Owned artifact of the last encounter record
+        Artifact other;                       // Other artifact of the last encounter record
+        int rawOffset;                        // Position of the last raw line within the window
+        int rawLength;                        // Length in bytes of the last raw line
+        boolean corrupt;                      // Set when the last failure was in the binary structure
+
+        /**
+         * Reads records from a buffer holding a whole binary log
+         * @param in The binary log (read from its position to its limit)
+         */
+        Decoder(ByteBuffer in) {
+            this.channel = null;
+            this.buffer = in;
+            this.pos = in.position();
+            readHeader();
+        }
+
+        /**
+         * Reads records from a binary log file, mapping it in windows of at most MAX_WINDOW_BYTES
+         * @param channel Channel of the binary log
+         * @throws IOException if the file cannot be mapped
+         */
+        Decoder(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.buffer = map(0);
+            readHeader();
+        }
+
+        /** @return true if another record follows */
+        boolean hasNext() {
+            return pos < buffer.limit();
+        }
+
+        /** @return Offset of the next record, within the file or the buffer */
+        long offset() {
+            return windowStart + pos;
+        }
+
+        /**
+         * Reads the next encounter or raw record, consuming any dictionary definitions before it
+         * @return The record's tag: TAG_RAW or TAG_ENCOUNTER plus the encounter ordinal
+         * @throws IllegalArgumentException if the log is malformed
+         */
+        int next() {
+            corrupt = true;
+            try {
+                while (true) {
+                    remapIfNeeded();
+                    int tag = buffer.get(pos++) & 0xFF;
+                    if (tag == TAG_SYMBOL) {
+                        int length = readLength();
+                        symbols.add(readSymbol(length));
+                        pos += length;
+                    } else if (tag == TAG_RAW) {
+                        rawLength = readLength();
+                        if (rawLength > buffer.limit() - pos) {
+                            throw new IllegalArgumentException("Truncated raw record");
+                        }
+                        rawOffset = pos;
+                        pos += rawLength;
+                        corrupt = false;
+                        return tag;
+                    } else if (tag >= TAG_ENCOUNTER && tag < TAG_ENCOUNTER + ENCOUNTERS.length) {
+                        owned = readArtifact();
+                        other = readArtifact();
+                        corrupt = false;
+                        return tag;
+                    } else {
+                        throw new IllegalArgumentException("Unknown record tag " + tag);
+                    }
+                }
+            } catch (IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Truncated record", e);
+            }
+        }
+
+        /** @return Text of the last raw line */
+        String rawText() {
+            byte[] bytes = new byte[rawLength];
+            buffer.get(rawOffset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Resolves a symbol through the parser's shared dictionary, so replayed artifacts get the
+         * same canonical Strings as parsed ones
+         */
+        private String readSymbol(int length) {
+            if (pos + length > buffer.limit()) {
+                throw new IllegalArgumentException("Truncated symbol");
+            }
+            int id = Artifacts.SYMBOLS.intern(buffer, pos, length);
+            if (id != SymbolTable.NOT_FOUND) {
+                return Artifacts.SYMBOLS.symbol(id);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(pos, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private Artifact readArtifact() {
+            int type = buffer.get(pos++) & 0xFF;
+            if (type >= TYPES.length) {
+                throw new IllegalArgumentException("Unknown artifact type " + type);
+            }
+            switch (TYPES[type]) {
+                case STAR_CHART:
+                    String destination = symbol(readVarint());
+                    int risk = unzigzag(readVarint());
+                    int sector = unzigzag(readVarint());
+                    int system = unzigzag(readVarint());
+                    return Artifacts.makeStarChart(destination, risk, sector, system);
+                case ENERGY_CRYSTAL:
+                    return Artifacts.makeEnergyCrystal(unzigzag(readVarint()));
+                default:
+                    return Artifacts.makeInertRock(symbol(readVarint()));
+            }
+        }
+
+        private String symbol(int id) {
+            if (id < 0 || id >= symbols.size()) {
+                throw new IllegalArgumentException("Undefined symbol " + id);
+            }
+            return symbols.get(id);
+        }
+
+        private int readLength() {
+            int length = readVarint();
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+                throw new IllegalArgumentException("Invalid record length " + length);
+            }
+            return length;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = buffer.get(pos++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        private void readHeader() {
+            if (buffer.limit() - pos < MAGIC.length + 1) {
+                throw new IllegalArgumentException("Not a binary encounter log");
+            }
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(pos, magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("Not a binary encounter log");
+            }
+            int version = buffer.get(pos + MAGIC.length);
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported binary log version " + version);
+            }
+            pos += MAGIC.length + 1;
+        }
+
+        /**
+         * Slides the mapping forward when fewer than two maximal records remain in the window
+         * but more of the file follows.
+         */
+        private void remapIfNeeded() {
+            if (channel == null || buffer.limit() - pos >= 2 * MAX_RECORD_BYTES + 64) {
+                return;
+            }
+            try {
+                long fileSize = channel.size();
+                if (windowStart + buffer.limit() < fileSize) {
+                    long start = windowStart + pos;
+                    buffer = map(start);
+                    pos = 0;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot map binary log", e);
+            }
+        }
+
+        private MappedByteBuffer map(long start) throws IOException {
+            long length = Math.min(channel.size() - start, MAX_WINDOW_BYTES);
+            windowStart = start;
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Converts logs between the text and binary formats, or replays a binary log.
+     *
+     * @param args encode &lt;text log&gt; &lt;binary log&gt;, decode &lt;binary log&gt; &lt;text log&gt;
+     *             or replay &lt;binary log&gt;
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.out.println("Usage: java src.BinaryLog encode <text log> <binary log>");
+            System.out.println("       java src.BinaryLog decode <binary log> <text log>");
+            System.out.println("       java src.BinaryLog replay <binary log>");
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            switch (args[0]) {
+                case "encode":
+                    try (BufferedReader in = Files.newBufferedReader(Path.of(args[1]), StandardCharsets.UTF_8);
+                         OutputStream out = Files.newOutputStream(Path.of(args[2]))) {
+                        long lines = encode(in, out);
+                        System.out.println(String.format("Encoded %d lines: %d -> %d bytes in %.3f s", lines,
+                                                         Files.size(Path.of(args[1])), Files.size(Path.of(args[2])),
+                                                         (System.nanoTime() - start) / 1e9));
+                    }
+                    break;
+                case "decode":
+                    try (FileChannel channel = FileChannel.open(Path.of(args[1]), StandardOpenOption.READ);
+                         Writer out = new BufferedWriter(Files.newBufferedWriter(Path.of(args[2]), StandardCharsets.UTF_8))) {
+                        if (channel.size() > Integer.MAX_VALUE) {
+                            throw new IOException("Binary log too large to decode in one mapping");
+                        }
+                        long lines = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), out);
+                        System.out.println(String.format("Decoded %d lines in %.3f s", lines, (System.nanoTime() - start) / 1e9));
+                    }
+                    break;
+                case "replay":
+                    ArtifactBatch.Tally tally = replay(Path.of(args[1]));
+                    ArtifactBatch.printReport(tally, System.nanoTime() - start);
+                    break;
+                default:
+                    System.out.println("Unknown command: " + args[0]);
+                    break;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
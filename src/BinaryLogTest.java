@@ -0,0 +1,123 @@
+package src;
+
+import static comp1110.testing.Comp1110Unit.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.EncounterType;
+
+/**
+ * Tests that {@link BinaryLog} converts text logs to binary and back without changing a
+ * single line, whether the line becomes an encounter record or is kept raw.
+ */
+final class BinaryLogTest {
+
+    private static final String[] LINES = {
+        // Encounter records
+        "ASTEROID | StarChart:Alpha Centauri; RISK=5; SEC=3; SYS=7 | EnergyCrystal:POWER=80",
+        "TRADING_POST | InertRock:COLOR=red | StarChart:Vega; RISK=9; SEC=1; SYS=11",
+        "ASTEROID | StarChart:Vega; RISK=-2147483648; SEC=2147483647; SYS=-1 | EnergyCrystal:POWER=-7",
+        "ASTEROID | StarChart:Végà; RISK=5; SEC=3; SYS=7 | InertRock:COLOR=红",
+        "ASTEROID | InertRock:COLOR=red | InertRock:COLOR=red",
+        // Lines that do not describe back to themselves are kept raw
+        "ASTEROID | StarChart:Vega; RISK=05; SEC=3; SYS=7 | EnergyCrystal:POWER=80",
+        "ASTEROID | EnergyCrystal:POWER=５ | InertRock:COLOR=blue",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 | ",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=5 |  | ",
+        // Malformed and blank lines
+        "",
+        "   ",
+        "COMET | InertRock:COLOR=red | EnergyCrystal:POWER=5",
+        "ASTEROID | Rock:COLOR=red",
+        "ASTEROID | InertRock:COLOR=red | EnergyCrystal:POWER=",
+        "not a log line at all \t ✓"
+    };
+
+    private static byte[] encode(String text) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryLog.encode(new BufferedReader(new StringReader(text)), out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String decode(byte[] binary) {
+        try {
+            StringWriter out = new StringWriter();
+            BinaryLog.decode(ByteBuffer.wrap(binary), out);
+            return out.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String decodeError(byte[] binary) {
+        try {
+            decode(binary);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    static void testRoundTrip() {
+        String text = String.join("\n", LINES) + "\n";
+        testEqual(text, decode(encode(text)));
+        for (String line : LINES) {
+            testEqual(line + "\n", decode(encode(line + "\n")), line);
+        }
+    }
+
+    static void testRandomLogRoundTrip() {
+        SplittableRandom random = new SplittableRandom(1110L);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            Artifact owned = FleetSimulation.MIXED_FIELD.next(random);
+            Artifact other = FleetSimulation.MIXED_FIELD.next(random);
+            EncounterType encounter = random.nextBoolean() ? EncounterType.ASTEROID : EncounterType.TRADING_POST;
+            text.append(encounter.name()).append(" | ").append(Artifacts.describeArtifact(owned))
+                .append(" | ").append(Artifacts.describeArtifact(other)).append('\n');
+        }
+        byte[] binary = encode(text.toString());
+        testEqual(text.toString(), decode(binary));
+        testTrue(binary.length * 4 < text.length(), "Encounter records should be much smaller than their text: "
+                 + binary.length + " bytes for " + text.length() + " characters");
+    }
+
+    static void testReencodingGivesTheSameBinary() {
+        String text = String.join("\n", LINES) + "\n";
+        byte[] binary = encode(text);
+        testTrue(Arrays.equals(binary, encode(decode(binary))));
+    }
+
+    static void testMalformedBinary() {
+        byte[] binary = encode(String.join("\n", LINES));
+        testEqual("Not a binary encounter log", decodeError(new byte[0]));
+        testEqual("Not a binary encounter log", decodeError("ASTEROID | InertRock:COLOR=red".getBytes(StandardCharsets.UTF_8)));
+        byte[] version = binary.clone();
+        version[4]++;
+        testEqual("Unsupported binary log version " + version[4], decodeError(version));
+        testEqual("Truncated raw record", decodeError(Arrays.copyOf(binary, binary.length - 1)));
+        byte[] encounter = encode(LINES[0]);
+        testEqual("Truncated record", decodeError(Arrays.copyOf(encounter, encounter.length - 1)));
+    }
+
+    public static void main(String[] args) {
+        runAsTest(BinaryLogTest::testRoundTrip);
+        runAsTest(BinaryLogTest::testRandomLogRoundTrip);
+        runAsTest(BinaryLogTest::testReencodingGivesTheSameBinary);
+        runAsTest(BinaryLogTest::testMalformedBinary);
+    }
+}
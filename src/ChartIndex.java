@@ -0,0 +1,564 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.CargoListener;
+import src.Artifacts.Scavenger;
+import src.Artifacts.StarChart;
+
+/**
+ * Spatial index over the star charts held by a fleet.
+ *
+ * The rational protocol values a chart in the same sector as its own but a different system
+ * (and not much riskier, and bound elsewhere), so finding it trading partners is a query on
+ * sector and system rather than a scan of the fleet. The index keeps every chart holder of
+ * the fleet in a cell per (sector, system), each sector listing its cells, and in a cell per
+ * risk factor. Cells are found through open-addressing maps keyed by primitive longs, and
+ * hold their members in plain int arrays (removal swaps the last member in), so no boxing
+ * happens on updates or queries.
+ *
+ * Attached as a {@link CargoListener}, the index moves a scavenger between cells whenever
+ * its cargo changes, on the changing thread. Updates take a write lock; counting queries
+ * read optimistically and only fall back to the read lock if an update intervened.
+ * Scavengers that do not notify listeners, such as {@link OffHeapFleet} cursors, are not
+ * tracked.
+ */
+final class ChartIndex implements CargoListener {
+
+    private static final int NONE = -1;     // Cell or position of a scavenger holding no chart
+
+    /**
+     * Open-addressing map from long keys to non-negative ints. Entries are never removed:
+     * cells that empty out stay registered, ready for the next chart to arrive.
+     *
+     * Writers hold the index's write lock, but optimistic readers may run alongside them. A
+     * grown table is therefore filled and rehashed entirely in its constructor and published
+     * by a single store of a holder with final fields, so a reader that sees the new table
+     * sees it complete, and every table it probes is at most half full: the probe always
+     * reaches an empty slot and ends.
+     */
+    static final class LongIntMap {
+        private static final long EMPTY = Long.MIN_VALUE;   // Marks a free slot; the key itself is kept aside
+        private Table table;
+        private int size;
+        private int emptyKeyValue = NONE;                    // Value of the key EMPTY, e.g. sector MIN_VALUE, system 0
+
+        private static final class Table {
+            final long[] keys;
+            final int[] values;
+
+            Table(int capacity) {
+                keys = new long[capacity];
+                values = new int[capacity];
+                Arrays.fill(keys, EMPTY);
+            }
+
+            /** Rehashes every entry of a smaller table */
+            Table(Table old, int capacity) {
+                this(capacity);
+                for (int i = 0; i < old.keys.length; i++) {
+                    if (old.keys[i] != EMPTY) {
+                        insert(old.keys[i], old.values[i]);
+                    }
+                }
+            }
+
+            void insert(long key, int value) {
+                int mask = keys.length - 1;
+                int i = hash(key) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                values[i] = value;      // Value before key, so a reader never pairs the key with a stale value
+                keys[i] = key;
+            }
+        }
+
+        LongIntMap(int expected) {
+            table = new Table(Integer.highestOneBit(Math.max(4, expected) * 2 - 1) * 2);
+        }
+
+        /** @return The value of a key, or NONE if absent */
+        int get(long key) {
+            if (key == EMPTY) {
+                return emptyKeyValue;
+            }
+            Table t = table;
+            int mask = t.keys.length - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                long k = t.keys[i];
+                if (k == key) {
+                    return t.values[i];
+                }
+                if (k == EMPTY) {
+                    return NONE;
+                }
+            }
+        }
+
+        /** Adds a key that is not yet present */
+        void put(long key, int value) {
+            if (key == EMPTY) {
+                emptyKeyValue = value;
+                return;
+            }
+            if (2 * (size + 1) > table.keys.length) {
+                table = new Table(table, table.keys.length * 2);
+            }
+            table.insert(key, value);
+            size++;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Chart holders sharing a (sector, system) or a risk factor.
+     */
+    private static final class Cell {
+        final int key;              // System of a spatial cell, risk factor of a risk cell
+        int[] members = new int[4]; // Slots of the holders, in no particular order
+        int size;
+
+        Cell(int key) {
+            this.key = key;
+        }
+
+        /** Adds a slot and returns its position */
+        int add(int slot) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size] = slot;
+            return size++;
+        }
+
+        /** Removes the member at a position and returns the slot moved into it, or NONE */
+        int removeAt(int position) {
+            int last = members[--size];
+            members[position] = last;
+            return position == size ? NONE : last;
+        }
+    }
+
+    /**
+     * The spatial cells of one sector.
+     */
+    private static final class Sector {
+        int[] cells = new int[4];   // Index of each system's cell, in order of first use
+        int count;                  // Cells in use
+        int holders;                // Chart holders across the sector
+
+        void add(int cell) {
+            if (count == cells.length) {
+                cells = Arrays.copyOf(cells, count * 2);
+            }
+            cells[count++] = cell;
+        }
+    }
+
+    // Tracked scavengers, by slot
+    private final Scavenger[] scavengers;
+    private final int[] cellOf;            // Spatial cell of each slot's chart, or NONE
+    private final int[] cellPosition;      // Position within that cell
+    private final int[] riskCellOf;        // Risk cell of each slot's chart, or NONE
+    private final int[] riskPosition;      // Position within that cell
+    private final int[] sectorOf;          // Sector index of each slot's chart
+    private final Map<Scavenger, Integer> slotOf;   // Scavenger -> slot, fixed at construction
+
+    private final LongIntMap cellIds;      // (sector << 32 | system) -> spatial cell
+    private final List<Cell> cells = new ArrayList<>();
+    private int[] cellSector = new int[64];   // Sector index of each spatial cell
+    private final LongIntMap sectorIds;    // sector -> sector index
+    private final List<Sector> sectors = new ArrayList<>();
+    private final LongIntMap riskIds;      // risk factor -> risk cell
+    private final List<Cell> riskCells = new ArrayList<>();
+    private int[] risksSorted = new int[0];   // Risk cell indexes in ascending order of risk factor
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Indexes the charts a fleet holds now. Call {@link #attach} to keep it up to date.
+     * @param fleet The fleet
+     */
+    ChartIndex(Scavenger[] fleet) {
+        int n = fleet.length;
+        scavengers = fleet.clone();
+        cellOf = new int[n];
+        cellPosition = new int[n];
+        riskCellOf = new int[n];
+        riskPosition = new int[n];
+        sectorOf = new int[n];
+        slotOf = new IdentityHashMap<>(n);
+        cellIds = new LongIntMap(1024);
+        sectorIds = new LongIntMap(64);
+        riskIds = new LongIntMap(64);
+        Arrays.fill(cellOf, NONE);
+        Arrays.fill(riskCellOf, NONE);
+        for (int slot = 0; slot < n; slot++) {
+            if (slotOf.put(fleet[slot], slot) != null) {
+                throw new IllegalArgumentException("Scavenger appears twice in the fleet: " + fleet[slot].getName());
+            }
+            place(slot, fleet[slot].getCargo());
+        }
+    }
+
+    /**
+     * Starts following every cargo change of the fleet
+     * @return This index
+     */
+    ChartIndex attach() {
+        Artifacts.addCargoListener(this);
+        return this;
+    }
+
+    /**
+     * Stops following cargo changes
+     */
+    void detach() {
+        Artifacts.removeCargoListener(this);
+    }
+
+    @Override
+    public void cargoChanged(Scavenger scavenger, Artifact previous, Artifact cargo) {
+        // slotOf never changes after construction, so most changes are dismissed without the lock
+        Integer slot = slotOf.get(scavenger);
+        if (slot == null || (!isChart(previous) && !isChart(cargo))) {
+            return;                                   // Not in this fleet, or no chart before or after
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (cellOf[slot] == NONE && !isChart(cargo)) {
+                return;                               // Still holding no chart as far as the index knows
+            }
+            unplace(slot);
+            place(slot, cargo);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static boolean isChart(Artifact artifact) {
+        return artifact != null && artifact.getType() == ArtifactType.STAR_CHART;
+    }
+
+    /**
+     * Adds a slot to the cells of its cargo, if it is a star chart
+     */
+    private void place(int slot, Artifact cargo) {
+        if (!isChart(cargo)) {
+            return;
+        }
+        StarChart chart = (StarChart) cargo;
+        long key = (long) chart.getSector() << 32 | (chart.getSystem() & 0xFFFFFFFFL);
+        int cell = cellIds.get(key);
+        if (cell == NONE) {
+            int sector = sectorIds.get(chart.getSector());
+            if (sector == NONE) {
+                sector = sectors.size();
+                sectors.add(new Sector());
+                sectorIds.put(chart.getSector(), sector);
+            }
+            cell = cells.size();
+            cells.add(new Cell(chart.getSystem()));
+            if (cell == cellSector.length) {
+                cellSector = Arrays.copyOf(cellSector, cell * 2);
+            }
+            cellSector[cell] = sector;
+            cellIds.put(key, cell);
+            sectors.get(sector).add(cell);
+        }
+        cellOf[slot] = cell;
+        cellPosition[slot] = cells.get(cell).add(slot);
+        sectorOf[slot] = cellSector[cell];
+        sectors.get(sectorOf[slot]).holders++;
+
+        int riskCell = riskIds.get(chart.getRiskFactor());
+        if (riskCell == NONE) {
+            riskCell = riskCells.size();
+            riskCells.add(new Cell(chart.getRiskFactor()));
+            riskIds.put(chart.getRiskFactor(), riskCell);
+            insertRisk(riskCell);
+        }
+        riskCellOf[slot] = riskCell;
+        riskPosition[slot] = riskCells.get(riskCell).add(slot);
+    }
+
+    /**
+     * Removes a slot from the cells of the chart it held
+     */
+    private void unplace(int slot) {
+        if (cellOf[slot] == NONE) {
+            return;
+        }
+        int moved = cells.get(cellOf[slot]).removeAt(cellPosition[slot]);
+        if (moved != NONE) {
+            cellPosition[moved] = cellPosition[slot];
+        }
+        sectors.get(sectorOf[slot]).holders--;
+        moved = riskCells.get(riskCellOf[slot]).removeAt(riskPosition[slot]);
+        if (moved != NONE) {
+            riskPosition[moved] = riskPosition[slot];
+        }
+        cellOf[slot] = NONE;
+        riskCellOf[slot] = NONE;
+    }
+
+    /**
+     * Inserts a new risk cell into the sorted list of risk cells
+     */
+    private void insertRisk(int riskCell) {
+        int risk = riskCells.get(riskCell).key;
+        int at = 0;
+        while (at < risksSorted.length && riskCells.get(risksSorted[at]).key < risk) {
+            at++;
+        }
+        int[] sorted = new int[risksSorted.length + 1];
+        System.arraycopy(risksSorted, 0, sorted, 0, at);
+        sorted[at] = riskCell;
+        System.arraycopy(risksSorted, at, sorted, at + 1, risksSorted.length - at);
+        risksSorted = sorted;
+    }
+
+    /**
+     * Counts the chart holders in a sector, leaving out one system
+     * @param sector The sector
+     * @param excludedSystem The system to leave out
+     * @return Number of holders
+     */
+    int countInSectorExcluding(int sector, int excludedSystem) {
+        long stamp = lock.tryOptimisticRead();
+        int count = countInSectorUnlocked(sector, excludedSystem);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                count = countInSectorUnlocked(sector, excludedSystem);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    private int countInSectorUnlocked(int sector, int excludedSystem) {
+        try {
+            int index = sectorIds.get(sector);
+            if (index == NONE) {
+                return 0;
+            }
+            int count = sectors.get(index).holders;
+            int excluded = cellIds.get((long) sector << 32 | (excludedSystem & 0xFFFFFFFFL));
+            return excluded == NONE ? count : count - cells.get(excluded).size;
+        } catch (RuntimeException e) {
+            return 0;                                 // Torn optimistic read; the caller retries under the lock
+        }
+    }
+
+    /**
+     * Visits the chart holders in a sector, leaving out one system
+     * @param sector The sector
+     * @param excludedSystem The system to leave out
+     * @param visitor Called with each holder
+     */
+    void forEachInSectorExcluding(int sector, int excludedSystem, Consumer<Scavenger> visitor) {
+        for (Scavenger holder : snapshotInSector(sector, excludedSystem)) {
+            visitor.accept(holder);
+        }
+    }
+
+    /**
+     * Returns the chart holders in a sector, leaving out one system
+     * @param sector The sector
+     * @param excludedSystem The system to leave out
+     * @return The holders, grouped by system
+     */
+    List<Scavenger> holdersInSectorExcluding(int sector, int excludedSystem) {
+        return snapshotInSector(sector, excludedSystem);
+    }
+
+    private List<Scavenger> snapshotInSector(int sector, int excludedSystem) {
+        long stamp = lock.readLock();
+        try {
+            List<Scavenger> holders = new ArrayList<>();
+            int index = sectorIds.get(sector);
+            if (index == NONE) {
+                return holders;
+            }
+            Sector cellsOfSector = sectors.get(index);
+            for (int c = 0; c < cellsOfSector.count; c++) {
+                Cell cell = cells.get(cellsOfSector.cells[c]);
+                if (cell.key != excludedSystem) {
+                    for (int i = 0; i < cell.size; i++) {
+                        holders.add(scavengers[cell.members[i]]);
+                    }
+                }
+            }
+            return holders;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Counts the charts whose risk factor is at most a bound
+     * @param maxRisk The bound
+     * @return Number of holders
+     */
+    int countRiskAtMost(int maxRisk) {
+        long stamp = lock.readLock();
+        try {
+            int count = 0;
+            for (int riskCell : risksSorted) {
+                Cell cell = riskCells.get(riskCell);
+                if (cell.key > maxRisk) {
+                    break;
+                }
+                count += cell.size;
+            }
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the holders of charts whose risk factor is at most a bound
+     * @param maxRisk The bound
+     * @return The holders, in ascending order of risk
+     */
+    List<Scavenger> holdersWithRiskAtMost(int maxRisk) {
+        long stamp = lock.readLock();
+        try {
+            List<Scavenger> holders = new ArrayList<>();
+            for (int riskCell : risksSorted) {
+                Cell cell = riskCells.get(riskCell);
+                if (cell.key > maxRisk) {
+                    break;
+                }
+                for (int i = 0; i < cell.size; i++) {
+                    holders.add(scavengers[cell.members[i]]);
+                }
+            }
+            return holders;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the holders of every chart that a rational scavenger holding the given chart
+     * would rate VALUABLE: same sector, another system, a risk factor less than two above
+     * its own and a different destination
+     * @param owned The rational scavenger's chart
+     * @return The holders
+     */
+    List<Scavenger> valuableTo(StarChart owned) {
+        List<Scavenger> holders = holdersInSectorExcluding(owned.getSector(), owned.getSystem());
+        holders.removeIf(holder -> !(holder.getCargo() instanceof StarChart)
+                         || ((StarChart) holder.getCargo()).getRiskFactor() >= owned.getRiskFactor() + 2
+                         || ((StarChart) holder.getCargo()).sameDestination(owned));
+        return holders;
+    }
+
+    /**
+     * Counts the holders of a sector minus one system by scanning the whole fleet, for comparison
+     */
+    private static int scanInSectorExcluding(Scavenger[] fleet, int sector, int excludedSystem) {
+        int count = 0;
+        for (Scavenger scavenger : fleet) {
+            if (scavenger.getCargo() instanceof StarChart) {
+                StarChart chart = (StarChart) scavenger.getCargo();
+                if (chart.getSector() == sector && chart.getSystem() != excludedSystem) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the charts with a risk factor of at most a bound by scanning the whole fleet
+     */
+    private static int scanRiskAtMost(Scavenger[] fleet, int maxRisk) {
+        int count = 0;
+        for (Scavenger scavenger : fleet) {
+            if (scavenger.getCargo() instanceof StarChart && ((StarChart) scavenger.getCargo()).getRiskFactor() <= maxRisk) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final int QUERIES = 10_000;   // Queries timed per method in main
+
+    /**
+     * Indexes a mixed fleet, lets it explore while the index follows, then checks queries
+     * against full scans and times both.
+     *
+     * @param args Fleet size, optionally followed by rounds explored and a seed
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: java src.ChartIndex <scavengers> [rounds] [seed]");
+            return;
+        }
+        try {
+            int size = Integer.parseInt(args[0]);
+            int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 1110L;
+            Scavenger[] fleet = FleetSimulation.mixedFleet(size, Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7),
+                                                           Artifacts.makeInertRock("red"));
+            ChartIndex index = new ChartIndex(fleet).attach();
+            long t0 = System.nanoTime();
+            try {
+                new FleetSimulation(fleet, FleetSimulation.MIXED_FIELD, seed, 1).runParallel(rounds, ForkJoinPool.commonPool());
+            } finally {
+                index.detach();
+            }
+            long t1 = System.nanoTime();
+            System.out.println(String.format("%d scavengers explored %d rounds in %.3f s with the index following",
+                                             size, rounds, (t1 - t0) / 1e9));
+
+            SplittableRandom random = new SplittableRandom(seed);
+            int[] sectors = new int[QUERIES];
+            int[] systems = new int[QUERIES];
+            for (int q = 0; q < QUERIES; q++) {
+                sectors[q] = random.nextInt(1, 6);
+                systems[q] = random.nextInt(1, 16);
+                if (index.countInSectorExcluding(sectors[q], systems[q]) != scanInSectorExcluding(fleet, sectors[q], systems[q])
+                    || index.holdersInSectorExcluding(sectors[q], systems[q]).size() != index.countInSectorExcluding(sectors[q], systems[q])
+                    || index.countRiskAtMost(systems[q] % 11) != scanRiskAtMost(fleet, systems[q] % 11)) {
+                    System.out.println("Error: index disagrees with a fleet scan for sector " + sectors[q] + ", system " + systems[q]);
+                    return;
+                }
+            }
+            int scans = Math.max(1, Math.min(QUERIES, 200_000_000 / Math.max(1, size)));   // Keep the scan timing short
+            long sink = 0;
+            long t2 = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                sink += index.countInSectorExcluding(sectors[q], systems[q]) + index.countRiskAtMost(systems[q] % 11);
+            }
+            long t3 = System.nanoTime();
+            for (int q = 0; q < scans; q++) {
+                sink += scanInSectorExcluding(fleet, sectors[q], systems[q]) + scanRiskAtMost(fleet, systems[q] % 11);
+            }
+            long t4 = System.nanoTime();
+            System.out.println(String.format("Index matches fleet scans on %d queries; index %.0f ns/query pair, scan %.0f ns/query pair (checksum %d)",
+                                             QUERIES, (double) (t3 - t2) / QUERIES, (double) (t4 - t3) / scans, sink));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+
+/**
+ * A starport where many threads post scavengers concurrently and trades are matched
+ * automatically.
+ *
+ * As with {@link Artifacts#tradeAtStarport}, two scavengers trade only if each one's personal
+ * protocol rates the other's cargo VALUABLE. Waiting offers are kept in a book striped by
+ * cargo type and by the set of cargo types the holder's protocol could ever value (see
+ * {@link Artifacts.Protocol}). A newly posted scavenger only visits stripes whose cargo it
+ * could value and whose holders could value its own cargo, so most incompatible pairs are
+ * never evaluated at all.
+ *
+ * A trade commits atomically: both offers are claimed with compare-and-set, lower offer id
+ * first, before either cargo changes hands. A scavenger can be in the book at most once, so
+ * it can never take part in two trades at the same time.
+ */
+final class ConcurrentStarport {
+
+    private static final int TYPES = ArtifactType.values().length;
+    private static final int MASKS = Artifacts.ALL_TYPES + 1;
+
+    // Offer states
+    private static final int WAITING = 0;     // In the book, available for matching
+    private static final int CLAIMED = 1;     // Briefly held by a thread committing a trade
+    private static final int TRADED = 2;      // Trade completed
+    private static final int CANCELLED = 3;   // Withdrawn from the book
+
+    private static final AtomicLong OFFER_IDS = new AtomicLong();
+
+    /**
+     * A scavenger waiting in the book, and the outcome of its stay there.
+     */
+    static final class Offer {
+        final long id;                                   // Global order in which offers are claimed
+        final Scavenger scavenger;                       // The scavenger offering its cargo
+        final Artifact cargo;                            // The cargo on offer (fixed while waiting)
+        final ArtifactType cargoType;                    // Type of the cargo on offer
+        final int wants;                                 // Cargo types the scavenger's protocol could value
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile Scavenger partner;              // Trading partner once traded
+
+        Offer(Scavenger scavenger) {
+            this.id = OFFER_IDS.incrementAndGet();
+            this.scavenger = scavenger;
+            this.cargo = scavenger.getCargo();
+            this.cargoType = cargo.getType();
+            this.wants = Artifacts.valuableTypes(scavenger.getPersonalProtocol(), cargoType);
+        }
+
+        /** @return true once the scavenger has traded */
+        boolean isTraded() {
+            return state.get() == TRADED;
+        }
+
+        /** @return The trading partner, or null if no trade has happened yet */
+        Scavenger partner() {
+            return partner;
+        }
+    }
+
+    // book[cargoType][wantsMask] holds the waiting offers with that cargo type and mask; mask 0 stays empty
+    private final List<List<ConcurrentLinkedQueue<Offer>>> book = new ArrayList<>();
+    private final ConcurrentHashMap<Scavenger, Offer> active = new ConcurrentHashMap<>();
+    private final LongAdder trades = new LongAdder();        // Trades committed
+    private final LongAdder evaluations = new LongAdder();   // Candidate pairs whose protocols were run
+    private final LongAdder conflicts = new LongAdder();     // Mutually valuable pairs lost to another trade
+
+    /**
+     * Constructs an empty starport
+     */
+    ConcurrentStarport() {
+        for (int type = 0; type < TYPES; type++) {
+            List<ConcurrentLinkedQueue<Offer>> stripes = new ArrayList<>();
+            for (int mask = 0; mask < MASKS; mask++) {
+                stripes.add(new ConcurrentLinkedQueue<>());
+            }
+            book.add(stripes);
+        }
+    }
+
+    /**
+     * Posts a scavenger to the starport. If a compatible partner is already waiting, the
+     * trade is committed before this method returns; otherwise the offer stays in the book
+     * until a later arrival trades with it or it is cancelled.
+     *
+     * @param scavenger The scavenger offering its current cargo
+     * @return The scavenger's offer
+     * @throws IllegalArgumentException if the scavenger already has an offer in the book
+     */
+    Offer post(Scavenger scavenger) {
+        Offer offer = new Offer(scavenger);
+        if (active.putIfAbsent(scavenger, offer) != null) {
+            throw new IllegalArgumentException("Scavenger already waiting at the starport: " + scavenger.getName());
+        }
+        if (offer.wants == 0) {
+            return offer;   // Values nothing, so can never trade: tracked in active only, never scanned
+        }
+        book.get(offer.cargoType.ordinal()).get(offer.wants).add(offer);
+        match(offer);
+        return offer;
+    }
+
+    /**
+     * Withdraws a waiting offer
+     * @param offer The offer to withdraw
+     * @return true if the offer was withdrawn, false if it had already traded or been withdrawn
+     */
+    boolean cancel(Offer offer) {
+        while (true) {
+            int state = offer.state.get();
+            if (state == TRADED || state == CANCELLED) {
+                return false;
+            }
+            if (state == WAITING && offer.state.compareAndSet(WAITING, CANCELLED)) {
+                active.remove(offer.scavenger, offer);
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Scans the stripes that could hold a partner for the offer and commits the first
+     * mutually valuable trade it can claim.
+     */
+    private void match(Offer offer) {
+        int ownBit = Artifacts.typeBit(offer.cargoType);
+        for (int type = 0; type < TYPES; type++) {
+            if ((offer.wants & (1 << type)) == 0) {
+                continue;
+            }
+            List<ConcurrentLinkedQueue<Offer>> stripes = book.get(type);
+            for (int mask = 1; mask < MASKS; mask++) {
+                if ((mask & ownBit) == 0) {
+                    continue;   // Holders in this stripe can never value the offered cargo
+                }
+                Iterator<Offer> candidates = stripes.get(mask).iterator();
+                while (candidates.hasNext()) {
+                    if (offer.state.get() != WAITING) {
+                        return;   // Someone else traded with this offer meanwhile
+                    }
+                    Offer candidate = candidates.next();
+                    int state = candidate.state.get();
+                    if (state == TRADED || state == CANCELLED) {
+                        candidates.remove();
+                        continue;
+                    }
+                    if (candidate == offer || !mutuallyValuable(offer, candidate)) {
+                        continue;
+                    }
+                    if (commit(offer, candidate)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean mutuallyValuable(Offer a, Offer b) {
+        evaluations.increment();
+        AnalysisResult aOfB = Artifacts.analyze(a.scavenger.getPersonalProtocol(), a.cargo, b.cargo, OutputLevel.SILENT);
+        if (!Artifacts.isValuable(aOfB)) {
+            return false;
+        }
+        return Artifacts.isValuable(Artifacts.analyze(b.scavenger.getPersonalProtocol(), b.cargo, a.cargo, OutputLevel.SILENT));
+    }
+
+    /**
+     * Claims both offers in id order and swaps their cargo.
+     * @return true if the trade was committed
+     */
+    private boolean commit(Offer offer, Offer candidate) {
+        Offer first = offer.id < candidate.id ? offer : candidate;
+        Offer second = first == offer ? candidate : offer;
+        if (!claim(first)) {
+            if (first == candidate) {
+                conflicts.increment();
+            }
+            return false;
+        }
+        if (!claim(second)) {
+            first.state.set(WAITING);
+            conflicts.increment();
+            return false;
+        }
+        offer.scavenger.setCargo(candidate.cargo);
+        candidate.scavenger.setCargo(offer.cargo);
+        offer.partner = candidate.scavenger;
+        candidate.partner = offer.scavenger;
+        active.remove(offer.scavenger, offer);
+        active.remove(candidate.scavenger, candidate);
+        offer.state.set(TRADED);
+        candidate.state.set(TRADED);
+        trades.increment();
+        return true;
+    }
+
+    /**
+     * Moves an offer from WAITING to CLAIMED, waiting out other threads' brief claims.
+     * @return false if the offer has traded or been cancelled
+     */
+    private static boolean claim(Offer offer) {
+        while (true) {
+            int state = offer.state.get();
+            if (state == WAITING) {
+                if (offer.state.compareAndSet(WAITING, CLAIMED)) {
+                    return true;
+                }
+            } else if (state != CLAIMED) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** @return Number of trades committed so far */
+    long trades() {
+        return trades.sum();
+    }
+
+    /** @return Number of candidate pairs whose protocols have been evaluated */
+    long evaluations() {
+        return evaluations.sum();
+    }
+
+    /** @return Number of mutually valuable pairs that lost a race to another trade */
+    long conflicts() {
+        return conflicts.sum();
+    }
+
+    /** @return Number of scavengers currently waiting in the book */
+    int waiting() {
+        return active.size();
+    }
+
+    /**
+     * Posts a mixed fleet from several threads and checks that no cargo was lost or duplicated.
+     *
+     * @param args Number of threads, scavengers per thread and an optional seed
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1110L;
+
+        Scavenger[][] fleets = new Scavenger[threads][];
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<String, Integer> before = new HashMap<>();
+        for (int t = 0; t < threads; t++) {
+            fleets[t] = new Scavenger[perThread];
+            for (int i = 0; i < perThread; i++) {
+                Artifact cargo = FleetSimulation.MIXED_FIELD.next(random);
+                fleets[t][i] = Artifacts.makeScavenger("Scavenger " + t + "-" + i,
+                    random.nextBoolean() ? Artifacts.RATIONAL_PROTOCOL : Artifacts.RISK_TAKER_PROTOCOL, cargo);
+                before.merge(Artifacts.describeArtifact(cargo), 1, Integer::sum);
+            }
+        }
+
+        ConcurrentStarport starport = new ConcurrentStarport();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        for (Scavenger[] fleet : fleets) {
+            pool.execute(() -> {
+                for (Scavenger scavenger : fleet) {
+                    starport.post(scavenger);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, Integer> after = new HashMap<>();
+        for (Scavenger[] fleet : fleets) {
+            for (Scavenger scavenger : fleet) {
+                after.merge(Artifacts.describeArtifact(scavenger.getCargo()), 1, Integer::sum);
+            }
+        }
+        long scavengers = (long) threads * perThread;
+        System.out.println("Scavengers posted: " + scavengers);
+        System.out.println("Trades committed: " + starport.trades());
+        System.out.println("Still waiting: " + starport.waiting());
+        System.out.println("Pairs evaluated: " + starport.evaluations() + " (of " + scavengers * (scavengers - 1) / 2 + " possible)");
+        System.out.println("Conflicts: " + starport.conflicts());
+        System.out.println(String.format("Elapsed: %.3f s", elapsed / 1e9));
+        System.out.println("Cargo conserved: " + before.equals(after));
+    }
+}
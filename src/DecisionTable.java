@@ -0,0 +1,251 @@
+package src;
+
+import java.util.SplittableRandom;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.StarChart;
+
+/**
+ * The rational scavenger protocol compiled into a flat lookup table.
+ *
+ * Every input to {@link Artifacts#rationalScavengerAnalysis} reduces to a small feature
+ * vector: the artifact type pair, plus (depending on the pair) risk &gt; 7, system &gt; 10, the
+ * crystal power bucket (&lt;5 / &lt;10 / &lt;15 / &gt;=15), the rock color class, or the
+ * destination/risk/coordinate relations of two charts. The table is built once by running the
+ * original protocol on one representative pair per feature combination, so each later call
+ * costs a feature extraction and a single array read.
+ */
+final class DecisionTable {
+
+    private static final int TYPES = ArtifactType.values().length;
+    private static final int FEATURE_BITS = 4;                   // Sub-features per type pair fit in 4 bits
+    private static final int FEATURES = 1 << FEATURE_BITS;
+
+    // Power buckets and a representative power level for each
+    private static final int[] POWER_SAMPLES = {0, 5, 10, 15};
+
+    // Rock color classes and a representative color for each
+    static final int COLOR_SPECIAL = 0;                  // blue, green or purple
+    static final int COLOR_RED = 1;
+    static final int COLOR_OTHER = 2;
+    private static final String[] COLOR_SAMPLES = {"blue", "red", "grey"};
+
+    private static final AnalysisResult[] TABLE = compile();
+
+    private DecisionTable() {
+    }
+
+    /**
+     * Evaluates the rational protocol by table lookup. Returns exactly what
+     * {@link Artifacts#rationalScavengerAnalysis} returns, without its narrative output.
+     *
+     * @param ownedArtifact The artifact the scavenger currently possesses
+     * @param newArtifact The newly discovered artifact being evaluated
+     * @return AnalysisResult indicating the scavenger's assessment of the new artifact
+     */
+    static AnalysisResult analyze(Artifact ownedArtifact, Artifact newArtifact) {
+        return TABLE[index(ownedArtifact, newArtifact)];
+    }
+
+    /**
+     * Looks up the rational protocol's result for features that were extracted elsewhere,
+     * for example from the columns of an {@link ArtifactStore}.
+     *
+     * @param ownedType Type of the owned artifact
+     * @param newType Type of the new artifact
+     * @param features Feature bits for the type pair (0 for pairs without features)
+     * @return AnalysisResult the rational protocol gives for these features
+     */
+    static AnalysisResult lookup(ArtifactType ownedType, ArtifactType newType, int features) {
+        return TABLE[((ownedType.ordinal() * TYPES + newType.ordinal()) << FEATURE_BITS) | features];
+    }
+
+    /**
+     * Computes the table index of an artifact pair
+     * @param owned The owned artifact
+     * @param found The new artifact
+     * @return Index into the decision table
+     */
+    static int index(Artifact owned, Artifact found) {
+        ArtifactType ownedType = owned.getType();
+        ArtifactType newType = found.getType();
+        int pair = ownedType.ordinal() * TYPES + newType.ordinal();
+        int features = 0;
+        if (ownedType == ArtifactType.STAR_CHART) {
+            StarChart chart = (StarChart) owned;
+            switch (newType) {
+                case ENERGY_CRYSTAL:
+                    features = chartCrystalFeatures(chart.getRiskFactor() > 7, chart.getSystem() > 10,
+                                                    powerBucket(((EnergyCrystal) found).getPowerLevel()));
+                    break;
+                case INERT_ROCK:
+                    features = ((InertRock) found).colorClass();
+                    break;
+                case STAR_CHART:
+                    StarChart newChart = (StarChart) found;
+                    features = chartChartFeatures(newChart.sameDestination(chart),
+                                                  newChart.getRiskFactor() >= chart.getRiskFactor() + 2,
+                                                  newChart.getSector() == chart.getSector() && newChart.getSystem() != chart.getSystem());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return (pair << FEATURE_BITS) | features;
+    }
+
+    /** @return Feature bits for a star chart holder evaluating an energy crystal */
+    static int chartCrystalFeatures(boolean highRisk, boolean farSystem, int powerBucket) {
+        return (highRisk ? 8 : 0) | (farSystem ? 4 : 0) | powerBucket;
+    }
+
+    /** @return Feature bits for a star chart holder evaluating another star chart */
+    static int chartChartFeatures(boolean sameDestination, boolean riskJump, boolean sameSectorOtherSystem) {
+        return (sameDestination ? 4 : 0) | (riskJump ? 2 : 0) | (sameSectorOtherSystem ? 1 : 0);
+    }
+
+    /** @return Power bucket of a crystal: 0 (&lt;5), 1 (&lt;10), 2 (&lt;15) or 3 (&gt;=15) */
+    static int powerBucket(int power) {
+        return power < 5 ? 0 : power < 10 ? 1 : power < 15 ? 2 : 3;
+    }
+
+    /** @return Color class of a rock: COLOR_SPECIAL, COLOR_RED or COLOR_OTHER */
+    static int colorClass(String color) {
+        if (color.equals("blue") || color.equals("green") || color.equals("purple")) {
+            return COLOR_SPECIAL;
+        }
+        return color.equals("red") ? COLOR_RED : COLOR_OTHER;
+    }
+
+    /**
+     * Builds the table by evaluating the original protocol on a representative artifact pair
+     * for every reachable feature combination. Unreachable entries are left null.
+     */
+    private static AnalysisResult[] compile() {
+        AnalysisResult[] table = new AnalysisResult[TYPES * TYPES * FEATURES];
+        for (ArtifactType ownedType : ArtifactType.values()) {
+            for (ArtifactType newType : ArtifactType.values()) {
+                for (int features = 0; features < FEATURES; features++) {
+                    Artifact[] pair = representative(ownedType, newType, features);
+                    if (pair == null) {
+                        continue;
+                    }
+                    int index = index(pair[0], pair[1]);
+                    if (index != ((ownedType.ordinal() * TYPES + newType.ordinal()) << FEATURE_BITS | features)) {
+                        throw new IllegalStateException("Representative does not reproduce its features: "
+                                                        + ownedType + "/" + newType + "/" + features);
+                    }
+                    table[index] = Artifacts.rationalScavengerAnalysis(pair[0], pair[1], OutputLevel.SILENT);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Creates an artifact pair exhibiting the given features, or null if the combination
+     * cannot occur for this type pair.
+     */
+    private static Artifact[] representative(ArtifactType ownedType, ArtifactType newType, int features) {
+        if (ownedType == ArtifactType.STAR_CHART) {
+            switch (newType) {
+                case ENERGY_CRYSTAL:
+                    return new Artifact[] {
+                        Artifacts.makeStarChart("A", (features & 8) != 0 ? 8 : 7, 0, (features & 4) != 0 ? 11 : 10),
+                        Artifacts.makeEnergyCrystal(POWER_SAMPLES[features & 3])
+                    };
+                case INERT_ROCK:
+                    return features < COLOR_SAMPLES.length
+                        ? new Artifact[] {Artifacts.makeStarChart("A", 0, 0, 0), Artifacts.makeInertRock(COLOR_SAMPLES[features])}
+                        : null;
+                case STAR_CHART:
+                    if (features >= 8) {
+                        return null;
+                    }
+                    boolean sameSectorOtherSystem = (features & 1) != 0;
+                    return new Artifact[] {
+                        Artifacts.makeStarChart("A", 0, 0, 0),
+                        Artifacts.makeStarChart((features & 4) != 0 ? "A" : "B", (features & 2) != 0 ? 2 : 0,
+                                                sameSectorOtherSystem ? 0 : 1, sameSectorOtherSystem ? 1 : 0)
+                    };
+                default:
+                    return null;
+            }
+        }
+        return features == 0 ? new Artifact[] {sample(ownedType), sample(newType)} : null;
+    }
+
+    private static Artifact sample(ArtifactType type) {
+        switch (type) {
+            case STAR_CHART:
+                return Artifacts.makeStarChart("A", 0, 0, 0);
+            case ENERGY_CRYSTAL:
+                return Artifacts.makeEnergyCrystal(0);
+            default:
+                return Artifacts.makeInertRock("grey");
+        }
+    }
+
+    /**
+     * Cross-checks the table against the original protocol on randomly generated artifact
+     * pairs whose fields straddle every threshold the protocol uses.
+     *
+     * @param samples Number of random pairs to check
+     * @param seed Seed for the pair generator
+     * @return The number of pairs checked
+     * @throws IllegalStateException describing the first pair on which the two disagree
+     */
+    static long crossCheck(long samples, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (long i = 0; i < samples; i++) {
+            Artifact owned = randomArtifact(random);
+            Artifact found = randomArtifact(random);
+            AnalysisResult expected = Artifacts.rationalScavengerAnalysis(owned, found, OutputLevel.SILENT);
+            AnalysisResult actual = analyze(owned, found);
+            if (expected != actual) {
+                throw new IllegalStateException("Decision table disagrees with rational protocol for "
+                                                + Artifacts.describeArtifact(owned) + " / " + Artifacts.describeArtifact(found)
+                                                + ": expected " + expected + ", got " + actual);
+            }
+        }
+        return samples;
+    }
+
+    private static final String[] CHECK_COLORS = {"blue", "green", "purple", "red", "dull grey", "Blue", "black"};
+    private static final String[] CHECK_DESTINATIONS = {"Alpha Centauri", "Vega", "Sirius"};
+    private static final int[] CHECK_EXTREMES = {Integer.MIN_VALUE, Integer.MAX_VALUE - 1, Integer.MAX_VALUE};
+
+    private static Artifact randomArtifact(SplittableRandom random) {
+        switch (random.nextInt(TYPES)) {
+            case 0:
+                int risk = random.nextInt(64) == 0 ? CHECK_EXTREMES[random.nextInt(CHECK_EXTREMES.length)] : random.nextInt(-2, 14);
+                return Artifacts.makeStarChart(CHECK_DESTINATIONS[random.nextInt(CHECK_DESTINATIONS.length)], risk,
+                                               random.nextInt(3), random.nextInt(8, 14));
+            case 1:
+                return Artifacts.makeEnergyCrystal(random.nextInt(-2, 22));
+            default:
+                return Artifacts.makeInertRock(CHECK_COLORS[random.nextInt(CHECK_COLORS.length)]);
+        }
+    }
+
+    /**
+     * Runs the cross-check from the command line.
+     *
+     * @param args Optional sample count and seed
+     */
+    public static void main(String[] args) {
+        long samples = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+        try {
+            long checked = crossCheck(samples, seed);
+            System.out.println("Decision table matches the rational protocol on " + checked + " pairs (seed " + seed + ")");
+        } catch (IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
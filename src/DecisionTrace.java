@@ -0,0 +1,415 @@
+package src;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+
+/**
+ * Compact, lazily rendered record of the decisions made by the analysis protocols, asteroid
+ * exploration and starport trading.
+ *
+ * While {@link #enabled} is set, every decision is stored as an int rule id, the verdict and
+ * up to three numeric operands (the values the rule compared), plus references to the two
+ * artifacts involved, in a fixed-size ring owned by the deciding thread. Nothing is formatted
+ * when a decision is recorded; the English sentence for a rule (the same one the NARRATIVE
+ * output level prints) and the artifact details are only built when someone asks for an
+ * explanation with {@link #recent} or an audit dump with {@link #dump}. A decision costs
+ * four ints and two references, about 24 bytes, and a ring keeps the last
+ * {@link #CAPACITY} decisions of its thread.
+ *
+ * Rings are written by their own thread only. Readers on other threads copy a ring and then
+ * drop any record that may have been overwritten while they copied it, so a dump taken while
+ * workers are running is consistent, if not quite up to date.
+ */
+final class DecisionTrace {
+
+    // Rational protocol rules
+    static final int CHART_SAME_DESTINATION = 0;
+    static final int CHART_RISKIER = 1;
+    static final int CHART_NEIGHBOR = 2;
+    static final int CHART_OTHER = 3;
+    static final int IDEAL_CHART_LOW_POWER = 4;
+    static final int IDEAL_CHART_MEDIUM_POWER = 5;
+    static final int IDEAL_CHART_HIGH_POWER = 6;
+    static final int REGULAR_CHART_HIGH_POWER = 7;
+    static final int REGULAR_CHART_LOW_POWER = 8;
+    static final int REGULAR_CHART_MEDIUM_POWER = 9;
+    static final int SPECIAL_COLOR_ROCK = 10;
+    static final int RED_ROCK = 11;
+    static final int OTHER_COLOR_ROCK = 12;
+    static final int CRYSTAL_HOLDER_CHART = 13;
+    static final int RATIONAL_UNKNOWN = 14;
+    // Risk-taking protocol rules
+    static final int RISK_NEW_CHART = 15;
+    static final int RISK_CHART_HOLDER = 16;
+    static final int RISK_STRONGER_CRYSTAL = 17;
+    static final int RISK_WEAKER_CRYSTAL = 18;
+    static final int RISK_SAME_COLOR = 19;
+    static final int RISK_COIN_FLIP = 20;
+    static final int RISK_UNKNOWN = 21;
+    // Asteroid decisions
+    static final int ASTEROID_ACQUIRED = 22;
+    static final int ASTEROID_TOOK_RISK = 23;
+    static final int ASTEROID_DESTROYED = 24;
+    static final int ASTEROID_MUNDANE = 25;
+    static final int ASTEROID_INCOMPATIBLE = 26;
+    static final int ASTEROID_UNKNOWN = 27;
+    // Starport decisions
+    static final int TRADE_AGREED = 28;
+    static final int TRADE_FAILED = 29;
+
+    // Sentence for each rule, as printed at the NARRATIVE output level where it is narrated
+    private static final String[] TEXT = {
+        "Star charts with same destination considered incompatible",
+        "High risk star chart (risk +2 or more) considered hazardous",
+        "Star charts with same sector different system considered valuable",
+        "Other star chart cases considered mundane",
+        "Low power energy crystal (power < 5) considered hazardous",
+        "Medium power energy crystal (power 5-14) considered mundane",
+        "High power energy crystal (power >=15) considered incompatible",
+        "High power energy crystal (power >=10) considered valuable",
+        "Low power energy crystal (power <5) considered hazardous",
+        "Medium power energy crystal (power 5-9) considered mundane",
+        "Special color rock (blue/green/purple) considered valuable",
+        "Red rock considered hazardous",
+        "Other color rock considered mundane",
+        "A star chart offered to a crystal holder is hazardous",
+        "Cannot perform specific analysis, returning unknown result",
+        "Risk-takers always value new star charts",
+        "If owning a star chart, other artifact types are considered mundane",
+        "More powerful crystal considered valuable",
+        "Crystal no more powerful considered mundane",
+        "Same color rock considered mundane",
+        "Different color rock decided by random chance",
+        "Unhandled combination considered unknown",
+        "Discovered item is more valuable, deciding to replace current cargo",
+        "Item is hazardous, but scavenger decides to take the risk (30% success probability)",
+        "Item is hazardous, scavenger decides not to take risk (70% failure probability)",
+        "Discovered item is mundane, deciding to ignore and keep current cargo",
+        "Discovered item is incompatible with current cargo, deciding to ignore",
+        "Cannot analyze discovered item, deciding to ignore for safety",
+        "Both parties consider each other's cargo valuable, reaching trade agreement",
+        "Trade failed, at least one party does not consider the other's cargo valuable",
+    };
+
+    // Names of the operands each rule records, in order
+    private static final String[] NONE = {};
+    private static final String[] CRYSTAL_VS_CHART = {"power", "risk", "system"};
+    private static final String[] CHANCE = {"chance"};
+    private static final String[] PARTNER = {"partner verdict"};
+    private static final String[][] OPERANDS = {
+        NONE, {"new risk", "held risk"}, {"sector", "new system", "held system"}, NONE,
+        CRYSTAL_VS_CHART, CRYSTAL_VS_CHART, CRYSTAL_VS_CHART, CRYSTAL_VS_CHART, CRYSTAL_VS_CHART, CRYSTAL_VS_CHART,
+        NONE, NONE, NONE, NONE, {"type pair"},
+        NONE, NONE, {"new power", "held power"}, {"new power", "held power"}, NONE, NONE, {"type pair"},
+        NONE, CHANCE, CHANCE, NONE, NONE, NONE,
+        PARTNER, PARTNER,
+    };
+
+    static final int CAPACITY = 1 << 12;                // Decisions kept per thread (power of two)
+    static final int CHANCE_SCALE = 1_000_000_000;      // Fixed-point scale of recorded random values
+    private static final int WORDS = 4;                 // Ints per record: rule and verdict, three operands
+    private static final AnalysisResult[] RESULTS = AnalysisResult.values();
+
+    /** Whether decisions are recorded; read once per decision by {@link Artifacts} */
+    static volatile boolean enabled;
+
+    /**
+     * One thread's most recent decisions.
+     */
+    private static final class Ring {
+        final Thread owner = Thread.currentThread();
+        final int[] words = new int[CAPACITY * WORDS];      // rule << 8 | verdict, then the operands
+        final Artifact[] refs = new Artifact[CAPACITY * 2]; // Held and other artifact of each decision
+        long written;                                       // Decisions recorded so far, published with release
+    }
+
+    private static final VarHandle WRITTEN;
+    static {
+        try {
+            WRITTEN = MethodHandles.lookup().findVarHandle(Ring.class, "written", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static final int MAX_FINISHED_RINGS = 64;           // Rings of finished threads kept for dumps
+
+    // The ring of every live recording thread, and of the most recently registered finished ones
+    private static final Queue<Ring> RINGS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger REGISTERED = new AtomicInteger();   // Rings created so far
+    private static final ThreadLocal<Ring> RING = ThreadLocal.withInitial(() -> {
+        Ring ring = new Ring();
+        // Pruning walks every ring, so it runs once per MAX_FINISHED_RINGS registrations
+        if (REGISTERED.incrementAndGet() % MAX_FINISHED_RINGS == 0) {
+            pruneFinished();
+        }
+        RINGS.add(ring);
+        return ring;
+    });
+
+    /**
+     * Drops the oldest rings of finished threads beyond MAX_FINISHED_RINGS, so that servers
+     * running a thread per connection do not keep a ring (and its artifacts) per connection.
+     * Between prunes, up to twice that many finished rings are kept.
+     */
+    private static void pruneFinished() {
+        int finished = 0;
+        for (Ring ring : RINGS) {
+            if (!ring.owner.isAlive()) {
+                finished++;
+            }
+        }
+        for (Iterator<Ring> it = RINGS.iterator(); finished > MAX_FINISHED_RINGS && it.hasNext(); ) {
+            if (!it.next().owner.isAlive()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    private DecisionTrace() {
+    }
+
+    /**
+     * Returns the sentence describing a rule
+     * @param rule The rule id
+     * @return The sentence, as narrated
+     */
+    static String text(int rule) {
+        return TEXT[rule];
+    }
+
+    /**
+     * Records a decision in the calling thread's ring
+     * @param rule The rule that decided
+     * @param result The verdict
+     * @param held The artifact held by the deciding scavenger
+     * @param other The artifact it was weighed against
+     * @param a First operand (unused operands are ignored)
+     * @param b Second operand
+     * @param c Third operand
+     */
+    static void record(int rule, AnalysisResult result, Artifact held, Artifact other, int a, int b, int c) {
+        Ring ring = RING.get();
+        long n = ring.written;
+        // Keeps the stores below after the previous record's count, which readers rely on
+        VarHandle.storeStoreFence();
+        int slot = (int) n & (CAPACITY - 1);
+        int word = slot * WORDS;
+        int[] words = ring.words;
+        words[word] = rule << 8 | result.ordinal();
+        words[word + 1] = a;
+        words[word + 2] = b;
+        words[word + 3] = c;
+        ring.refs[slot * 2] = held;
+        ring.refs[slot * 2 + 1] = other;
+        WRITTEN.setRelease(ring, n + 1);
+    }
+
+    /**
+     * Scales a random value in [0, 1) to an int operand
+     * @param chance The random value
+     * @return The value as a fixed-point int
+     */
+    static int chance(double chance) {
+        return (int) (chance * CHANCE_SCALE);
+    }
+
+    /**
+     * A recorded decision, rendered to text only on request.
+     */
+    static final class Decision {
+        final String thread;           // Name of the deciding thread
+        final long index;              // Position among that thread's decisions, from 0
+        final int rule;
+        final AnalysisResult result;
+        final int[] operands;
+        final Artifact held;
+        final Artifact other;
+
+        Decision(String thread, long index, int rule, AnalysisResult result, int[] operands, Artifact held, Artifact other) {
+            this.thread = thread;
+            this.index = index;
+            this.rule = rule;
+            this.result = result;
+            this.operands = operands;
+            this.held = held;
+            this.other = other;
+        }
+
+        /** @return The rule's sentence followed by its operands and the verdict */
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder(TEXT[rule]);
+            String[] names = OPERANDS[rule];
+            for (int i = 0; i < names.length; i++) {
+                out.append(i == 0 ? " [" : ", ").append(names[i]).append('=');
+                if (names[i].equals(CHANCE[0])) {
+                    out.append(String.format("%.2f", (double) operands[i] / CHANCE_SCALE));
+                } else if (names[i].equals(PARTNER[0])) {
+                    out.append(RESULTS[operands[i]]);
+                } else {
+                    out.append(operands[i]);
+                }
+            }
+            if (names.length > 0) {
+                out.append(']');
+            }
+            return out.append(" -> ").append(Artifacts.translateAnalysisResult(result)).toString();
+        }
+
+        /** @return The decision with full details of both artifacts */
+        String explain() {
+            return thread + " #" + index + ": " + this
+                + "\n  Held: " + Artifacts.getDetailedArtifactInfo(held)
+                + "\n  Other: " + Artifacts.getDetailedArtifactInfo(other);
+        }
+    }
+
+    /**
+     * Copies the most recent decisions of a ring, oldest first
+     */
+    private static List<Decision> copy(Ring ring, int max) {
+        long end = (long) WRITTEN.getAcquire(ring);
+        long start = Math.max(0, end - Math.min(max, CAPACITY));
+        List<Decision> decisions = new ArrayList<>((int) (end - start));
+        for (long n = start; n < end; n++) {
+            int slot = (int) n & (CAPACITY - 1);
+            int word = slot * WORDS;
+            int head = ring.words[word];
+            int[] operands = {ring.words[word + 1], ring.words[word + 2], ring.words[word + 3]};
+            decisions.add(new Decision(ring.owner.getName(), n, head >>> 8, RESULTS[head & 0xFF], operands,
+                                       ring.refs[slot * 2], ring.refs[slot * 2 + 1]));
+        }
+        // Drop whatever the owner may have overwritten while we were copying: while it writes
+        // decision n, the count still reads n and the slot of decision n - CAPACITY is torn.
+        // The fence keeps the plain reads above from being reordered after the re-read
+        VarHandle.acquireFence();
+        long firstIntact = (long) WRITTEN.getAcquire(ring) - CAPACITY + 1;
+        decisions.subList(0, (int) Math.min(decisions.size(), Math.max(0, firstIntact - start))).clear();
+        return decisions;
+    }
+
+    /**
+     * Returns the calling thread's most recent decisions
+     * @param max Largest number of decisions to return
+     * @return The decisions, oldest first
+     */
+    static List<Decision> recent(int max) {
+        return copy(RING.get(), max);
+    }
+
+    /**
+     * Writes an audit dump of every thread's recorded decisions, with artifact details
+     * @param max Largest number of decisions to dump per thread
+     * @param out Where to write the dump
+     */
+    static void dump(int max, PrintStream out) {
+        pruneFinished();
+        for (Ring ring : RINGS) {
+            List<Decision> decisions = copy(ring, max);
+            out.println("----- " + ring.owner.getName() + ": " + decisions.size() + " of "
+                        + (long) WRITTEN.getAcquire(ring) + " decisions -----");
+            for (Decision decision : decisions) {
+                out.println(decision.explain());
+            }
+        }
+    }
+
+    /**
+     * Clears the calling thread's decisions and releases the rings of threads that have
+     * finished. Other running threads keep theirs, since only the owner may write a ring.
+     */
+    static void reset() {
+        RINGS.removeIf(ring -> !ring.owner.isAlive());
+        Ring ring = RING.get();
+        Arrays.fill(ring.refs, null);
+        WRITTEN.setRelease(ring, 0L);
+    }
+
+    private static final int ROUNDS = 20;       // Timed passes per setting in main
+    private static final int FLEET = 1 << 8;    // Scavengers in main's workload (power of two)
+    /**
+     * A fresh fleet visiting asteroids
+     */
+    private static ArtifactBenchmark.Operation workload(Artifact[] field, long seed) {
+        Scavenger[] fleet = FleetSimulation.mixedFleet(FLEET, Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7),
+                                                       Artifacts.makeInertRock("red"));
+        return ArtifactBenchmark.encounters(fleet, field, new SplittableRandom(seed), false);
+    }
+
+    /**
+     * Counts the bytes written to it.
+     */
+    private static final class CountingStream extends OutputStream {
+        long bytes;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+        }
+    }
+
+    /**
+     * Compares the cost of tracing with the narrative it can replace, then explains the last
+     * few decisions.
+     *
+     * @param args Optional number of encounters per pass and seed
+     */
+    public static void main(String[] args) {
+        long encounters = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1110L;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Artifact[] field = ArtifactBenchmark.mixedInputs(random);
+        PrintStream console = System.out;
+        try {
+            // Size of the narrative for the same kind of encounters
+            CountingStream counter = new CountingStream();
+            int narrated = 1000;
+            System.setOut(new PrintStream(counter));
+            ArtifactBenchmark.nanosPerOp(workload(field, seed), OutputLevel.NARRATIVE, narrated);
+            System.setOut(console);
+
+            double off = Double.MAX_VALUE;
+            double on = Double.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                enabled = false;
+                off = Math.min(off, ArtifactBenchmark.nanosPerOp(workload(field, seed + round), OutputLevel.SILENT, encounters));
+                enabled = true;
+                on = Math.min(on, ArtifactBenchmark.nanosPerOp(workload(field, seed + round), OutputLevel.SILENT, encounters));
+            }
+            System.out.println(String.format("Best of %d passes: tracing off %.2f ns/encounter, on %.2f ns/encounter (%+.1f%%)",
+                                             ROUNDS, off, on, 100 * (on - off) / off));
+            System.out.println(String.format("Narrative: %.0f characters/encounter; trace: 2 decisions of %d bytes each",
+                                             (double) counter.bytes / narrated, WORDS * 4 + 2 * 4));
+        } finally {
+            System.setOut(console);
+            enabled = false;
+        }
+        System.out.println("\nLast decisions:");
+        for (Decision decision : recent(6)) {
+            System.out.println(decision.explain());
+        }
+    }
+}
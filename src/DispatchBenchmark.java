@@ -0,0 +1,151 @@
+package src;
+
+import java.util.SplittableRandom;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.StarChart;
+
+/**
+ * Compares the type-pair dispatch of the analysis protocols with the getType()/instanceof
+ * branching they replaced.
+ *
+ * The legacy methods below are the previous decision trees with their narration removed,
+ * which is exactly what ran at the SILENT output level. The benchmark first checks that both
+ * versions agree on every input, then times each over the same mixed artifact pairs with
+ * {@link ArtifactBenchmark#nanosPerOp}.
+ */
+final class DispatchBenchmark {
+
+    static final int ROUNDS = 5;         // Timed passes per version
+
+    private DispatchBenchmark() {
+    }
+
+    /**
+     * The rational protocol's previous branching, without narration
+     */
+    static AnalysisResult legacyRational(Artifact ownedArtifact, Artifact newArtifact) {
+        if (ownedArtifact.getType() == ArtifactType.STAR_CHART) {
+            StarChart ownedChart = (StarChart) ownedArtifact;
+            if (newArtifact.getType() == ArtifactType.ENERGY_CRYSTAL) {
+                EnergyCrystal crystal = (EnergyCrystal) newArtifact;
+                if ((ownedChart.getRiskFactor() > 7 && ownedChart.getSystem() > 10)
+                    || (ownedChart.getRiskFactor() <= 7 && ownedChart.getSystem() <= 10)) {
+                    if (crystal.getPowerLevel() < 5) {
+                        return AnalysisResult.HAZARDOUS;
+                    } else if (crystal.getPowerLevel() < 15) {
+                        return AnalysisResult.MUNDANE;
+                    } else {
+                        return AnalysisResult.INCOMPATIBLE;
+                    }
+                } else {
+                    if (crystal.getPowerLevel() >= 10) {
+                        return AnalysisResult.VALUABLE;
+                    } else if (crystal.getPowerLevel() < 5) {
+                        return AnalysisResult.HAZARDOUS;
+                    } else {
+                        return AnalysisResult.MUNDANE;
+                    }
+                }
+            } else if (newArtifact.getType() == ArtifactType.INERT_ROCK) {
+                InertRock rock = (InertRock) newArtifact;
+                if (rock.getColor().equals("blue") || rock.getColor().equals("green") || rock.getColor().equals("purple")) {
+                    return AnalysisResult.VALUABLE;
+                } else if (rock.getColor().equals("red")) {
+                    return AnalysisResult.HAZARDOUS;
+                } else {
+                    return AnalysisResult.MUNDANE;
+                }
+            } else if (newArtifact.getType() == ArtifactType.STAR_CHART) {
+                StarChart newChart = (StarChart) newArtifact;
+                if (newChart.getDestination().equals(ownedChart.getDestination())) {
+                    return AnalysisResult.INCOMPATIBLE;
+                } else if (newChart.getRiskFactor() >= ownedChart.getRiskFactor() + 2) {
+                    return AnalysisResult.HAZARDOUS;
+                } else if (newChart.getSector() == ownedChart.getSector() && newChart.getSystem() != ownedChart.getSystem()) {
+                    return AnalysisResult.VALUABLE;
+                } else {
+                    return AnalysisResult.MUNDANE;
+                }
+            }
+        }
+        if ((ownedArtifact.getType() == ArtifactType.STAR_CHART && newArtifact.getType() == ArtifactType.ENERGY_CRYSTAL)
+            || (ownedArtifact.getType() == ArtifactType.ENERGY_CRYSTAL && newArtifact.getType() == ArtifactType.STAR_CHART)) {
+            return (newArtifact.getType() == ArtifactType.STAR_CHART) ? AnalysisResult.HAZARDOUS : AnalysisResult.MUNDANE;
+        }
+        return AnalysisResult.UNKNOWN;
+    }
+
+    /**
+     * The risk-taking protocol's previous branching (rocks of different colors are left to
+     * the caller, as they need a coin flip)
+     */
+    static AnalysisResult legacyRiskTaker(Artifact ownedArtifact, Artifact newArtifact) {
+        ArtifactType ownedType = ownedArtifact.getType();
+        ArtifactType newType = newArtifact.getType();
+        if (newType == ArtifactType.STAR_CHART) {
+            return AnalysisResult.VALUABLE;
+        }
+        if (ownedType == ArtifactType.STAR_CHART) {
+            return AnalysisResult.MUNDANE;
+        }
+        if (ownedType == ArtifactType.ENERGY_CRYSTAL && newType == ArtifactType.ENERGY_CRYSTAL) {
+            EnergyCrystal ownedCrystal = (EnergyCrystal) ownedArtifact;
+            EnergyCrystal newCrystal = (EnergyCrystal) newArtifact;
+            return (newCrystal.getPowerLevel() > ownedCrystal.getPowerLevel()) ? AnalysisResult.VALUABLE : AnalysisResult.MUNDANE;
+        }
+        if (ownedType == ArtifactType.INERT_ROCK && newType == ArtifactType.INERT_ROCK) {
+            InertRock ownedRock = (InertRock) ownedArtifact;
+            InertRock newRock = (InertRock) newArtifact;
+            if (ownedRock.getColor().equals(newRock.getColor())) {
+                return AnalysisResult.MUNDANE;
+            }
+            return Randomness.current().nextBoolean() ? AnalysisResult.VALUABLE : AnalysisResult.INCOMPATIBLE;
+        }
+        return AnalysisResult.UNKNOWN;
+    }
+
+    /**
+     * Verifies that both versions agree, then times them.
+     *
+     * @param args Optional number of calls per timed pass and seed
+     */
+    public static void main(String[] args) {
+        long calls = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000L;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1110L;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Artifact[] owned = ArtifactBenchmark.mixedInputs(random);
+        Artifact[] found = ArtifactBenchmark.mixedInputs(random);
+
+        for (int i = 0; i < ArtifactBenchmark.INPUTS; i++) {
+            boolean randomRocks = owned[i] instanceof InertRock && found[i] instanceof InertRock
+                && !((InertRock) owned[i]).getColor().equals(((InertRock) found[i]).getColor());
+            if (legacyRational(owned[i], found[i]) != Artifacts.rationalScavengerAnalysis(owned[i], found[i], OutputLevel.SILENT)
+                || (!randomRocks && legacyRiskTaker(owned[i], found[i]) != Artifacts.riskTakerScavengerAnalysis(owned[i], found[i]))) {
+                System.out.println("Error: dispatch disagrees with legacy branching for "
+                                   + Artifacts.describeArtifact(owned[i]) + " / " + Artifacts.describeArtifact(found[i]));
+                return;
+            }
+        }
+        System.out.println("Dispatch matches legacy branching on " + ArtifactBenchmark.INPUTS + " pairs");
+
+        ArtifactBenchmark.Operation legacyRationalOp = (i, level) -> legacyRational(owned[i], found[i]).ordinal();
+        ArtifactBenchmark.Operation rationalOp = (i, level) -> Artifacts.rationalScavengerAnalysis(owned[i], found[i], level).ordinal();
+        ArtifactBenchmark.Operation legacyRiskOp = (i, level) -> legacyRiskTaker(owned[i], found[i]).ordinal();
+        ArtifactBenchmark.Operation riskOp = (i, level) -> Artifacts.riskTakerScavengerAnalysis(owned[i], found[i]).ordinal();
+        for (int round = 0; round < ROUNDS; round++) {
+            double legacyRational = ArtifactBenchmark.nanosPerOp(legacyRationalOp, OutputLevel.SILENT, calls);
+            double rational = ArtifactBenchmark.nanosPerOp(rationalOp, OutputLevel.SILENT, calls);
+            double legacyRisk = ArtifactBenchmark.nanosPerOp(legacyRiskOp, OutputLevel.SILENT, calls);
+            double risk = ArtifactBenchmark.nanosPerOp(riskOp, OutputLevel.SILENT, calls);
+            System.out.println(String.format("Round %d: rational %.2f -> %.2f ns/call, risk-taker %.2f -> %.2f ns/call",
+                                             round + 1, legacyRational, rational, legacyRisk, risk));
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.EncounterType;
+import src.Artifacts.OutputLevel;
+
+/**
+ * A resident encounter service: accepts rational scavenger log entries over a localhost
+ * socket and answers each with the final cargo descriptor.
+ *
+ * The protocol is line based. Every request line has the format accepted by
+ * {@link Artifacts#main}; the reply is one line holding {@link Artifacts#describeArtifact}
+ * of the final cargo, or {@code Error: <message>} if the entry was rejected. Clients may
+ * pipeline requests; replies come back in order and are flushed whenever the server has
+ * caught up with its input.
+ *
+ * Each connection is served on its own virtual thread, straight from the socket's bytes
+ * through {@link ArtifactParser} and {@link Artifacts#simulateRationalEncounter}, so once
+ * the JVM is warm an entry costs microseconds instead of a JVM start-up.
+ */
+final class EncounterServer implements AutoCloseable {
+
+    static final int MAX_LINE_BYTES = 1 << 16;   // Longest accepted request line
+    static final int REPLY_BUFFER_BYTES = 1 << 13;
+
+    private static final byte[] ERROR_PREFIX = "Error: ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_TOO_LONG = ("Error: Log entry longer than " + MAX_LINE_BYTES + " bytes\n")
+        .getBytes(StandardCharsets.US_ASCII);
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder requests = new LongAdder();   // Entries answered with a cargo descriptor
+    private final LongAdder errors = new LongAdder();     // Entries answered with an error
+    private Thread acceptor;
+
+    /**
+     * Binds the service to a port on the loopback interface
+     * @param port Port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    EncounterServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /** @return The port the service is listening on */
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** @return Number of entries answered with a cargo descriptor */
+    long requests() {
+        return requests.sum();
+    }
+
+    /** @return Number of entries answered with an error */
+    long errors() {
+        return errors.sum();
+    }
+
+    /**
+     * Starts accepting connections on a background thread
+     * @return This server
+     */
+    synchronized EncounterServer start() {
+        if (acceptor == null) {
+            acceptor = Thread.ofPlatform().name("encounter-acceptor").daemon(true).start(this::acceptLoop);
+        }
+        return this;
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> serve(socket));
+            } catch (SocketException e) {
+                return;   // Server socket closed
+            } catch (IOException e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Answers every line received on a connection until the client closes it.
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), REPLY_BUFFER_BYTES);
+            ArtifactParser.Entry entry = new ArtifactParser.Entry();
+            byte[] buf = new byte[MAX_LINE_BYTES];
+            int start = 0;                 // First byte not yet scanned for a newline
+            int end = 0;                   // End of the bytes read so far (the pending line starts at 0)
+            boolean discarding = false;    // Skipping the rest of an over-long line
+            while (true) {
+                int n = in.read(buf, end, buf.length - end);
+                if (n < 0) {
+                    break;
+                }
+                end += n;
+                int lineStart = 0;
+                for (int i = start; i < end; i++) {
+                    if (buf[i] != '\n') {
+                        continue;
+                    }
+                    if (discarding) {
+                        discarding = false;
+                    } else {
+                        int lineEnd = i > lineStart && buf[i - 1] == '\r' ? i - 1 : i;
+                        answer(buf, lineStart, lineEnd - lineStart, entry, out);
+                    }
+                    lineStart = i + 1;
+                }
+                if (lineStart == 0 && end == buf.length) {
+                    // No newline in a full buffer: reject the line and skip to its end
+                    if (!discarding) {
+                        out.write(LINE_TOO_LONG);
+                        errors.increment();
+                        discarding = true;
+                    }
+                    lineStart = end;
+                }
+                System.arraycopy(buf, lineStart, buf, 0, end - lineStart);
+                end -= lineStart;
+                start = end;
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // Client went away; nothing to answer
+        }
+    }
+
+    /**
+     * Simulates one entry and writes its reply line
+     */
+    private void answer(byte[] buf, int off, int len, ArtifactParser.Entry entry, OutputStream out) throws IOException {
+        byte[] reply;
+        try {
+            ArtifactParser.parseEntry(buf, off, len, entry);
+            // Per-encounter narrative would only slow down replies nobody reads
+            Artifact finalCargo = Artifacts.simulateRationalEncounter(entry.encounterType, entry.owned, entry.other,
+                                                                      OutputLevel.SILENT);
+            reply = Artifacts.describeArtifact(finalCargo).getBytes(StandardCharsets.UTF_8);
+            requests.increment();
+        } catch (RuntimeException e) {
+            out.write(ERROR_PREFIX);
+            reply = String.valueOf(e.getMessage()).replace('\n', ' ').getBytes(StandardCharsets.UTF_8);
+            errors.increment();
+        }
+        out.write(reply);
+        out.write('\n');
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    /**
+     * Drives a server with closed-loop clients and reports throughput and latency percentiles
+     * @param port Port of a running server
+     * @param clients Number of concurrent connections
+     * @param requestsPerClient Requests sent by each connection
+     * @param seed Seed for the generated log entries
+     * @return The printed report
+     * @throws Exception if a client fails
+     */
+    static String loadTest(int port, int clients, int requestsPerClient, long seed) throws Exception {
+        List<byte[]> lines = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < 1024; i++) {
+            EncounterType type = random.nextBoolean() ? EncounterType.ASTEROID : EncounterType.TRADING_POST;
+            lines.add((type.name() + " | " + Artifacts.describeArtifact(FleetSimulation.MIXED_FIELD.next(random)) + " | "
+                       + Artifacts.describeArtifact(FleetSimulation.MIXED_FIELD.next(random)) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        long[][] latencies = new long[clients][];
+        long started = System.nanoTime();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                int offset = c;
+                results.add(pool.submit(() -> runClient(port, lines, offset, requestsPerClient)));
+            }
+            for (int c = 0; c < clients; c++) {
+                latencies[c] = results.get(c).get();
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        long[] all = new long[clients * requestsPerClient];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, c * requestsPerClient, requestsPerClient);
+        }
+        Arrays.sort(all);
+        return String.format("%d requests over %d connections in %.3f s (%.0f requests/s)%n"
+                             + "latency p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+                             all.length, clients, elapsed / 1e9, all.length / (elapsed / 1e9),
+                             percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3,
+                             percentile(all, 0.999) / 1e3, all[all.length - 1] / 1e3);
+    }
+
+    private static long[] runClient(int port, List<byte[]> lines, int offset, int count) throws IOException {
+        long[] latencies = new long[count];
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            byte[] reply = new byte[4096];
+            for (int i = 0; i < count; i++) {
+                long start = System.nanoTime();
+                out.write(lines.get((offset + i) & (lines.size() - 1)));
+                int read = 0;
+                do {
+                    int n = in.read(reply, read, reply.length - read);
+                    if (n < 0) {
+                        throw new IOException("Server closed the connection");
+                    }
+                    read += n;
+                } while (reply[read - 1] != '\n');
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    /**
+     * Runs the service until the process is stopped, or load-tests a running service.
+     *
+     * @param args [port] to serve (default 0, any free port), or
+     *             bench &lt;port&gt; [clients] [requests per client]
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length > 0 && args[0].equals("bench")) {
+                if (args.length < 2) {
+                    System.out.println("Usage: java src.EncounterServer bench <port> [clients] [requests per client]");
+                    return;
+                }
+                int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+                int perClient = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+                System.out.println(loadTest(Integer.parseInt(args[1]), clients, perClient, 1110L));
+                return;
+            }
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+            EncounterServer server = new EncounterServer(port).start();
+            System.out.println("Encounter service listening on " + InetAddress.getLoopbackAddress().getHostAddress()
+                               + ":" + server.port());
+            server.acceptor.join();
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
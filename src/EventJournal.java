@@ -0,0 +1,564 @@
+package src;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.CargoListener;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.Scavenger;
+import src.Artifacts.StarChart;
+
+/**
+ * An append-only journal of cargo changes, from which the cargo of every scavenger at any
+ * earlier point can be rebuilt.
+ *
+ * Attached as a {@link CargoListener}, the journal writes one fixed-size record per
+ * {@link Scavenger#setCargo} into memory-mapped segment files of RECORDS_PER_SEGMENT records
+ * each, opening the next segment when one fills up. A writer reserves its record's sequence
+ * number with a single atomic add and fills the record in place, writing the record's header
+ * last, so writers never lock and a record with a zero header was never completed. Strings
+ * (scavenger names, destinations and colors) are written once to a separate symbol log and
+ * referenced by id.
+ *
+ * Nothing is forced to disk per record. {@link #commit} forces the symbol log and every
+ * segment written since the last commit in one go, and a caller that finds a commit in
+ * progress waits for it and is usually covered by it, so concurrent commits share one force.
+ *
+ * Record layout (little endian, RECORD_BYTES each):
+ * <pre>
+ *  0  long  sequence + 1 (0 marks an unwritten record)
+ *  8  long  wall-clock time in milliseconds
+ * 16  int   journal id of the scavenger
+ * 20  byte  kind: the new cargo's ArtifactType ordinal, or KIND_REGISTER
+ * 24  int   destination, color or name symbol id, or crystal power
+ * 28  int   chart risk, 32 int chart sector, 36 int chart system
+ * </pre>
+ * A scavenger's first record registers its name; the next one holds the cargo it had before
+ * the journal first saw it change.
+ */
+final class EventJournal implements CargoListener, AutoCloseable {
+
+    static final int RECORD_BYTES = 40;
+    static final int RECORDS_PER_SEGMENT = 1 << 20;   // 40 MiB segments
+    static final byte KIND_REGISTER = 3;              // Record introduces a scavenger's name
+    static final String SYMBOL_LOG = "symbols.log";
+
+    private static final int OFFSET_TIME = 8;
+    private static final int OFFSET_SCAVENGER = 16;
+    private static final int OFFSET_KIND = 20;
+    private static final int OFFSET_VALUE = 24;
+    private static final int OFFSET_RISK = 28;
+    private static final int OFFSET_SECTOR = 32;
+    private static final int OFFSET_SYSTEM = 36;
+
+    // Headers are published with release stores and scanned with acquire loads, so a record
+    // whose header is seen is seen whole
+    private static final VarHandle HEADER = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final AtomicLong nextSequence;                   // Next sequence number to hand out
+    private volatile MappedByteBuffer[] segments;            // Mapped segments by index, grown under the monitor
+    private final FileChannel symbolLog;
+    private final SymbolTable symbols = new SymbolTable(1 << 24);
+    private volatile int loggedSymbols;                      // Symbols already appended to the symbol log
+    // Journal id of each registered scavenger. Scavengers compare by identity, so this is an identity map
+    private final Map<Scavenger, Integer> journalIds = new ConcurrentHashMap<>();
+    private int nextJournalId;                               // Guarded by the monitor
+    private final Object commitLock = new Object();
+    private volatile long durable;                           // Records before this sequence are on disk
+    private volatile RuntimeException broken;                // Why a reserved record could not be written, if one could not
+
+    /**
+     * Opens a journal, creating it if the directory is empty and appending after the last
+     * complete record otherwise
+     * @param directory Directory holding the segments and the symbol log
+     * @throws IOException if the journal cannot be opened
+     */
+    EventJournal(Path directory) throws IOException {
+        this(directory, RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     * Opens a journal with a given segment size, which must match the one it was written with
+     * @param directory Directory holding the segments and the symbol log
+     * @param recordsPerSegment Records per segment file
+     * @throws IOException if the journal cannot be opened
+     */
+    EventJournal(Path directory, int recordsPerSegment) throws IOException {
+        if (recordsPerSegment < 1 || (long) recordsPerSegment * RECORD_BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segments must hold between 1 and " + Integer.MAX_VALUE / RECORD_BYTES + " records");
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.symbolLog = FileChannel.open(directory.resolve(SYMBOL_LOG), StandardOpenOption.CREATE,
+                                          StandardOpenOption.READ, StandardOpenOption.WRITE);
+        int logged = 0;
+        for (String symbol : readSymbols(symbolLog)) {
+            symbols.intern(symbol);
+            logged++;
+        }
+        this.loggedSymbols = logged;
+        symbolLog.position(symbolLog.size());
+
+        // Continue after the last complete record, and recover the scavengers' journal ids
+        Reader reader = new Reader(directory, recordsPerSegment);
+        long end = 0;
+        int maxJournalId = -1;
+        for (MappedByteBuffer segment : reader.segments) {
+            for (int off = 0; off < segment.limit() && segment.getLong(off) != 0; off += RECORD_BYTES) {
+                maxJournalId = Math.max(maxJournalId, segment.getInt(off + OFFSET_SCAVENGER));
+                end++;
+            }
+        }
+        this.nextJournalId = maxJournalId + 1;
+        this.nextSequence = new AtomicLong(end);
+        this.durable = end;
+        this.segments = new MappedByteBuffer[0];
+    }
+
+    /**
+     * Starts journaling every cargo change in the process
+     * @return This journal
+     */
+    EventJournal attach() {
+        Artifacts.addCargoListener(this);
+        return this;
+    }
+
+    /**
+     * Stops journaling cargo changes
+     */
+    void detach() {
+        Artifacts.removeCargoListener(this);
+    }
+
+    @Override
+    public void cargoChanged(Scavenger scavenger, Artifact previous, Artifact cargo) {
+        Integer id = journalIds.get(scavenger);
+        append(id != null ? id : register(scavenger, previous), cargo);
+    }
+
+    /**
+     * Gives a scavenger its journal id, recording its name and the cargo it held before
+     */
+    private synchronized int register(Scavenger scavenger, Artifact previous) {
+        Integer registered = journalIds.get(scavenger);
+        if (registered != null) {
+            return registered;
+        }
+        int name = symbol(scavenger.getName());
+        int id = nextJournalId++;
+        write(reserve(), id, KIND_REGISTER, name, 0, 0, 0);
+        append(id, previous);
+        journalIds.put(scavenger, id);
+        return id;
+    }
+
+    /**
+     * Appends one cargo record
+     * @return The record's sequence number
+     */
+    private long append(int id, Artifact cargo) {
+        // Everything that can fail on bad input happens before a sequence number is reserved
+        byte kind = (byte) cargo.getType().ordinal();
+        if (cargo instanceof StarChart) {
+            StarChart chart = (StarChart) cargo;
+            int destination = symbol(chart.getDestination());
+            return write(reserve(), id, kind, destination, chart.getRiskFactor(), chart.getSector(), chart.getSystem());
+        } else if (cargo instanceof EnergyCrystal) {
+            return write(reserve(), id, kind, ((EnergyCrystal) cargo).getPowerLevel(), 0, 0, 0);
+        } else {
+            int color = symbol(((InertRock) cargo).getColor());
+            return write(reserve(), id, kind, color, 0, 0, 0);
+        }
+    }
+
+    private long reserve() {
+        if (broken != null) {
+            throw new IllegalStateException("Journal is broken: " + broken.getMessage(), broken);
+        }
+        return nextSequence.getAndIncrement();
+    }
+
+    /**
+     * Fills in a reserved record. If its segment cannot be mapped the record stays a hole
+     * that no later commit could get past, so the journal is marked broken instead.
+     */
+    private long write(long sequence, int id, byte kind, int value, int risk, int sector, int system) {
+        ByteBuffer record;
+        try {
+            record = slot(sequence);
+        } catch (RuntimeException e) {
+            broken = e;
+            throw e;
+        }
+        int off = offsetOf(sequence);
+        record.putLong(off + OFFSET_TIME, System.currentTimeMillis());
+        record.putInt(off + OFFSET_SCAVENGER, id);
+        record.put(off + OFFSET_KIND, kind);
+        record.putInt(off + OFFSET_VALUE, value);
+        record.putInt(off + OFFSET_RISK, risk);
+        record.putInt(off + OFFSET_SECTOR, sector);
+        record.putInt(off + OFFSET_SYSTEM, system);
+        HEADER.setRelease(record, off, sequence + 1);   // The header goes last: a record is complete once it is set
+        return sequence;
+    }
+
+    private int offsetOf(long sequence) {
+        return (int) (sequence % recordsPerSegment) * RECORD_BYTES;
+    }
+
+    /**
+     * Returns the mapped segment holding a sequence number, mapping new segments as needed
+     */
+    private ByteBuffer slot(long sequence) {
+        int index = (int) (sequence / recordsPerSegment);
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+        return map(index);
+    }
+
+    private synchronized ByteBuffer map(int index) {
+        MappedByteBuffer[] mapped = segments;
+        if (index < mapped.length && mapped[index] != null) {
+            return mapped[index];
+        }
+        if (index >= mapped.length) {
+            mapped = Arrays.copyOf(mapped, Math.max(index + 1, mapped.length * 2));
+        }
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_BYTES);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            mapped[index] = segment;
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map journal segment " + index + ": " + e.getMessage(), e);
+        }
+        segments = mapped;
+        return mapped[index];
+    }
+
+    /**
+     * Returns the id of a string, appending it to the symbol log the first time it is seen
+     */
+    private int symbol(String text) {
+        int id = symbols.intern(text);
+        if (id == SymbolTable.NOT_FOUND) {
+            throw new IllegalStateException("Journal symbol table is full");
+        }
+        if (id >= loggedSymbols) {
+            logSymbols(id);
+        }
+        return id;
+    }
+
+    private synchronized void logSymbols(int upTo) {
+        int logged = loggedSymbols;
+        try {
+            for (; logged <= upTo; logged++) {
+                byte[] bytes = symbols.symbol(logged).getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+                entry.putInt(bytes.length).put(bytes).flip();
+                while (entry.hasRemaining()) {
+                    symbolLog.write(entry);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot write journal symbol log: " + e.getMessage(), e);
+        } finally {
+            loggedSymbols = logged;
+        }
+    }
+
+    /** @return Number of records written or reserved so far */
+    long size() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Makes every record up to a sequence number durable. Concurrent callers share one force:
+     * whoever holds the commit lock forces all complete records, and the others find their
+     * record already covered when they get the lock.
+     * @param sequence Last sequence number that must be durable
+     */
+    void commit(long sequence) {
+        sequence = Math.min(sequence, nextSequence.get() - 1);
+        while (durable <= sequence) {
+            synchronized (commitLock) {
+                if (durable > sequence) {
+                    return;
+                }
+                long from = durable;
+                long to = from;
+                long reserved = nextSequence.get();
+                // Only the complete prefix may be declared durable
+                while (to < reserved && (long) HEADER.getAcquire(slot(to), offsetOf(to)) != 0) {
+                    to++;
+                }
+                if (to == from) {
+                    if (broken != null) {
+                        throw new IllegalStateException("Journal is broken: " + broken.getMessage(), broken);
+                    }
+                    Thread.onSpinWait();   // The record is still being written by its thread
+                    continue;
+                }
+                try {
+                    symbolLog.force(false);
+                } catch (IOException e) {
+                    throw new IllegalStateException("Cannot force journal symbol log: " + e.getMessage(), e);
+                }
+                for (long s = from; s < to; ) {
+                    int index = (int) (s / recordsPerSegment);
+                    long segmentEnd = Math.min(to, (long) (index + 1) * recordsPerSegment);
+                    segments[index].force(offsetOf(s), (int) (segmentEnd - s) * RECORD_BYTES);
+                    s = segmentEnd;
+                }
+                durable = to;
+            }
+        }
+    }
+
+    /**
+     * Makes every record written so far durable
+     */
+    void commit() {
+        commit(nextSequence.get() - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        detach();
+        commit();
+        symbolLog.close();
+        segments = new MappedByteBuffer[0];
+    }
+
+    static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("segment-%06d.jrn", index));
+    }
+
+    private static List<String> readSymbols(FileChannel channel) throws IOException {
+        List<String> result = new ArrayList<>();
+        ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        while (buf.remaining() >= 4) {
+            int length = buf.getInt();
+            if (length < 0 || length > buf.remaining()) {
+                break;   // Torn final entry: no record can refer to it
+            }
+            byte[] bytes = new byte[length];
+            buf.get(bytes);
+            result.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    /**
+     * The journaled state of one scavenger at some point.
+     */
+    static final class ScavengerState {
+        final int journalId;       // The scavenger's id in the journal
+        final String name;         // The scavenger's name
+        final Artifact cargo;      // Its cargo at that point
+        final long sequence;       // Sequence number of the record that gave it this cargo
+        final long timeMillis;     // When that record was written
+
+        ScavengerState(int journalId, String name, Artifact cargo, long sequence, long timeMillis) {
+            this.journalId = journalId;
+            this.name = name;
+            this.cargo = cargo;
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return name + " #" + journalId + ": " + Artifacts.describeArtifact(cargo) + " (record " + sequence + ")";
+        }
+    }
+
+    /**
+     * Read-only view of a journal's segments and symbols, for replay.
+     */
+    static final class Reader {
+        final List<MappedByteBuffer> segments = new ArrayList<>();
+        final List<String> symbols;
+        final int recordsPerSegment;
+        long scanned;   // Records read by the last stateAt
+
+        /**
+         * Maps every segment of a journal
+         * @param directory The journal directory
+         * @param recordsPerSegment Records per segment file
+         * @throws IOException if the journal cannot be read
+         */
+        Reader(Path directory, int recordsPerSegment) throws IOException {
+            this.recordsPerSegment = recordsPerSegment;
+            Path log = directory.resolve(SYMBOL_LOG);
+            if (Files.exists(log)) {
+                try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+                    symbols = readSymbols(channel);
+                }
+            } else {
+                symbols = new ArrayList<>();
+            }
+            for (int index = 0; Files.exists(segmentPath(directory, index)); index++) {
+                try (FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.READ)) {
+                    MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                                           Math.min(channel.size(), (long) recordsPerSegment * RECORD_BYTES));
+                    segment.order(ByteOrder.LITTLE_ENDIAN);
+                    segments.add(segment);
+                }
+            }
+        }
+
+        /**
+         * Rebuilds every scavenger's cargo as of a sequence number and a time. The scan only
+         * remembers where each scavenger's latest record is; artifacts are built once at the end.
+         * @param untilSequence Records with a greater sequence number are ignored
+         * @param untilTimeMillis Records written after this time are ignored
+         * @return The state of every scavenger registered by then, by journal id
+         */
+        List<ScavengerState> stateAt(long untilSequence, long untilTimeMillis) {
+            long[] latest = new long[16];      // Sequence + 1 of each scavenger's latest cargo record
+            long[] registered = new long[16];  // Sequence + 1 of each scavenger's register record
+            long sequence = 0;
+            scan:
+            for (MappedByteBuffer segment : segments) {
+                int limit = segment.limit();
+                for (int off = 0; off < limit; off += RECORD_BYTES, sequence++) {
+                    if (segment.getLong(off) == 0 || sequence > untilSequence
+                        || segment.getLong(off + OFFSET_TIME) > untilTimeMillis) {
+                        break scan;
+                    }
+                    int id = segment.getInt(off + OFFSET_SCAVENGER);
+                    if (id >= latest.length) {
+                        latest = Arrays.copyOf(latest, Math.max(id + 1, latest.length * 2));
+                        registered = Arrays.copyOf(registered, latest.length);
+                    }
+                    if (segment.get(off + OFFSET_KIND) == KIND_REGISTER) {
+                        registered[id] = sequence + 1;
+                    } else {
+                        latest[id] = sequence + 1;
+                    }
+                }
+            }
+            scanned = sequence;
+            List<ScavengerState> states = new ArrayList<>();
+            for (int id = 0; id < latest.length; id++) {
+                if (registered[id] != 0 && latest[id] != 0) {
+                    String name = symbols.get(record(registered[id] - 1).getInt(offset(registered[id] - 1) + OFFSET_VALUE));
+                    long at = latest[id] - 1;
+                    states.add(new ScavengerState(id, name, cargo(at), at, record(at).getLong(offset(at) + OFFSET_TIME)));
+                }
+            }
+            return states;
+        }
+
+        private ByteBuffer record(long sequence) {
+            return segments.get((int) (sequence / recordsPerSegment));
+        }
+
+        private int offset(long sequence) {
+            return (int) (sequence % recordsPerSegment) * RECORD_BYTES;
+        }
+
+        /**
+         * Decodes the cargo held by a cargo record
+         */
+        Artifact cargo(long sequence) {
+            ByteBuffer segment = record(sequence);
+            int off = offset(sequence);
+            int value = segment.getInt(off + OFFSET_VALUE);
+            switch (segment.get(off + OFFSET_KIND)) {
+                case 0:
+                    return Artifacts.makeStarChart(symbols.get(value), segment.getInt(off + OFFSET_RISK),
+                                                   segment.getInt(off + OFFSET_SECTOR), segment.getInt(off + OFFSET_SYSTEM));
+                case 1:
+                    return Artifacts.makeEnergyCrystal(value);
+                case 2:
+                    return Artifacts.makeInertRock(symbols.get(value));
+                default:
+                    throw new IllegalStateException("Record " + sequence + " holds no cargo");
+            }
+        }
+    }
+
+    /**
+     * Journals a fleet simulation and checks that replay rebuilds the fleet, or replays a journal.
+     *
+     * @param args record &lt;directory&gt; [scavengers] [rounds], or
+     *             replay &lt;directory&gt; [until sequence]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("record") || args[0].equals("replay"))) {
+            System.out.println("Usage: java src.EventJournal record <directory> [scavengers] [rounds]");
+            System.out.println("       java src.EventJournal replay <directory> [until sequence]");
+            return;
+        }
+        try {
+            Path directory = Path.of(args[1]);
+            if (args[0].equals("record")) {
+                int size = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+                int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+                Scavenger[] fleet = FleetSimulation.mixedFleet(size, Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7),
+                                                               Artifacts.makeInertRock("red"));
+                long start = System.nanoTime();
+                try (EventJournal journal = new EventJournal(directory).attach()) {
+                    new FleetSimulation(fleet, FleetSimulation.MIXED_FIELD, 1110L, 10).runParallel(rounds, ForkJoinPool.commonPool());
+                    journal.commit();
+                    System.out.println(String.format("Journaled %d records in %.3f s", journal.size(), (System.nanoTime() - start) / 1e9));
+                }
+                List<ScavengerState> states = new Reader(directory, RECORDS_PER_SEGMENT).stateAt(Long.MAX_VALUE, Long.MAX_VALUE);
+                Map<String, Scavenger> byName = new HashMap<>();
+                for (Scavenger scavenger : fleet) {
+                    byName.put(scavenger.getName(), scavenger);
+                }
+                int matching = 0;
+                for (ScavengerState state : states) {
+                    Scavenger scavenger = byName.get(state.name);
+                    if (scavenger != null
+                        && Artifacts.describeArtifact(state.cargo).equals(Artifacts.describeArtifact(scavenger.getCargo()))) {
+                        matching++;
+                    }
+                }
+                System.out.println("Replayed cargo matches the fleet for " + matching + " of " + states.size() + " journaled scavengers");
+            } else {
+                long until = args.length > 2 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+                long start = System.nanoTime();
+                Reader reader = new Reader(directory, RECORDS_PER_SEGMENT);
+                List<ScavengerState> states = reader.stateAt(until, Long.MAX_VALUE);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                for (int i = 0; i < Math.min(10, states.size()); i++) {
+                    System.out.println(states.get(i));
+                }
+                System.out.println(String.format("%d scavengers rebuilt from %d records in %.3f s (%.0f MB/s)", states.size(),
+                                                 reader.scanned, seconds, reader.scanned * RECORD_BYTES / 1e6 / seconds));
+            }
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package src;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.random.RandomGenerator;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.AsteroidOutcome;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+
+/**
+ * Fork/join simulation of a whole fleet of scavengers exploring asteroids.
+ *
+ * Each round, every scavenger visits a fixed number of asteroids and runs
+ * {@link Artifacts#exploreAsteroid} on what it finds. A scavenger's asteroids, its
+ * hazardous-item decisions and its protocol's own random choices are drawn from its own
+ * generator ({@link Randomness#forUnit}), seeded from the root seed and the scavenger's
+ * position in the fleet, and bound to the worker thread while the scavenger is simulated.
+ * Scavengers therefore never share state, the fleet can be split across a ForkJoinPool in any
+ * way, and a parallel run produces exactly the same per-round statistics as a sequential one.
+ */
+final class FleetSimulation {
+
+    static final int MIN_PARTITION = 1024;   // Scavengers below which a partition is not split further
+
+    /**
+     * Produces the artifact a scavenger finds on its next asteroid.
+     */
+    interface AsteroidSource {
+        /**
+         * Draws the next artifact
+         * @param random The exploring scavenger's own generator
+         * @return The artifact found on the asteroid
+         */
+        Artifact next(SplittableRandom random);
+    }
+
+    private static final String[] FIELD_DESTINATIONS = {"Alpha Centauri", "Vega", "Sirius", "Rigel", "Deneb"};
+    private static final String[] FIELD_COLORS = {"blue", "green", "purple", "red", "dull grey", "black"};
+
+    /** An asteroid field with an even mix of charts, crystals and rocks */
+    static final AsteroidSource MIXED_FIELD = random -> {
+        switch (random.nextInt(3)) {
+            case 0:
+                return Artifacts.makeStarChart(FIELD_DESTINATIONS[random.nextInt(FIELD_DESTINATIONS.length)],
+                                               random.nextInt(1, 11), random.nextInt(1, 6), random.nextInt(1, 16));
+            case 1:
+                return Artifacts.makeEnergyCrystal(random.nextInt(1, 21));
+            default:
+                return Artifacts.makeInertRock(FIELD_COLORS[random.nextInt(FIELD_COLORS.length)]);
+        }
+    };
+
+    /**
+     * Fleet-wide counters for one round. Counters only ever add up, so partial statistics
+     * from different partitions can be merged in any order.
+     */
+    static final class RoundStats {
+        long encounters;                                            // Asteroids explored
+        long acquired;                                              // Found artifact taken as new cargo
+        long destroyed;                                             // Cargo destroyed by a hazardous item
+        long ignored;                                               // Found artifact left behind
+        final long[] cargoByType = new long[ArtifactType.values().length]; // Cargo types held at round end
+
+        /**
+         * Adds another partition's counters into this one
+         * @param other The counters to merge in
+         */
+        void merge(RoundStats other) {
+            encounters += other.encounters;
+            acquired += other.acquired;
+            destroyed += other.destroyed;
+            ignored += other.ignored;
+            for (int i = 0; i < cargoByType.length; i++) {
+                cargoByType[i] += other.cargoByType[i];
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RoundStats)) {
+                return false;
+            }
+            RoundStats other = (RoundStats) o;
+            return encounters == other.encounters && acquired == other.acquired && destroyed == other.destroyed
+                && ignored == other.ignored && Arrays.equals(cargoByType, other.cargoByType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(encounters + 31 * acquired + 961 * destroyed) ^ Arrays.hashCode(cargoByType);
+        }
+
+        @Override
+        public String toString() {
+            return "encounters=" + encounters + ", acquired=" + acquired + ", destroyed=" + destroyed
+                + ", ignored=" + ignored + ", cargo " + ArtifactType.STAR_CHART + "=" + cargoByType[0]
+                + " " + ArtifactType.ENERGY_CRYSTAL + "=" + cargoByType[1] + " " + ArtifactType.INERT_ROCK + "=" + cargoByType[2];
+        }
+    }
+
+    private final Scavenger[] fleet;            // The scavengers, mutated in place by the simulation
+    private final AsteroidSource source;        // Where asteroids' artifacts come from
+    private final long seed;                    // Root seed for every scavenger's generator
+    private final int asteroidsPerRound;        // Asteroids each scavenger visits per round
+
+    /**
+     * Constructs a fleet simulation
+     * @param fleet The scavengers to simulate
+     * @param source Where asteroids' artifacts come from
+     * @param seed Root seed for the whole run
+     * @param asteroidsPerRound Asteroids each scavenger visits per round
+     */
+    FleetSimulation(Scavenger[] fleet, AsteroidSource source, long seed, int asteroidsPerRound) {
+        if (asteroidsPerRound < 1) {
+            throw new IllegalArgumentException("Each scavenger must visit at least one asteroid per round");
+        }
+        this.fleet = fleet;
+        this.source = source;
+        this.seed = seed;
+        this.asteroidsPerRound = asteroidsPerRound;
+    }
+
+    /**
+     * Runs the simulation across a ForkJoinPool
+     * @param rounds Number of rounds
+     * @param pool The pool to run partitions on
+     * @return Fleet-wide statistics for each round
+     */
+    RoundStats[] runParallel(int rounds, ForkJoinPool pool) {
+        int partition = Math.max(MIN_PARTITION, fleet.length / (pool.getParallelism() * 8));
+        return pool.invoke(new Partition(0, fleet.length, rounds, partition));
+    }
+
+    /**
+     * Runs the simulation on the calling thread
+     * @param rounds Number of rounds
+     * @return Fleet-wide statistics for each round
+     */
+    RoundStats[] runSequential(int rounds) {
+        return simulate(0, fleet.length, rounds);
+    }
+
+    /**
+     * Simulates every round for a contiguous slice of the fleet.
+     */
+    private RoundStats[] simulate(int from, int to, int rounds) {
+        RoundStats[] stats = newStats(rounds);
+        for (int i = from; i < to; i++) {
+            Scavenger scavenger = fleet[i];
+            SplittableRandom random = Randomness.forUnit(seed, i);
+            RandomGenerator previous = Randomness.bind(random);   // Protocols draw from it too
+            try {
+                simulateScavenger(scavenger, random, stats);
+            } finally {
+                Randomness.bind(previous);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Simulates every round for one scavenger, drawing asteroids and decisions from its generator.
+     */
+    private void simulateScavenger(Scavenger scavenger, SplittableRandom random, RoundStats[] stats) {
+        for (RoundStats roundStats : stats) {
+            for (int k = 0; k < asteroidsPerRound; k++) {
+                // Classified by outcome: with interned artifacts the cargo may not visibly change
+                AsteroidOutcome outcome = Artifacts.exploreAsteroidOutcome(scavenger, source.next(random), random, OutputLevel.SILENT);
+                roundStats.encounters++;
+                if (outcome.taken()) {
+                    roundStats.acquired++;
+                } else if (outcome == AsteroidOutcome.DESTROYED) {
+                    roundStats.destroyed++;
+                } else {
+                    roundStats.ignored++;
+                }
+            }
+            roundStats.cargoByType[scavenger.getCargo().getType().ordinal()]++;
+        }
+    }
+
+    private static RoundStats[] newStats(int rounds) {
+        RoundStats[] stats = new RoundStats[rounds];
+        for (int i = 0; i < rounds; i++) {
+            stats[i] = new RoundStats();
+        }
+        return stats;
+    }
+
+    /**
+     * Fork/join task that splits the fleet until partitions are small enough to simulate directly.
+     */
+    @SuppressWarnings("serial")   // Fork/join tasks are never serialized
+    private final class Partition extends RecursiveTask<RoundStats[]> {
+        private final int from;
+        private final int to;
+        private final int rounds;
+        private final int threshold;
+
+        Partition(int from, int to, int rounds, int threshold) {
+            this.from = from;
+            this.to = to;
+            this.rounds = rounds;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected RoundStats[] compute() {
+            if (to - from <= threshold) {
+                return simulate(from, to, rounds);
+            }
+            int mid = (from + to) >>> 1;
+            Partition left = new Partition(from, mid, rounds, threshold);
+            left.fork();
+            RoundStats[] right = new Partition(mid, to, rounds, threshold).compute();
+            RoundStats[] merged = left.join();
+            for (int round = 0; round < rounds; round++) {
+                merged[round].merge(right[round]);
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Builds a fleet of rational scavengers that all start with the same cargo
+     * @param size Number of scavengers
+     * @param initialCargo The cargo each scavenger starts with
+     * @return The fleet
+     */
+    static Scavenger[] rationalFleet(int size, Artifact initialCargo) {
+        Scavenger[] fleet = new Scavenger[size];
+        for (int i = 0; i < size; i++) {
+            fleet[i] = Artifacts.makeScavenger("Scavenger " + i, Artifacts.RATIONAL_PROTOCOL, initialCargo);
+        }
+        return fleet;
+    }
+
+    /**
+     * Builds a fleet alternating rational and risk-taking scavengers
+     * @param size Number of scavengers
+     * @param rationalCargo The cargo each rational scavenger starts with
+     * @param riskTakerCargo The cargo each risk-taking scavenger starts with
+     * @return The fleet
+     */
+    static Scavenger[] mixedFleet(int size, Artifact rationalCargo, Artifact riskTakerCargo) {
+        Scavenger[] fleet = new Scavenger[size];
+        for (int i = 0; i < size; i++) {
+            fleet[i] = i % 2 == 0
+                ? Artifacts.makeScavenger("Scavenger " + i, Artifacts.RATIONAL_PROTOCOL, rationalCargo)
+                : Artifacts.makeScavenger("Scavenger " + i, Artifacts.RISK_TAKER_PROTOCOL, riskTakerCargo);
+        }
+        return fleet;
+    }
+
+    /**
+     * Runs a mixed fleet both sequentially and in parallel from the same seed and compares the results.
+     *
+     * @param args Fleet size, rounds, asteroids per round and an optional seed
+     */
+    public static void main(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: java src.FleetSimulation <scavengers> <rounds> <asteroidsPerRound> [seed]");
+            return;
+        }
+        int size = Integer.parseInt(args[0]);
+        int rounds = Integer.parseInt(args[1]);
+        int asteroids = Integer.parseInt(args[2]);
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1110L;
+        Artifact chart = Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7);
+        Artifact rock = Artifacts.makeInertRock("red");
+
+        long t0 = System.nanoTime();
+        RoundStats[] parallel = new FleetSimulation(mixedFleet(size, chart, rock), MIXED_FIELD, seed, asteroids)
+            .runParallel(rounds, ForkJoinPool.commonPool());
+        long t1 = System.nanoTime();
+        RoundStats[] sequential = new FleetSimulation(mixedFleet(size, chart, rock), MIXED_FIELD, seed, asteroids)
+            .runSequential(rounds);
+        long t2 = System.nanoTime();
+
+        for (int round = 0; round < rounds; round++) {
+            System.out.println("Round " + (round + 1) + ": " + parallel[round]);
+        }
+        System.out.println(String.format("Parallel: %.3f s, sequential: %.3f s", (t1 - t0) / 1e9, (t2 - t1) / 1e9));
+        System.out.println("Parallel run matches sequential run: " + Arrays.equals(parallel, sequential));
+    }
+}
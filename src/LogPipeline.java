@@ -0,0 +1,687 @@
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
+
+import src.Artifacts.Artifact;
+import src.Artifacts.EncounterType;
+import src.Artifacts.OutputLevel;
+
+/**
+ * Staged processing of rational scavenger encounter logs.
+ *
+ * {@link Artifacts#parseRationalScavengerLog} parses, analyzes, decides and prints one entry
+ * in a single synchronous call, so a slow terminal or disk holds up everything else. Here the
+ * same work is split into five stages, each running on its own thread pool:
+ *
+ *   read → parse → analyze/decide → render → write
+ *
+ * Stages hand whole batches of lines to each other (one queue operation per batch, not per
+ * entry) through bounded lock-free queues. A full queue pushes back on the stage feeding it,
+ * so memory stays bounded, while the queue in front of the writer can be made deep enough to
+ * absorb output stalls without the parsers ever noticing. Thread counts and queue depths are
+ * set per stage, and every stage keeps occupancy counters (time busy, starved of input and
+ * blocked on a full output queue) that show which stage limits throughput.
+ *
+ * Output is one line per entry, in input order: the descriptor of the final cargo, or an
+ * error message for entries that cannot be parsed. Every batch is analyzed with its own
+ * generator ({@link Randomness#forUnit}), so the output depends only on the root seed and
+ * never on the number of threads.
+ */
+final class LogPipeline {
+
+    static final int BATCH_BYTES = 1 << 16;   // Bytes of log text read into each batch
+    static final int SPINS = 100;             // Busy-wait attempts before yielding on a queue
+    static final int YIELDS = 10;             // Yields before parking on a queue
+    static final long PARK_NANOS = 50_000;    // Park time once spinning and yielding have failed
+
+    /**
+     * The stages of the pipeline, in the order entries pass through them.
+     */
+    enum Stage {
+        READ, PARSE, ANALYZE, RENDER, WRITE
+    }
+
+    private static final Batch END = new Batch(-1, -1, new byte[0]);   // Marks the end of the input
+
+    private final int[] threads = {1, 1, 1, 1, 1};          // Threads per stage
+    private final int[] queueBatches = {0, 8, 8, 8, 64};    // Capacity of the queue in front of each stage
+
+    /**
+     * Sets the number of threads a stage runs on. Reading and writing are sequential, so
+     * only the parse, analyze and render stages can have more than one thread.
+     * @param stage The stage
+     * @param count Number of threads
+     * @return This pipeline
+     */
+    LogPipeline setThreads(Stage stage, int count) {
+        if (count < 1 || (count > 1 && (stage == Stage.READ || stage == Stage.WRITE))) {
+            throw new IllegalArgumentException("Invalid thread count for " + stage + ": " + count);
+        }
+        threads[stage.ordinal()] = count;
+        return this;
+    }
+
+    /**
+     * Sets the capacity of the queue a stage takes its batches from
+     * @param stage The stage (any but READ, which has no input queue)
+     * @param batches Capacity in batches, rounded up to a power of two
+     * @return This pipeline
+     */
+    LogPipeline setQueueCapacity(Stage stage, int batches) {
+        if (stage == Stage.READ || batches < 1) {
+            throw new IllegalArgumentException("Invalid queue capacity for " + stage + ": " + batches);
+        }
+        queueBatches[stage.ordinal()] = batches;
+        return this;
+    }
+
+    /**
+     * A run of complete log lines and everything the stages work out about them. The same
+     * batch object travels through the whole pipeline, each stage filling in its own arrays.
+     */
+    private static final class Batch {
+        final long sequence;         // Position of the batch in the input
+        final long firstLine;        // Line number (from 1) of the batch's first line
+        final byte[] data;           // Text of the lines, without a trailing partial line
+        int lines;                   // Number of lines
+        int[] starts;                // Start of each line within data
+        int[] ends;                  // End of each line, excluding its terminator
+        EncounterType[] types;       // Parsed encounter type, or null for blank and invalid lines
+        Artifact[] owned;            // Parsed starting cargo
+        Artifact[] other;            // Parsed discovered artifact or partner's cargo
+        Artifact[] finals;           // Final cargo decided by the analysis
+        String[] errors;             // Error message for lines that could not be processed
+        byte[] rendered;             // Output text of the whole batch
+        int entries;                 // Entries processed successfully
+        int rejected;                // Entries rejected
+
+        Batch(long sequence, long firstLine, byte[] data) {
+            this.sequence = sequence;
+            this.firstLine = firstLine;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Bounded multi-producer multi-consumer queue of batches. Every slot carries a sequence
+     * number that tells producers and consumers whose turn it is (D. Vyukov's array queue),
+     * so offer and poll claim a slot with a single compare-and-set and never lock.
+     */
+    static final class BatchQueue {
+        private final Object[] items;
+        private final AtomicLongArray turns;      // Ticket at which each slot may next be used
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();   // Next ticket to poll
+        private final AtomicLong tail = new AtomicLong();   // Next ticket to offer
+
+        /**
+         * Constructs an empty queue
+         * @param capacity Minimum capacity, rounded up to a power of two
+         */
+        BatchQueue(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+            items = new Object[size];
+            turns = new AtomicLongArray(size);
+            for (int i = 0; i < size; i++) {
+                turns.set(i, i);
+            }
+            mask = size - 1;
+        }
+
+        /**
+         * Adds an item if there is room
+         * @param item The item
+         * @return false if the queue is full
+         */
+        boolean offer(Object item) {
+            long ticket = tail.get();
+            while (true) {
+                int slot = (int) ticket & mask;
+                long turn = turns.getAcquire(slot);
+                if (turn == ticket) {
+                    if (tail.compareAndSet(ticket, ticket + 1)) {
+                        items[slot] = item;
+                        turns.setRelease(slot, ticket + 1);
+                        return true;
+                    }
+                    ticket = tail.get();
+                } else if (turn < ticket) {
+                    return false;                       // The slot still holds an item from the previous lap
+                } else {
+                    ticket = tail.get();
+                }
+            }
+        }
+
+        /**
+         * Removes the oldest item if there is one
+         * @return The item, or null if the queue is empty
+         */
+        Object poll() {
+            long ticket = head.get();
+            while (true) {
+                int slot = (int) ticket & mask;
+                long turn = turns.getAcquire(slot);
+                if (turn == ticket + 1) {
+                    if (head.compareAndSet(ticket, ticket + 1)) {
+                        Object item = items[slot];
+                        items[slot] = null;
+                        turns.setRelease(slot, ticket + mask + 1);
+                        return item;
+                    }
+                    ticket = head.get();
+                } else if (turn < ticket + 1) {
+                    return null;                        // Nothing has been offered at this ticket yet
+                } else {
+                    ticket = head.get();
+                }
+            }
+        }
+
+        /** @return Approximate number of items queued */
+        int size() {
+            return (int) Math.max(0, tail.get() - head.get());
+        }
+
+        /** @return Capacity of the queue */
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    /**
+     * Occupancy counters of one stage.
+     */
+    static final class StageStats {
+        final Stage stage;
+        final int threads;
+        final int queueCapacity;                          // Capacity of the input queue (0 for READ)
+        final LongAdder batches = new LongAdder();
+        final LongAdder busyNanos = new LongAdder();      // Time spent working on batches
+        final LongAdder starvedNanos = new LongAdder();   // Time spent waiting for an input batch
+        final LongAdder blockedNanos = new LongAdder();   // Time spent waiting for room downstream
+        final LongAdder queuedSum = new LongAdder();      // Input queue length summed over every take
+
+        StageStats(Stage stage, int threads, int queueCapacity) {
+            this.stage = stage;
+            this.threads = threads;
+            this.queueCapacity = queueCapacity;
+        }
+
+        /** @return Fraction of the stage's thread time spent working */
+        double busy(long elapsedNanos) {
+            return fraction(busyNanos, elapsedNanos);
+        }
+
+        /** @return Fraction of the stage's thread time spent waiting for input */
+        double starved(long elapsedNanos) {
+            return fraction(starvedNanos, elapsedNanos);
+        }
+
+        /** @return Fraction of the stage's thread time spent waiting for room downstream */
+        double blocked(long elapsedNanos) {
+            return fraction(blockedNanos, elapsedNanos);
+        }
+
+        /** @return Average input queue length seen when taking a batch */
+        double averageQueued() {
+            long taken = batches.sum();
+            return taken == 0 ? 0 : (double) queuedSum.sum() / taken;
+        }
+
+        private double fraction(LongAdder nanos, long elapsedNanos) {
+            return elapsedNanos <= 0 ? 0 : Math.min(1.0, (double) nanos.sum() / ((double) elapsedNanos * threads));
+        }
+    }
+
+    /**
+     * Outcome of a pipeline run.
+     */
+    static final class Report {
+        final long entries;                 // Entries processed successfully
+        final long rejected;                // Entries rejected
+        final long elapsedNanos;            // Wall-clock time of the run
+        final List<StageStats> stages;
+
+        Report(long entries, long rejected, long elapsedNanos, List<StageStats> stages) {
+            this.entries = entries;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+            this.stages = stages;
+        }
+
+        /** @return The stage whose threads were busy for the largest share of the run */
+        Stage bottleneck() {
+            StageStats busiest = stages.get(0);
+            for (StageStats stats : stages) {
+                if (stats.busy(elapsedNanos) > busiest.busy(elapsedNanos)) {
+                    busiest = stats;
+                }
+            }
+            return busiest.stage;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            StringBuilder out = new StringBuilder();
+            out.append(String.format("Entries processed: %d, rejected: %d%n", entries, rejected));
+            out.append(String.format("Elapsed: %.3f s (%.0f entries/s)%n", seconds,
+                                     seconds > 0 ? (entries + rejected) / seconds : 0.0));
+            out.append(String.format("%-8s %7s %8s %7s %8s %8s %10s%n",
+                                     "Stage", "Threads", "Batches", "Busy", "Starved", "Blocked", "Queued"));
+            for (StageStats stats : stages) {
+                String queued = stats.queueCapacity == 0 ? "-"
+                    : String.format("%.1f/%d", stats.averageQueued(), stats.queueCapacity);
+                out.append(String.format("%-8s %7d %8d %6.1f%% %7.1f%% %7.1f%% %10s%n",
+                                         stats.stage.name().toLowerCase(), stats.threads, stats.batches.sum(),
+                                         100 * stats.busy(elapsedNanos), 100 * stats.starved(elapsedNanos),
+                                         100 * stats.blocked(elapsedNanos), queued));
+            }
+            out.append("Bottleneck: ").append(bottleneck().name().toLowerCase()).append(System.lineSeparator());
+            return out.toString();
+        }
+    }
+
+    /**
+     * Body of one stage worker.
+     */
+    private interface Worker {
+        void run() throws IOException;
+    }
+
+    /**
+     * State shared by the workers of one run.
+     */
+    private final class Run {
+        final StageStats[] stats = new StageStats[Stage.values().length];
+        final BatchQueue[] inputs = new BatchQueue[Stage.values().length];   // Queue in front of each stage
+        final AtomicInteger[] live = new AtomicInteger[Stage.values().length];   // Workers yet to see END
+        final long seed = Randomness.getRootSeed();
+        volatile boolean aborted;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();   // First exception thrown by a worker
+        long entries;                       // Written by the single writer thread
+        long rejected;
+
+        Run() {
+            for (Stage stage : Stage.values()) {
+                int i = stage.ordinal();
+                inputs[i] = stage == Stage.READ ? null : new BatchQueue(queueBatches[i]);
+                stats[i] = new StageStats(stage, threads[i], inputs[i] == null ? 0 : inputs[i].capacity());
+                live[i] = new AtomicInteger(threads[i]);
+            }
+        }
+
+        /**
+         * Wraps a worker so that its failure aborts the whole run. Every other stage then
+         * leaves its queue at the next back-off, whichever stage failed; only the first
+         * failure is kept, since the others are just the abort reaching them.
+         */
+        Callable<Void> guarded(Worker worker) {
+            return () -> {
+                try {
+                    worker.run();
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    aborted = true;
+                    throw t;
+                }
+                return null;
+            };
+        }
+
+        /**
+         * Takes the next batch from a stage's input queue, waiting for one if necessary
+         */
+        Batch take(Stage stage) {
+            BatchQueue queue = inputs[stage.ordinal()];
+            StageStats counters = stats[stage.ordinal()];
+            Object item = queue.poll();
+            if (item == null) {
+                long start = System.nanoTime();
+                for (int idle = 0; (item = queue.poll()) == null; idle++) {
+                    backOff(idle);
+                }
+                counters.starvedNanos.add(System.nanoTime() - start);
+            }
+            counters.queuedSum.add(queue.size());
+            return (Batch) item;
+        }
+
+        /**
+         * Hands a batch to the next stage, waiting for room in its queue if necessary
+         */
+        void put(Stage from, Batch batch) {
+            BatchQueue queue = inputs[from.ordinal() + 1];
+            if (!queue.offer(batch)) {
+                long start = System.nanoTime();
+                for (int idle = 0; !queue.offer(batch); idle++) {
+                    backOff(idle);
+                }
+                stats[from.ordinal()].blockedNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Waits a little longer each time a queue operation fails: spin first, then yield,
+         * then park, so idle stages give their processors to busy ones
+         */
+        private void backOff(int idle) {
+            if (aborted) {
+                throw new IllegalStateException("Pipeline aborted");
+            }
+            if (idle < SPINS) {
+                Thread.onSpinWait();
+            } else if (idle < SPINS + YIELDS) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+
+        /**
+         * Runs one worker of a middle stage until the end of the input reaches it. The last
+         * worker of the stage to finish passes the end marker on.
+         */
+        void work(Stage stage) {
+            StageStats counters = stats[stage.ordinal()];
+            while (true) {
+                Batch batch = take(stage);
+                if (batch == END) {
+                    inputs[stage.ordinal()].offer(END);   // Let the stage's other workers see it too
+                    if (live[stage.ordinal()].decrementAndGet() == 0) {
+                        put(stage, END);
+                    }
+                    return;
+                }
+                long start = System.nanoTime();
+                switch (stage) {
+                    case PARSE -> parse(batch);
+                    case ANALYZE -> analyze(batch, seed);
+                    case RENDER -> render(batch);
+                    default -> throw new IllegalStateException("Not a middle stage: " + stage);
+                }
+                counters.busyNanos.add(System.nanoTime() - start);
+                counters.batches.increment();
+                put(stage, batch);
+            }
+        }
+
+        /**
+         * Reads the input into batches of complete lines
+         */
+        void read(InputStream in) throws IOException {
+            StageStats counters = stats[Stage.READ.ordinal()];
+            byte[] carry = new byte[0];      // Partial line left over from the previous read
+            long sequence = 0;
+            long line = 1;
+            while (true) {
+                long start = System.nanoTime();
+                byte[] buffer = Arrays.copyOf(carry, carry.length + BATCH_BYTES);
+                int length = carry.length;
+                int n;
+                while (length < buffer.length && (n = in.read(buffer, length, buffer.length - length)) > 0) {
+                    length += n;
+                }
+                boolean last = length < buffer.length;
+                int cut = length;
+                if (!last) {
+                    while (cut > 0 && buffer[cut - 1] != '\n') {
+                        cut--;
+                    }
+                    if (cut == 0) {
+                        carry = Arrays.copyOf(buffer, length);   // A line longer than a batch: keep reading
+                        continue;
+                    }
+                }
+                carry = Arrays.copyOfRange(buffer, cut, length);
+                Batch batch = new Batch(sequence++, line, buffer);
+                splitLines(batch, cut);
+                line += batch.lines;
+                counters.busyNanos.add(System.nanoTime() - start);
+                counters.batches.increment();
+                put(Stage.READ, batch);
+                if (last) {
+                    put(Stage.READ, END);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Writes rendered batches in input order
+         */
+        void write(OutputStream out) throws IOException {
+            StageStats counters = stats[Stage.WRITE.ordinal()];
+            BatchQueue queue = inputs[Stage.WRITE.ordinal()];
+            Map<Long, Batch> early = new HashMap<>();   // Batches that overtook an earlier one
+            long next = 0;
+            while (true) {
+                Batch batch = take(Stage.WRITE);
+                if (batch == END) {
+                    out.flush();
+                    return;
+                }
+                long start = System.nanoTime();
+                early.put(batch.sequence, batch);
+                while ((batch = early.remove(next)) != null) {
+                    out.write(batch.rendered);
+                    entries += batch.entries;
+                    rejected += batch.rejected;
+                    next++;
+                }
+                if (queue.size() == 0) {
+                    out.flush();                        // Only when idle, so bursts share one write
+                }
+                counters.busyNanos.add(System.nanoTime() - start);
+                counters.batches.increment();
+            }
+        }
+    }
+
+    /**
+     * Records where every line of a batch starts and ends
+     */
+    private static void splitLines(Batch batch, int length) {
+        byte[] data = batch.data;
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            if (data[i] == '\n') {
+                count++;
+            }
+        }
+        if (length > 0 && data[length - 1] != '\n') {
+            count++;                                    // Unterminated last line of the input
+        }
+        batch.lines = count;
+        batch.starts = new int[count];
+        batch.ends = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = start;
+            while (end < length && data[end] != '\n') {
+                end++;
+            }
+            batch.starts[i] = start;
+            batch.ends[i] = end > start && data[end - 1] == '\r' ? end - 1 : end;
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Parse stage: turns every non-blank line of a batch into an encounter
+     */
+    private static void parse(Batch batch) {
+        int lines = batch.lines;
+        batch.types = new EncounterType[lines];
+        batch.owned = new Artifact[lines];
+        batch.other = new Artifact[lines];
+        batch.errors = new String[lines];
+        ArtifactParser.Entry entry = new ArtifactParser.Entry();
+        for (int i = 0; i < lines; i++) {
+            int length = batch.ends[i] - batch.starts[i];
+            if (length == 0) {
+                continue;
+            }
+            try {
+                ArtifactParser.parseEntry(batch.data, batch.starts[i], length, entry);
+                batch.types[i] = entry.encounterType;
+                batch.owned[i] = entry.owned;
+                batch.other[i] = entry.other;
+            } catch (RuntimeException e) {
+                batch.errors[i] = e.getMessage();
+            }
+        }
+    }
+
+    /**
+     * Analyze stage: decides the final cargo of every parsed encounter, drawing from the
+     * batch's own generator
+     */
+    private static void analyze(Batch batch, long seed) {
+        batch.finals = new Artifact[batch.lines];
+        RandomGenerator previous = Randomness.bind(Randomness.forUnit(seed, batch.sequence));
+        try {
+            for (int i = 0; i < batch.lines; i++) {
+                if (batch.types[i] != null) {
+                    try {
+                        batch.finals[i] = Artifacts.simulateRationalEncounter(batch.types[i], batch.owned[i], batch.other[i],
+                                                                              OutputLevel.SILENT);
+                    } catch (RuntimeException e) {
+                        batch.errors[i] = e.getMessage();
+                    }
+                }
+            }
+        } finally {
+            Randomness.bind(previous);
+        }
+    }
+
+    /**
+     * Render stage: formats the batch's output lines
+     */
+    private static void render(Batch batch) {
+        StringBuilder text = new StringBuilder(batch.lines * 48);
+        for (int i = 0; i < batch.lines; i++) {
+            if (batch.errors[i] != null) {
+                text.append("Error: line ").append(batch.firstLine + i).append(": ").append(batch.errors[i]).append('\n');
+                batch.rejected++;
+            } else if (batch.finals[i] != null) {
+                text.append(Artifacts.describeArtifact(batch.finals[i])).append('\n');
+                batch.entries++;
+            }
+        }
+        batch.rendered = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs a whole log through the pipeline. Encounters are simulated silently, since the
+     * render stage produces the output.
+     *
+     * @param in The log
+     * @param out Where the final cargo lines go; it is flushed but not closed
+     * @return Entry counts and per-stage occupancy
+     * @throws IOException if the log cannot be read or the output cannot be written
+     */
+    Report run(InputStream in, OutputStream out) throws IOException {
+        Run run = new Run();
+        List<ExecutorService> pools = new ArrayList<>();
+        List<Future<?>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (Stage stage : Stage.values()) {
+                ExecutorService pool = Executors.newFixedThreadPool(threads[stage.ordinal()]);
+                pools.add(pool);
+                for (int t = 0; t < threads[stage.ordinal()]; t++) {
+                    switch (stage) {
+                        case READ -> workers.add(pool.submit(run.guarded(() -> run.read(in))));
+                        case WRITE -> workers.add(pool.submit(run.guarded(() -> run.write(out))));
+                        default -> workers.add(pool.submit(run.guarded(() -> run.work(stage))));
+                    }
+                }
+            }
+            for (Future<?> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    // Already recorded in run.failure; the abort lets the remaining workers finish
+                }
+            }
+            Throwable failure = run.failure.get();
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure != null) {
+                throw new IOException("Pipeline stage failed", failure);
+            }
+        } catch (InterruptedException e) {
+            run.aborted = true;
+            Thread.currentThread().interrupt();
+            throw new IOException("Pipeline interrupted", e);
+        } finally {
+            for (ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+        return new Report(run.entries, run.rejected, System.nanoTime() - start, List.of(run.stats));
+    }
+
+    /**
+     * Runs a log file through the pipeline and prints the stage occupancy report.
+     *
+     * @param args Log file path, optionally followed by the output file ("-" for the console)
+     *             and the parse, analyze and render thread counts
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 5) {
+            System.out.println("Usage: java src.LogPipeline <log file> [output file|-] [parse threads] [analyze threads] [render threads]");
+            return;
+        }
+        try {
+            LogPipeline pipeline = new LogPipeline();
+            Stage[] tunable = {Stage.PARSE, Stage.ANALYZE, Stage.RENDER};
+            for (int i = 2; i < args.length; i++) {
+                pipeline.setThreads(tunable[i - 2], Integer.parseInt(args[i]));
+            }
+            boolean console = args.length < 2 || args[1].equals("-");
+            Report report;
+            try (InputStream in = Files.newInputStream(Path.of(args[0]))) {
+                OutputStream out = new BufferedOutputStream(console ? System.out : Files.newOutputStream(Path.of(args[1])), BATCH_BYTES);
+                try {
+                    report = pipeline.run(in, out);
+                } finally {
+                    if (!console) {
+                        out.close();
+                    }
+                }
+            }
+            System.out.print("\n===== Pipeline Report =====\n" + report);
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
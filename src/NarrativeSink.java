@@ -0,0 +1,413 @@
+package src;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+
+/**
+ * Asynchronous destination for the narrative and summary output of {@link Artifacts}.
+ *
+ * Printing with {@code System.out.println} takes the PrintStream lock on every line, so
+ * narrating workers queue up behind each other and behind the terminal. With a sink installed
+ * ({@link Artifacts#setNarrativeSink}) a worker instead encodes its lines into a buffer of its
+ * own and, at the end of each encounter, copies them into a preallocated ring shared by all
+ * producers: a compare-and-set reserves the space and a release store of the record length
+ * publishes it, so producers never lock. A single consumer thread gathers every published
+ * record into large writes to a FileChannel (or standard output's channel).
+ *
+ * Records are consumed in the order their space was reserved, so each thread's lines, and
+ * therefore each scavenger's encounters, keep their order, and an encounter's narrative is
+ * never interleaved with another's. When the ring is full, producers either wait for the
+ * consumer ({@link Overflow#BLOCK}) or discard the record and count it ({@link Overflow#DROP}).
+ */
+final class NarrativeSink implements AutoCloseable {
+
+    /**
+     * What a producer does when the ring has no room for its record.
+     */
+    enum Overflow {
+        BLOCK,   // Wait until the consumer has made room
+        DROP     // Discard the record and count it in dropped()
+    }
+
+    static final int UNIT = 8;                  // Records start on multiples of this many bytes
+    static final int MAX_PENDING = 1 << 14;     // Bytes a thread gathers before publishing them anyway
+    static final int WRITE_BYTES = 1 << 18;     // Largest single write to the channel
+    static final long PARK_NANOS = 100_000;     // Idle wait of the consumer and of blocked producers
+
+    private final byte[] data;                  // The ring
+    private final AtomicIntegerArray lengths;   // Byte length of the record starting at each unit, 0 until published
+    private final int mask;                     // Units in the ring, minus one
+    private final int maxRecord;                // Larger records are dropped
+    private final AtomicLong tail = new AtomicLong();   // Next unit to reserve
+    private volatile long head;                         // Next unit to consume; written by the consumer only
+    private final WritableByteChannel out;
+    private final boolean ownsChannel;          // Whether close() closes the channel
+    private final Overflow overflow;
+    private final LongAdder dropped = new LongAdder();
+    private volatile long bytesWritten;         // Written by the consumer only
+    private volatile IOException failure;       // First write error; later records are discarded
+    private volatile boolean closed;
+    private final Thread consumer;
+
+    /**
+     * A thread's lines not yet published.
+     */
+    private static final class Pending {
+        byte[] bytes = new byte[1024];
+        int length;
+        int depth;        // Nesting depth of begin() calls
+    }
+
+    private final ThreadLocal<Pending> pending = ThreadLocal.withInitial(Pending::new);
+
+    /**
+     * Constructs a sink and starts its consumer thread
+     * @param out Channel to write to
+     * @param ownsChannel Whether closing the sink closes the channel
+     * @param capacity Size of the ring in bytes, rounded up to a power of two (at least 64 KiB)
+     * @param overflow What producers do when the ring is full
+     */
+    NarrativeSink(WritableByteChannel out, boolean ownsChannel, int capacity, Overflow overflow) {
+        if (capacity < 1 << 16 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring capacity must be between 64 KiB and 1 GiB: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        this.data = new byte[size];
+        this.lengths = new AtomicIntegerArray(size / UNIT);
+        this.mask = size / UNIT - 1;
+        this.maxRecord = Math.min(size / 2, WRITE_BYTES);
+        this.out = out;
+        this.ownsChannel = ownsChannel;
+        this.overflow = overflow;
+        this.consumer = new Thread(this::consume, "narrative-sink");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Creates a sink writing to standard output. Anything already printed through System.out
+     * is flushed first; the descriptor is left open on close.
+     * @param capacity Size of the ring in bytes
+     * @param overflow What producers do when the ring is full
+     * @return The sink
+     */
+    static NarrativeSink toStdout(int capacity, Overflow overflow) {
+        System.out.flush();
+        return new NarrativeSink(new FileOutputStream(FileDescriptor.out).getChannel(), false, capacity, overflow);
+    }
+
+    /**
+     * Creates a sink writing to a file, replacing its contents
+     * @param file The file
+     * @param capacity Size of the ring in bytes
+     * @param overflow What producers do when the ring is full
+     * @return The sink
+     * @throws IOException if the file cannot be opened
+     */
+    static NarrativeSink toFile(Path file, int capacity, Overflow overflow) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                               StandardOpenOption.TRUNCATE_EXISTING);
+        return new NarrativeSink(channel, true, capacity, overflow);
+    }
+
+    /**
+     * Starts a group of lines (an encounter) that is published as one record. Groups nest;
+     * only the outermost one publishes.
+     */
+    void begin() {
+        pending.get().depth++;
+    }
+
+    /**
+     * Ends a group of lines, publishing the calling thread's lines if it was the outermost
+     */
+    void end() {
+        Pending lines = pending.get();
+        if (--lines.depth <= 0) {
+            lines.depth = 0;
+            publish(lines);
+        }
+    }
+
+    /**
+     * Adds a line of output. Outside a group it is published at once.
+     * @param line The line, without terminator
+     */
+    void println(String line) {
+        Pending lines = pending.get();
+        int length = lines.length;
+        int needed = length + line.length() * 3 + 1;     // Worst case of UTF-8 for a char
+        if (needed > lines.bytes.length) {
+            lines.bytes = Arrays.copyOf(lines.bytes, Math.max(needed, lines.bytes.length * 2));
+        }
+        byte[] bytes = lines.bytes;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else {
+                // Rare in narratives: fall back to the JDK encoder for the rest of the line
+                byte[] encoded = line.substring(i).getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(encoded, 0, bytes, length, encoded.length);
+                length += encoded.length;
+                break;
+            }
+        }
+        bytes[length++] = '\n';
+        lines.length = length;
+        if (lines.depth == 0 || length >= MAX_PENDING) {
+            publish(lines);
+        }
+    }
+
+    /**
+     * Copies a thread's pending lines into the ring as one record
+     */
+    private void publish(Pending lines) {
+        int length = lines.length;
+        if (length == 0) {
+            return;
+        }
+        lines.length = 0;
+        if (closed || length > maxRecord) {
+            dropped.increment();
+            return;
+        }
+        int units = (length + UNIT - 1) / UNIT;
+        long start;
+        for (int idle = 0; ; idle++) {
+            start = tail.get();
+            if (start + units - head > mask + 1) {
+                if (overflow == Overflow.DROP || closed) {
+                    dropped.increment();
+                    return;
+                }
+                backOff(idle);
+            } else if (tail.compareAndSet(start, start + units)) {
+                break;
+            }
+        }
+        int slot = (int) start & mask;
+        int offset = slot * UNIT;
+        int first = Math.min(length, data.length - offset);
+        System.arraycopy(lines.bytes, 0, data, offset, first);
+        System.arraycopy(lines.bytes, first, data, 0, length - first);
+        lengths.setRelease(slot, length);
+    }
+
+    private static void backOff(int idle) {
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 110) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+
+    /**
+     * Consumer loop: gathers consecutive published records into one buffer per write
+     */
+    private void consume() {
+        ByteBuffer batch = ByteBuffer.allocateDirect(WRITE_BYTES);
+        long next = head;
+        int idle = 0;
+        while (true) {
+            int slot;
+            int length;
+            while ((length = lengths.getAcquire(slot = (int) next & mask)) != 0 && length <= batch.remaining()) {
+                int offset = slot * UNIT;
+                int first = Math.min(length, data.length - offset);
+                batch.put(data, offset, first);
+                batch.put(data, 0, length - first);
+                lengths.set(slot, 0);
+                next += (length + UNIT - 1) / UNIT;
+                head = next;                         // Frees the space for producers
+            }
+            if (batch.position() > 0) {
+                batch.flip();
+                write(batch);
+                batch.clear();
+                idle = 0;
+            } else if (closed && tail.get() == next) {
+                return;
+            } else {
+                backOff(idle++);
+            }
+        }
+    }
+
+    private void write(ByteBuffer batch) {
+        int length = batch.remaining();
+        if (failure == null) {
+            try {
+                while (batch.hasRemaining()) {
+                    out.write(batch);
+                }
+                bytesWritten += length;
+                return;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        dropped.increment();                        // Nowhere to write; keep draining so producers never wait
+    }
+
+    /**
+     * Publishes the calling thread's pending lines and waits until everything published
+     * so far has been written
+     * @throws IOException if a write has failed
+     */
+    void flush() throws IOException {
+        publish(pending.get());
+        long target = tail.get();
+        for (int idle = 0; head < target; idle++) {
+            backOff(idle);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /** @return Number of records discarded because the ring was full, too small or unwritable, or the sink was closed */
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /** @return Bytes written to the channel so far */
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes everything published so far, stops the consumer and closes the channel if the
+     * sink owns it. Records published once the consumer is stopping are counted in dropped()
+     * and never written; a record published while close is still running may be lost
+     * uncounted, so producers should finish before the sink is closed.
+     * @throws IOException if a write failed or the channel cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        flush();
+        closed = true;
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ownsChannel) {
+            out.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Runs one worker's narrated encounters on its own scavengers
+     */
+    private static long narrate(int worker, int scavengers, int encounters) {
+        SplittableRandom random = Randomness.forUnit(1110, worker);
+        Scavenger[] fleet = FleetSimulation.mixedFleet(scavengers, Artifacts.makeStarChart("Vega", 5, 3, 7),
+                                                       Artifacts.makeInertRock("red"));
+        long start = System.nanoTime();
+        for (int i = 0; i < encounters; i++) {
+            Scavenger scavenger = fleet[i % scavengers];
+            if (i % 4 == 3) {
+                Artifacts.tradeAtStarport(scavenger, fleet[(i / 4) % scavengers], OutputLevel.NARRATIVE);
+            } else {
+                Artifacts.exploreAsteroid(scavenger, FleetSimulation.MIXED_FIELD.next(random), random, OutputLevel.NARRATIVE);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Times narrating workers, first printing synchronously, then through a sink.
+     */
+    private static double nanosPerEncounter(int threads, int encounters) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] workers = new Future<?>[threads];
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int worker = t;
+                workers[t] = pool.submit(() -> narrate(worker, 16, encounters));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            return (double) (System.nanoTime() - start) / ((long) threads * encounters);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Compares narrating through System.out with narrating through a sink, both to a file.
+     *
+     * @param args Output file, optionally followed by threads, encounters per thread,
+     *             overflow policy (block or drop) and ring capacity in bytes
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 5) {
+            System.out.println("Usage: java src.NarrativeSink <output file> [threads] [encounters per thread] [block|drop] [capacity]");
+            return;
+        }
+        PrintStream console = System.out;
+        try {
+            Path file = Path.of(args[0]);
+            int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+            int encounters = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+            Overflow overflow = args.length > 3 ? Overflow.valueOf(args[3].toUpperCase()) : Overflow.BLOCK;
+            int capacity = args.length > 4 ? Integer.parseInt(args[4]) : 1 << 22;
+
+            double direct;
+            try (PrintStream stream = new PrintStream(new FileOutputStream(file.toFile()), false, StandardCharsets.UTF_8)) {
+                System.setOut(stream);
+                direct = nanosPerEncounter(threads, encounters);
+            } finally {
+                System.setOut(console);
+            }
+
+            double buffered;
+            NarrativeSink sink = toFile(file, capacity, overflow);
+            Artifacts.setNarrativeSink(sink);
+            try {
+                buffered = nanosPerEncounter(threads, encounters);
+            } finally {
+                Artifacts.setNarrativeSink(null);
+                sink.close();
+            }
+            System.out.println(String.format("%d threads x %d narrated encounters: System.out %.0f ns/encounter, sink %.0f ns/encounter",
+                                             threads, encounters, direct, buffered));
+            System.out.println(String.format("Sink wrote %.1f MB, dropped %d records (%s on overflow, %d KiB ring)",
+                                             sink.bytesWritten() / 1e6, sink.dropped(), overflow.name().toLowerCase(),
+                                             capacity >> 10));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (Exception e) {
+            System.out.println("Error: " + e);
+        }
+    }
+}
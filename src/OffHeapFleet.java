@@ -0,0 +1,376 @@
+package src;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.random.RandomGenerator;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+import src.Artifacts.StarChart;
+
+/**
+ * A fleet of scavengers stored outside the Java heap.
+ *
+ * Each scavenger is a fixed RECORD_BYTES record in one MemorySegment, allocated from a shared
+ * arena (native allocations count against -XX:MaxDirectMemorySize, which defaults to the
+ * maximum heap size) or mapped from a file (which is not limited that way). The record holds
+ * a protocol id, an interned name id and the packed cargo, laid out like an
+ * {@link ArtifactStore} row. A fleet of any size is therefore one segment plus the small
+ * name/symbol dictionary and protocol table, the garbage collector never traces the records,
+ * and a file-backed fleet can be larger than the heap (and, paged by the OS, larger than
+ * memory).
+ *
+ * Records are read and written through a {@link Cursor}, a {@link Scavenger} positioned on one
+ * row at a time whose getters and setCargo go straight to the segment, so the existing
+ * protocols and {@link Artifacts#exploreAsteroid} run on it unchanged. Cursors are not
+ * thread-safe; use one per thread. Cargo changes made through a cursor are not reported to
+ * cargo listeners, since the cursor is not the scavenger whose cargo changed.
+ */
+final class OffHeapFleet implements AutoCloseable {
+
+    static final long RECORD_BYTES = 32;
+    static final int MIN_PARTITION = 1 << 14;   // Rows below which explore does not split further
+
+    // Record layout
+    private static final long OFFSET_PROTOCOL = 0;   // int: index into the protocol table
+    private static final long OFFSET_NAME = 4;       // int: name symbol id
+    private static final long OFFSET_TYPE = 8;       // byte: cargo ArtifactType ordinal
+    private static final long OFFSET_SYMBOL = 12;    // int: destination or color symbol id
+    private static final long OFFSET_RISK = 16;      // int: chart risk, or crystal power
+    private static final long OFFSET_SECTOR = 20;    // int: chart sector
+    private static final long OFFSET_SYSTEM = 24;    // int: chart system
+
+    private static final ArtifactType[] TYPES = ArtifactType.values();
+
+    private final Arena arena;
+    private final MemorySegment records;
+    private final long capacity;                              // Rows the segment can hold
+    private long size;                                        // Rows in use
+    private final SymbolTable symbols = new SymbolTable(1 << 24);   // Names, destinations and colors
+    private volatile BiFunction<Artifact, Artifact, AnalysisResult>[] protocols = newProtocolTable(0);
+    private final IdentityHashMap<BiFunction<Artifact, Artifact, AnalysisResult>, Integer> protocolIds = new IdentityHashMap<>();
+
+    /**
+     * Allocates an off-heap fleet in native memory
+     * @param capacity Maximum number of scavengers
+     */
+    OffHeapFleet(long capacity) {
+        checkCapacity(capacity);
+        this.arena = Arena.ofShared();
+        this.capacity = capacity;
+        this.records = arena.allocate(capacity * RECORD_BYTES, 8);
+    }
+
+    /**
+     * Creates an off-heap fleet backed by a file, which may be larger than memory. Any
+     * previous content of the file is discarded.
+     * @param capacity Maximum number of scavengers
+     * @param file File to map
+     * @throws IOException if the file cannot be mapped
+     */
+    OffHeapFleet(long capacity, Path file) throws IOException {
+        checkCapacity(capacity);
+        this.arena = Arena.ofShared();
+        this.capacity = capacity;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.records = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity * RECORD_BYTES, arena);
+        } catch (IOException | RuntimeException e) {
+            arena.close();
+            throw e;
+        }
+    }
+
+    private static void checkCapacity(long capacity) {
+        if (capacity < 1 || capacity > Long.MAX_VALUE / RECORD_BYTES) {
+            throw new IllegalArgumentException("Fleet capacity out of range: " + capacity);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BiFunction<Artifact, Artifact, AnalysisResult>[] newProtocolTable(int length) {
+        return (BiFunction<Artifact, Artifact, AnalysisResult>[]) new BiFunction<?, ?, ?>[length];
+    }
+
+    /** @return Number of scavengers in the fleet */
+    long size() {
+        return size;
+    }
+
+    /** @return Bytes of off-heap memory holding the records */
+    long recordBytes() {
+        return records.byteSize();
+    }
+
+    /**
+     * Appends a scavenger. Not thread-safe: fleets are built by one thread.
+     * @param name The scavenger's name (interned, so repeated names cost nothing)
+     * @param protocol Its analysis protocol
+     * @param cargo Its starting cargo
+     * @return The scavenger's row
+     */
+    long add(String name, BiFunction<Artifact, Artifact, AnalysisResult> protocol, Artifact cargo) {
+        if (size == capacity) {
+            throw new IllegalStateException("Fleet is full at " + capacity + " scavengers");
+        }
+        long base = size * RECORD_BYTES;
+        records.set(ValueLayout.JAVA_INT, base + OFFSET_PROTOCOL, protocolId(protocol));
+        records.set(ValueLayout.JAVA_INT, base + OFFSET_NAME, intern(name));
+        writeCargo(base, cargo);
+        return size++;
+    }
+
+    private int protocolId(BiFunction<Artifact, Artifact, AnalysisResult> protocol) {
+        Integer id = protocolIds.get(protocol);
+        if (id == null) {
+            BiFunction<Artifact, Artifact, AnalysisResult>[] table = Arrays.copyOf(protocols, protocols.length + 1);
+            id = protocols.length;
+            table[id] = protocol;
+            protocols = table;
+            protocolIds.put(protocol, id);
+        }
+        return id;
+    }
+
+    private int intern(String text) {
+        int id = symbols.intern(text);
+        if (id == SymbolTable.NOT_FOUND) {
+            throw new IllegalStateException("Fleet symbol table is full");
+        }
+        return id;
+    }
+
+    private void writeCargo(long base, Artifact cargo) {
+        records.set(ValueLayout.JAVA_BYTE, base + OFFSET_TYPE, (byte) cargo.getType().ordinal());
+        if (cargo instanceof StarChart) {
+            StarChart chart = (StarChart) cargo;
+            records.set(ValueLayout.JAVA_INT, base + OFFSET_SYMBOL, intern(chart.getDestination()));
+            records.set(ValueLayout.JAVA_INT, base + OFFSET_RISK, chart.getRiskFactor());
+            records.set(ValueLayout.JAVA_INT, base + OFFSET_SECTOR, chart.getSector());
+            records.set(ValueLayout.JAVA_INT, base + OFFSET_SYSTEM, chart.getSystem());
+        } else if (cargo instanceof EnergyCrystal) {
+            records.set(ValueLayout.JAVA_INT, base + OFFSET_RISK, ((EnergyCrystal) cargo).getPowerLevel());
+        } else {
+            records.set(ValueLayout.JAVA_INT, base + OFFSET_SYMBOL, intern(((InertRock) cargo).getColor()));
+        }
+    }
+
+    private Artifact readCargo(long base) {
+        switch (TYPES[records.get(ValueLayout.JAVA_BYTE, base + OFFSET_TYPE)]) {
+            case STAR_CHART:
+                return Artifacts.makeStarChart(symbols.symbol(records.get(ValueLayout.JAVA_INT, base + OFFSET_SYMBOL)),
+                                               records.get(ValueLayout.JAVA_INT, base + OFFSET_RISK),
+                                               records.get(ValueLayout.JAVA_INT, base + OFFSET_SECTOR),
+                                               records.get(ValueLayout.JAVA_INT, base + OFFSET_SYSTEM));
+            case ENERGY_CRYSTAL:
+                return Artifacts.makeEnergyCrystal(records.get(ValueLayout.JAVA_INT, base + OFFSET_RISK));
+            default:
+                return Artifacts.makeInertRock(symbols.symbol(records.get(ValueLayout.JAVA_INT, base + OFFSET_SYMBOL)));
+        }
+    }
+
+    /**
+     * @return A new cursor, positioned on row 0
+     */
+    Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * A movable view of one scavenger record that can stand in for a Scavenger.
+     */
+    final class Cursor extends Scavenger {
+        private long row;    // Current row
+        private long base;   // Byte offset of the current row
+
+        private Cursor() {
+            super(null, null, null);
+        }
+
+        /**
+         * Moves the cursor
+         * @param row The row to view
+         * @return This cursor
+         */
+        Cursor at(long row) {
+            if (row < 0 || row >= size) {
+                throw new IndexOutOfBoundsException("Row " + row + " outside fleet of size " + size);
+            }
+            this.row = row;
+            this.base = row * RECORD_BYTES;
+            return this;
+        }
+
+        /** @return The current row */
+        long row() {
+            return row;
+        }
+
+        /** @return Type of the current scavenger's cargo, read without materializing it */
+        ArtifactType cargoType() {
+            return TYPES[records.get(ValueLayout.JAVA_BYTE, base + OFFSET_TYPE)];
+        }
+
+        @Override
+        public String getName() {
+            return symbols.symbol(records.get(ValueLayout.JAVA_INT, base + OFFSET_NAME));
+        }
+
+        @Override
+        public Artifact getCargo() {
+            return readCargo(base);
+        }
+
+        @Override
+        public void setCargo(Artifact artifact) {
+            writeCargo(base, artifact);
+        }
+
+        @Override
+        public BiFunction<Artifact, Artifact, AnalysisResult> getPersonalProtocol() {
+            return protocols[records.get(ValueLayout.JAVA_INT, base + OFFSET_PROTOCOL)];
+        }
+    }
+
+    /**
+     * Has every scavenger explore asteroids, drawing from its own generator as
+     * {@link FleetSimulation} does, so the outcome does not depend on how rows are split
+     * @param source Where asteroids' artifacts come from
+     * @param seed Root seed
+     * @param asteroids Asteroids each scavenger visits
+     * @param pool The pool to run partitions on
+     * @return Number of scavengers holding a star chart afterwards
+     */
+    long explore(FleetSimulation.AsteroidSource source, long seed, int asteroids, ForkJoinPool pool) {
+        long partition = Math.max(MIN_PARTITION, size / (pool.getParallelism() * 8L));
+        return pool.invoke(new Partition(0, size, partition, source, seed, asteroids));
+    }
+
+    private long explore(long from, long to, FleetSimulation.AsteroidSource source, long seed, int asteroids) {
+        Cursor cursor = new Cursor();
+        long charts = 0;
+        for (long row = from; row < to; row++) {
+            cursor.at(row);
+            SplittableRandom random = Randomness.forUnit(seed, row);
+            RandomGenerator previous = Randomness.bind(random);
+            try {
+                for (int k = 0; k < asteroids; k++) {
+                    Artifacts.exploreAsteroid(cursor, source.next(random), random, OutputLevel.SILENT);
+                }
+            } finally {
+                Randomness.bind(previous);
+            }
+            if (cursor.cargoType() == ArtifactType.STAR_CHART) {
+                charts++;
+            }
+        }
+        return charts;
+    }
+
+    /**
+     * Fork/join task that splits a range of rows until it is small enough to explore directly.
+     */
+    @SuppressWarnings("serial")   // Fork/join tasks are never serialized
+    private final class Partition extends RecursiveTask<Long> {
+        private final long from;
+        private final long to;
+        private final long threshold;
+        private final FleetSimulation.AsteroidSource source;
+        private final long seed;
+        private final int asteroids;
+
+        Partition(long from, long to, long threshold, FleetSimulation.AsteroidSource source, long seed, int asteroids) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.source = source;
+            this.seed = seed;
+            this.asteroids = asteroids;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= threshold) {
+                return explore(from, to, source, seed, asteroids);
+            }
+            long mid = (from + to) >>> 1;
+            Partition left = new Partition(from, mid, threshold, source, seed, asteroids);
+            left.fork();
+            long right = new Partition(mid, to, threshold, source, seed, asteroids).compute();
+            return left.join() + right;
+        }
+    }
+
+    /**
+     * Releases the fleet's memory (and unmaps its file). Cursors must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        arena.close();
+    }
+
+    private static String gcSummary() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return String.format("%d collections, %d ms total, heap used %d MB",
+                             count, millis, (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+    }
+
+    /**
+     * Builds an off-heap fleet, has it explore asteroids, and reports memory and GC figures.
+     *
+     * @param args Optional number of scavengers, asteroids per scavenger and backing file
+     */
+    public static void main(String[] args) {
+        long size = args.length > 0 ? Long.parseLong(args[0]) : 10_000_000L;
+        int asteroids = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String[] callsigns = {"Kestrel", "Osprey", "Harrier", "Merlin", "Falcon", "Hobby", "Kite", "Buzzard"};
+        Artifact chart = Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7);
+        Artifact rock = Artifacts.makeInertRock("red");
+        try (OffHeapFleet fleet = args.length > 2 ? new OffHeapFleet(size, Path.of(args[2])) : new OffHeapFleet(size)) {
+            long start = System.nanoTime();
+            for (long i = 0; i < size; i++) {
+                if (i % 2 == 0) {
+                    fleet.add(callsigns[(int) (i % callsigns.length)], Artifacts.RATIONAL_PROTOCOL, chart);
+                } else {
+                    fleet.add(callsigns[(int) (i % callsigns.length)], Artifacts.RISK_TAKER_PROTOCOL, rock);
+                }
+            }
+            long built = System.nanoTime();
+            long charts = fleet.explore(FleetSimulation.MIXED_FIELD, 1110L, asteroids, ForkJoinPool.commonPool());
+            long explored = System.nanoTime();
+            System.out.println(String.format("%d scavengers in %d MB off heap, built in %.3f s", fleet.size(),
+                                             fleet.recordBytes() >> 20, (built - start) / 1e9));
+            System.out.println(String.format("%d asteroid visits in %.3f s, %d scavengers now hold a star chart",
+                                             fleet.size() * asteroids, (explored - built) / 1e9, charts));
+            Cursor cursor = fleet.cursor().at(fleet.size() - 1);
+            System.out.println("Last scavenger: " + cursor.getName() + " holding " + Artifacts.describeArtifact(cursor.getCargo()));
+            System.out.println("GC: " + gcSummary());
+        } catch (IOException | IllegalArgumentException | IllegalStateException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.random.RandomGenerator;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Scavenger;
+
+/**
+ * Monte Carlo estimate of where a scavenger's cargo ends up after exploring a fixed sequence
+ * of asteroids.
+ *
+ * A trial gives the scavenger its starting cargo and runs {@link Artifacts#exploreAsteroid}
+ * on every artifact of the sequence in turn; the hazardous-item gamble and the protocol's own
+ * coin flips make the final cargo random. Trials run in fixed-size blocks, and every block
+ * draws from its own generator ({@link Randomness#forUnit}) bound to the worker thread that
+ * simulates it, so blocks can be spread across a ForkJoinPool in any way and an estimate
+ * depends only on the seed, never on the number of workers.
+ *
+ * Blocks are run in rounds. After each round the estimator computes a Wilson score interval
+ * for the probability of every final cargo, and stops as soon as all of them are narrower
+ * than the requested precision (or the trial budget is spent). Each round is sized from the
+ * current estimates to reach the precision in one go, so runs need few synchronisations.
+ */
+final class OutcomeEstimator {
+
+    static final int BLOCK = 1024;              // Trials per block, each block with its own generator
+    static final int FIRST_ROUND_BLOCKS = 16;   // Blocks run before any precision check
+
+    private final BiFunction<Artifact, Artifact, AnalysisResult> protocol;
+    private final Artifact startingCargo;
+    private final Artifact[] sequence;                // Artifacts found, in order
+    private final long seed;                          // Root seed for every block's generator
+    private final IdentityHashMap<Artifact, Integer> outcomeOf = new IdentityHashMap<>();
+    private final List<String> outcomes = new ArrayList<>();   // Distinct final cargo descriptors
+
+    /**
+     * Constructs an estimator
+     * @param protocol The scavenger's analysis protocol
+     * @param startingCargo The cargo held before the first asteroid
+     * @param sequence The artifacts found, in order
+     * @param seed Root seed for the whole estimate
+     */
+    OutcomeEstimator(BiFunction<Artifact, Artifact, AnalysisResult> protocol, Artifact startingCargo,
+                     List<Artifact> sequence, long seed) {
+        if (sequence.isEmpty()) {
+            throw new IllegalArgumentException("The artifact sequence must not be empty");
+        }
+        this.protocol = protocol;
+        this.startingCargo = startingCargo;
+        this.sequence = sequence.toArray(new Artifact[0]);
+        this.seed = seed;
+        // The final cargo is always one of these artifacts; equal artifacts share an outcome
+        Map<String, Integer> byDescriptor = new LinkedHashMap<>();
+        List<Artifact> candidates = new ArrayList<>(sequence);
+        candidates.add(0, startingCargo);
+        candidates.add(Artifacts.DULL_GREY_ROCK);
+        for (Artifact candidate : candidates) {
+            String descriptor = Artifacts.describeArtifact(candidate);
+            Integer outcome = byDescriptor.get(descriptor);
+            if (outcome == null) {
+                outcome = outcomes.size();
+                byDescriptor.put(descriptor, outcome);
+                outcomes.add(descriptor);
+            }
+            outcomeOf.put(candidate, outcome);
+        }
+    }
+
+    /**
+     * The estimated final-cargo distribution.
+     */
+    static final class Estimate {
+        final long trials;                   // Trials run
+        final double z;                      // Normal quantile of the confidence level
+        private final List<String> outcomes; // Final cargo descriptors
+        private final long[] counts;         // Trials ending with each final cargo
+
+        Estimate(long trials, double z, List<String> outcomes, long[] counts) {
+            this.trials = trials;
+            this.z = z;
+            this.outcomes = outcomes;
+            this.counts = counts;
+        }
+
+        /** @return Number of distinct final cargoes that were possible */
+        int outcomes() {
+            return outcomes.size();
+        }
+
+        /** @return Descriptor of a final cargo */
+        String outcome(int i) {
+            return outcomes.get(i);
+        }
+
+        /** @return Number of trials ending with a final cargo */
+        long count(int i) {
+            return counts[i];
+        }
+
+        /** @return Observed probability of a final cargo */
+        double probability(int i) {
+            return (double) counts[i] / trials;
+        }
+
+        /** @return Lower bound of the Wilson score interval of a final cargo's probability */
+        double lower(int i) {
+            return Math.max(0, center(i) - halfWidth(i));
+        }
+
+        /** @return Upper bound of the Wilson score interval of a final cargo's probability */
+        double upper(int i) {
+            return Math.min(1, center(i) + halfWidth(i));
+        }
+
+        private double center(int i) {
+            double z2 = z * z;
+            return (counts[i] + z2 / 2) / (trials + z2);
+        }
+
+        /** @return Half the width of the Wilson score interval of a final cargo's probability */
+        double halfWidth(int i) {
+            double p = probability(i);
+            double z2 = z * z;
+            return z / (1 + z2 / trials) * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials));
+        }
+
+        /** @return The widest half-width over all final cargoes */
+        double maxHalfWidth() {
+            double widest = 0;
+            for (int i = 0; i < counts.length; i++) {
+                widest = Math.max(widest, halfWidth(i));
+            }
+            return widest;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder(String.format("%d trials, intervals at z=%.3f%n", trials, z));
+            for (int i = 0; i < counts.length; i++) {
+                out.append(String.format("  %-50s %.5f [%.5f, %.5f]%n", outcomes.get(i), probability(i), lower(i), upper(i)));
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Runs trials until every final cargo's probability is known to the requested precision
+     * @param precision Largest acceptable interval half-width
+     * @param confidence Confidence level of the intervals, such as 0.95
+     * @param maxTrials Trial budget; the estimate stops there even if not precise enough
+     * @param pool The pool to run blocks on
+     * @return The estimate
+     */
+    Estimate estimate(double precision, double confidence, long maxTrials, ForkJoinPool pool) {
+        if (!(precision > 0 && precision < 1) || !(confidence > 0 && confidence < 1) || maxTrials < 1) {
+            throw new IllegalArgumentException("Precision and confidence must lie strictly between 0 and 1, and at least one trial must run");
+        }
+        double z = zScore(confidence);
+        long maxBlocks = (maxTrials + BLOCK - 1) / BLOCK;
+        long[] counts = new long[outcomes.size()];
+        long blocks = 0;
+        long roundBlocks = Math.min(maxBlocks, FIRST_ROUND_BLOCKS);
+        while (true) {
+            long[] round = pool.invoke(new Blocks(blocks, blocks + roundBlocks));
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += round[i];
+            }
+            blocks += roundBlocks;
+            Estimate estimate = new Estimate(blocks * BLOCK, z, outcomes, counts.clone());
+            if (blocks >= maxBlocks || estimate.maxHalfWidth() <= precision) {
+                return estimate;
+            }
+            roundBlocks = Math.min(maxBlocks - blocks, Math.max(1, blocksNeeded(estimate, precision) - blocks));
+        }
+    }
+
+    /**
+     * Predicts the blocks needed for the widest interval to reach the precision, assuming
+     * the observed probabilities hold
+     */
+    private static long blocksNeeded(Estimate estimate, double precision) {
+        double variance = 0;
+        for (int i = 0; i < estimate.outcomes(); i++) {
+            double p = estimate.probability(i);
+            variance = Math.max(variance, p * (1 - p));
+        }
+        // Rarely-seen outcomes still need z^2 / (4 n) to be small
+        variance = Math.max(variance, 1.0 / estimate.trials);
+        double trials = estimate.z * estimate.z * variance / (precision * precision);
+        return (long) Math.ceil(Math.min(trials, 1e15) / BLOCK);
+    }
+
+    /**
+     * Runs the trials of a range of blocks and counts their final cargoes.
+     */
+    private long[] simulate(long fromBlock, long toBlock) {
+        long[] counts = new long[outcomes.size()];
+        Scavenger scavenger = new Scavenger("Estimated Scavenger", protocol, startingCargo);
+        for (long block = fromBlock; block < toBlock; block++) {
+            SplittableRandom random = Randomness.forUnit(seed, block);
+            RandomGenerator previous = Randomness.bind(random);   // Protocols draw from it too
+            try {
+                for (int trial = 0; trial < BLOCK; trial++) {
+                    scavenger.setCargo(startingCargo);
+                    for (Artifact found : sequence) {
+                        Artifacts.exploreAsteroid(scavenger, found, random, OutputLevel.SILENT);
+                    }
+                    counts[outcomeOf.get(scavenger.getCargo())]++;
+                }
+            } finally {
+                Randomness.bind(previous);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Fork/join task that splits a range of blocks down to single blocks.
+     */
+    @SuppressWarnings("serial")   // Fork/join tasks are never serialized
+    private final class Blocks extends RecursiveTask<long[]> {
+        private final long from;
+        private final long to;
+
+        Blocks(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= 1) {
+                return simulate(from, to);
+            }
+            long mid = (from + to) >>> 1;
+            Blocks left = new Blocks(from, mid);
+            left.fork();
+            long[] right = new Blocks(mid, to).compute();
+            long[] merged = left.join();
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] += right[i];
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Finds the two-sided normal quantile of a confidence level by bisection
+     * @param confidence The confidence level, such as 0.95
+     * @return z such that P(|Z| &lt;= z) = confidence
+     */
+    static double zScore(double confidence) {
+        double low = 0;
+        double high = 10;
+        for (int i = 0; i < 100; i++) {
+            double mid = (low + high) / 2;
+            if (erf(mid / Math.sqrt(2)) < confidence) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * Error function for x &gt;= 0 (Abramowitz and Stegun 7.1.26, absolute error below 1.5e-7)
+     */
+    private static double erf(double x) {
+        double t = 1 / (1 + 0.3275911 * x);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        return 1 - poly * Math.exp(-x * x);
+    }
+
+    /**
+     * Estimates the final cargo distribution of a scavenger exploring a sequence of asteroids.
+     *
+     * @param args &lt;rational|riskTaker&gt; &lt;precision&gt; &lt;starting cargo&gt; &lt;artifact&gt;... ,
+     *             artifacts written as by {@link Artifacts#describeArtifact}
+     */
+    public static void main(String[] args) {
+        if (args.length < 4 || !(args[0].equals("rational") || args[0].equals("riskTaker"))) {
+            System.out.println("Usage: java src.OutcomeEstimator <rational|riskTaker> <precision> <starting cargo> <artifact>...");
+            return;
+        }
+        try {
+            BiFunction<Artifact, Artifact, AnalysisResult> protocol =
+                args[0].equals("rational") ? Artifacts.RATIONAL_PROTOCOL : Artifacts.RISK_TAKER_PROTOCOL;
+            double precision = Double.parseDouble(args[1]);
+            Artifact cargo = Artifacts.parseArtifactDescription(args[2]);
+            List<Artifact> sequence = new ArrayList<>();
+            for (int i = 3; i < args.length; i++) {
+                sequence.add(Artifacts.parseArtifactDescription(args[i]));
+            }
+            long start = System.nanoTime();
+            Estimate estimate = new OutcomeEstimator(protocol, cargo, sequence, Randomness.getRootSeed())
+                .estimate(precision, 0.95, 1L << 32, ForkJoinPool.commonPool());
+            long elapsed = System.nanoTime() - start;
+            System.out.print(estimate);
+            System.out.println(String.format("Widest 95%% interval half-width %.6f after %.3f s",
+                                             estimate.maxHalfWidth(), elapsed / 1e9));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
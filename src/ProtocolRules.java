@@ -0,0 +1,639 @@
+package src;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.EnergyCrystal;
+import src.Artifacts.InertRock;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Protocol;
+import src.Artifacts.StarChart;
+
+/**
+ * A small rule language for analysis protocols, compiled at load time into a MethodHandle
+ * tree that runs inside its own hidden class.
+ *
+ * A protocol is a list of rules, one per line, tried in order; the first rule whose type
+ * pattern and conditions match gives the verdict. Everything after {@code #} is a comment.
+ * <pre>
+ * when &lt;owned type&gt; &lt;new type&gt; [and &lt;condition&gt;]... -&gt; &lt;verdict&gt;
+ * otherwise &lt;verdict&gt;
+ * </pre>
+ * Types are {@code chart}, {@code crystal}, {@code rock} or {@code *}. A verdict is an
+ * {@link AnalysisResult} name, or {@code coin(A, B)} for a fair coin flip between two of them
+ * drawn from {@link Randomness#current}. Pairs that no rule matches get the
+ * {@code otherwise} verdict, or UNKNOWN if there is none. Conditions are:
+ * <ul>
+ * <li>{@code owned.risk > 7}, {@code new.risk >= owned.risk + 2}: comparisons
+ *     ({@code < <= > >= == !=}) between constants and the {@code risk}, {@code sector},
+ *     {@code system} or {@code power} of either artifact, optionally plus or minus a constant;</li>
+ * <li>{@code new.color in {blue, green}}, {@code new.color not in {red}}: color sets;</li>
+ * <li>{@code new.destination == owned.destination}, {@code owned.color != new.color}:
+ *     destination or color equality.</li>
+ * </ul>
+ * A side can only be given fields its type in the rule's pattern has.
+ *
+ * Each type pair's rules become a guardWithTest chain, and the chains hang off a tableSwitch
+ * on {@link Artifacts#typePair}. The tree is handed to a fresh hidden copy of a template
+ * class as class data and stored in a static final field, where the JIT treats it as a
+ * constant and inlines the whole tree into the caller, as it would hand-written code.
+ * The compiled protocol also works out which types it may rate VALUABLE and which pairs
+ * involve a coin flip, so it can be used with {@link ConcurrentStarport} and
+ * {@link AnalysisCache} like the built-in protocols.
+ */
+final class ProtocolRules {
+
+    /** The rational scavenger protocol written as rules */
+    static final String RATIONAL_RULES = String.join("\n",
+        "# Star chart with an ideal risk/system configuration",
+        "when chart crystal and owned.risk > 7 and owned.system > 10 and new.power < 5 -> HAZARDOUS",
+        "when chart crystal and owned.risk > 7 and owned.system > 10 and new.power < 15 -> MUNDANE",
+        "when chart crystal and owned.risk > 7 and owned.system > 10 -> INCOMPATIBLE",
+        "when chart crystal and owned.risk <= 7 and owned.system <= 10 and new.power < 5 -> HAZARDOUS",
+        "when chart crystal and owned.risk <= 7 and owned.system <= 10 and new.power < 15 -> MUNDANE",
+        "when chart crystal and owned.risk <= 7 and owned.system <= 10 -> INCOMPATIBLE",
+        "# Star chart of regular value",
+        "when chart crystal and new.power >= 10 -> VALUABLE",
+        "when chart crystal and new.power < 5 -> HAZARDOUS",
+        "when chart crystal -> MUNDANE",
+        "when chart rock and new.color in {blue, green, purple} -> VALUABLE",
+        "when chart rock and new.color in {red} -> HAZARDOUS",
+        "when chart rock -> MUNDANE",
+        "when chart chart and new.destination == owned.destination -> INCOMPATIBLE",
+        "when chart chart and new.risk >= owned.risk + 2 -> HAZARDOUS",
+        "when chart chart and new.sector == owned.sector and new.system != owned.system -> VALUABLE",
+        "when chart chart -> MUNDANE",
+        "when crystal chart -> HAZARDOUS",
+        "otherwise UNKNOWN");
+
+    /** The risk-taking scavenger protocol written as rules */
+    static final String RISK_TAKER_RULES = String.join("\n",
+        "when * chart -> VALUABLE",
+        "when chart * -> MUNDANE",
+        "when crystal crystal and new.power > owned.power -> VALUABLE",
+        "when crystal crystal -> MUNDANE",
+        "when rock rock and owned.color == new.color -> MUNDANE",
+        "when rock rock -> coin(VALUABLE, INCOMPATIBLE)",
+        "otherwise UNKNOWN");
+
+    private static final ArtifactType[] TYPES = ArtifactType.values();
+    private static final int PAIRS = TYPES.length * TYPES.length;
+    private static final Class<?> A = Artifact.class;
+    private static final MethodType PREDICATE = MethodType.methodType(boolean.class, A, A);
+    private static final MethodType ANALYSIS = MethodType.methodType(AnalysisResult.class, A, A);
+
+    private static final Pattern COLOR_SET = Pattern.compile("(owned|new)\\.color\\s+(not\\s+)?in\\s*\\{(.*)\\}");
+    private static final Pattern TEXT_EQUALITY = Pattern.compile("(owned|new)\\.(destination|color)\\s*(==|!=)\\s*(owned|new)\\.(destination|color)");
+    private static final String OPERAND = "(?:(owned|new)\\.(risk|sector|system|power)(?:\\s*([+-])\\s*(\\d+))?|(-?\\d+))";
+    private static final Pattern COMPARISON = Pattern.compile(OPERAND + "\\s*(<=|>=|==|!=|<|>)\\s*" + OPERAND);
+    private static final Pattern COIN = Pattern.compile("coin\\(\\s*(\\w+)\\s*,\\s*(\\w+)\\s*\\)");
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private ProtocolRules() {
+    }
+
+    /**
+     * One parsed rule.
+     */
+    private static final class Rule {
+        final int line;                                   // Source line, for error messages
+        final ArtifactType ownedType;                     // null matches any type
+        final ArtifactType newType;                       // null matches any type
+        final List<MethodHandle> conditions = new ArrayList<>();   // (Artifact, Artifact)boolean
+        final AnalysisResult heads;                       // The verdict
+        final AnalysisResult tails;                       // Other verdict of a coin flip, or null
+
+        Rule(int line, ArtifactType ownedType, ArtifactType newType, AnalysisResult heads, AnalysisResult tails) {
+            this.line = line;
+            this.ownedType = ownedType;
+            this.newType = newType;
+            this.heads = heads;
+            this.tails = tails;
+        }
+
+        boolean matches(ArtifactType owned, ArtifactType found) {
+            return (ownedType == null || ownedType == owned) && (newType == null || newType == found);
+        }
+
+        boolean mayBe(AnalysisResult result) {
+            return heads == result || tails == result;
+        }
+    }
+
+    /**
+     * Compiles a protocol from rule source
+     * @param name Name reported by the protocol's toString
+     * @param source The rules
+     * @return The compiled protocol
+     * @throws IllegalArgumentException if the rules do not parse
+     */
+    static Protocol compile(String name, String source) {
+        List<Rule> rules = new ArrayList<>();
+        Rule otherwise = null;
+        String[] lines = source.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int comment = line.indexOf('#');
+            line = (comment >= 0 ? line.substring(0, comment) : line).trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (otherwise != null) {
+                throw error(i + 1, "Rules after 'otherwise' can never match");
+            }
+            if (line.startsWith("otherwise ")) {
+                otherwise = verdict(i + 1, null, null, line.substring("otherwise ".length()).trim());
+            } else if (line.startsWith("when ")) {
+                rules.add(parseRule(i + 1, line.substring("when ".length())));
+            } else {
+                throw error(i + 1, "Rules start with 'when' or 'otherwise'");
+            }
+        }
+        if (otherwise == null) {
+            otherwise = new Rule(0, null, null, AnalysisResult.UNKNOWN, null);
+        }
+
+        MethodHandle[] chains = new MethodHandle[PAIRS];
+        int[] valuableTypes = new int[TYPES.length];
+        int randomPairs = 0;
+        for (ArtifactType owned : TYPES) {
+            for (ArtifactType found : TYPES) {
+                int pair = owned.ordinal() * TYPES.length + found.ordinal();
+                // Collect the rules for this pair up to the first one that always matches
+                List<Rule> reachable = new ArrayList<>();
+                for (Rule rule : rules) {
+                    if (rule.matches(owned, found)) {
+                        reachable.add(rule);
+                        if (rule.conditions.isEmpty()) {
+                            break;
+                        }
+                    }
+                }
+                if (reachable.isEmpty() || !reachable.get(reachable.size() - 1).conditions.isEmpty()) {
+                    reachable.add(otherwise);
+                }
+                MethodHandle chain = null;
+                for (int r = reachable.size() - 1; r >= 0; r--) {
+                    Rule rule = reachable.get(r);
+                    MethodHandle target = verdictHandle(rule);
+                    if (chain == null) {
+                        chain = target;
+                    } else {
+                        chain = MethodHandles.guardWithTest(conjunction(rule.conditions), target, chain);
+                    }
+                    if (rule.mayBe(AnalysisResult.VALUABLE)) {
+                        valuableTypes[owned.ordinal()] |= Artifacts.typeBit(found);
+                    }
+                    if (rule.tails != null) {
+                        randomPairs |= 1 << pair;
+                    }
+                }
+                chains[pair] = MethodHandles.dropArguments(chain, 0, int.class);
+            }
+        }
+        MethodHandle fallback = MethodHandles.dropArguments(verdictHandle(otherwise), 0, int.class);
+        MethodHandle analyze = MethodHandles.foldArguments(MethodHandles.tableSwitch(fallback, chains), handle("typePair", int.class, A, A));
+        return define(analyze, valuableTypes, randomPairs, name);
+    }
+
+    /**
+     * Loads and compiles a protocol from a rules file
+     * @param path The rules file
+     * @return The compiled protocol
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the rules do not parse
+     */
+    static Protocol load(Path path) throws IOException {
+        return compile(path.getFileName().toString(), Files.readString(path, StandardCharsets.UTF_8));
+    }
+
+    private static Rule parseRule(int line, String text) {
+        int arrow = text.lastIndexOf("->");
+        if (arrow < 0) {
+            throw error(line, "Missing '-> <verdict>'");
+        }
+        String[] parts = text.substring(0, arrow).trim().split("\\s+and\\s+");
+        String[] types = parts[0].trim().split("\\s+");
+        if (types.length != 2) {
+            throw error(line, "Expected an owned and a new type pattern, found '" + parts[0].trim() + "'");
+        }
+        Rule rule = verdict(line, type(line, types[0]), type(line, types[1]), text.substring(arrow + 2).trim());
+        for (int i = 1; i < parts.length; i++) {
+            rule.conditions.add(condition(rule, parts[i].trim()));
+        }
+        return rule;
+    }
+
+    private static Rule verdict(int line, ArtifactType ownedType, ArtifactType newType, String text) {
+        Matcher coin = COIN.matcher(text);
+        if (coin.matches()) {
+            return new Rule(line, ownedType, newType, result(line, coin.group(1)), result(line, coin.group(2)));
+        }
+        return new Rule(line, ownedType, newType, result(line, text), null);
+    }
+
+    private static AnalysisResult result(int line, String text) {
+        for (AnalysisResult result : AnalysisResult.values()) {
+            if (result.name().equals(text)) {
+                return result;
+            }
+        }
+        throw error(line, "Unknown verdict '" + text + "'");
+    }
+
+    private static ArtifactType type(int line, String text) {
+        switch (text) {
+            case "chart":
+                return ArtifactType.STAR_CHART;
+            case "crystal":
+                return ArtifactType.ENERGY_CRYSTAL;
+            case "rock":
+                return ArtifactType.INERT_ROCK;
+            case "*":
+                return null;
+            default:
+                throw error(line, "Unknown artifact type '" + text + "'");
+        }
+    }
+
+    /**
+     * Compiles one condition to a (Artifact, Artifact)boolean handle
+     */
+    private static MethodHandle condition(Rule rule, String text) {
+        Matcher m = COLOR_SET.matcher(text);
+        if (m.matches()) {
+            List<String> colors = new ArrayList<>();
+            for (String color : m.group(3).split(",")) {
+                if (!color.isBlank()) {
+                    colors.add(color.trim());
+                }
+            }
+            MethodHandle member = MethodHandles.insertArguments(handle("isAnyOf", boolean.class, String[].class, String.class),
+                                                                0, (Object) colors.toArray(new String[0]));
+            MethodHandle test = MethodHandles.filterArguments(member, 0, accessor(rule, m.group(1), "color"));
+            return side(m.group(1), m.group(2) != null ? MethodHandles.filterReturnValue(test, handle("not", boolean.class, boolean.class)) : test);
+        }
+        m = TEXT_EQUALITY.matcher(text);
+        if (m.matches()) {
+            if (!m.group(2).equals(m.group(5))) {
+                throw error(rule.line, "Cannot compare " + m.group(2) + " with " + m.group(5));
+            }
+            MethodHandle equal = handle(m.group(3).equals("==") ? "textEquals" : "textDiffers", boolean.class, String.class, String.class);
+            equal = MethodHandles.filterArguments(equal, 0, accessor(rule, m.group(1), m.group(2)), accessor(rule, m.group(4), m.group(5)));
+            return bothSides(equal, m.group(1), m.group(4));
+        }
+        m = COMPARISON.matcher(text);
+        if (m.matches()) {
+            MethodHandle left = operand(rule, m.group(1), m.group(2), m.group(3), m.group(4), m.group(5));
+            MethodHandle right = operand(rule, m.group(7), m.group(8), m.group(9), m.group(10), m.group(11));
+            MethodHandle compare = handle(comparisonName(m.group(6)), boolean.class, int.class, int.class);
+            compare = MethodHandles.collectArguments(MethodHandles.collectArguments(compare, 1, right), 0, left);
+            // (owned, new, owned, new) -> (owned, new)
+            return MethodHandles.permuteArguments(compare, PREDICATE, 0, 1, 0, 1);
+        }
+        throw error(rule.line, "Cannot parse condition '" + text + "'");
+    }
+
+    /**
+     * Compiles an operand to a (Artifact, Artifact)int handle
+     */
+    private static MethodHandle operand(Rule rule, String side, String field, String sign, String offset, String constant) {
+        if (constant != null) {
+            return MethodHandles.dropArguments(MethodHandles.constant(int.class, parseInt(rule, constant)), 0, A, A);
+        }
+        MethodHandle value = accessor(rule, side, field);
+        if (sign != null) {
+            int delta = parseInt(rule, offset);
+            value = MethodHandles.filterReturnValue(value, MethodHandles.insertArguments(
+                handle("plus", int.class, int.class, int.class), 1, sign.equals("+") ? delta : -delta));
+        }
+        return side(side, value);
+    }
+
+    private static int parseInt(Rule rule, String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            throw error(rule.line, "Number out of range: " + text);
+        }
+    }
+
+    /**
+     * Returns a (Artifact) handle reading a field, after checking the rule's pattern guarantees the type
+     */
+    private static MethodHandle accessor(Rule rule, String side, String field) {
+        ArtifactType type = side.equals("owned") ? rule.ownedType : rule.newType;
+        ArtifactType needed;
+        Class<?> valueType = int.class;
+        switch (field) {
+            case "risk":
+            case "sector":
+            case "system":
+                needed = ArtifactType.STAR_CHART;
+                break;
+            case "destination":
+                needed = ArtifactType.STAR_CHART;
+                valueType = String.class;
+                break;
+            case "power":
+                needed = ArtifactType.ENERGY_CRYSTAL;
+                break;
+            default:
+                needed = ArtifactType.INERT_ROCK;
+                valueType = String.class;
+                break;
+        }
+        if (type != needed) {
+            throw error(rule.line, side + "." + field + " needs the " + side + " type to be " + needed);
+        }
+        return handle(field, valueType, A);
+    }
+
+    /**
+     * Widens a one-artifact handle to (owned, new), reading the given side
+     */
+    private static MethodHandle side(String side, MethodHandle handle) {
+        return side.equals("owned") ? MethodHandles.dropArguments(handle, 1, A) : MethodHandles.dropArguments(handle, 0, A);
+    }
+
+    /**
+     * Widens a handle of (left side, right side) to (owned, new)
+     */
+    private static MethodHandle bothSides(MethodHandle handle, String left, String right) {
+        int l = left.equals("owned") ? 0 : 1;
+        int r = right.equals("owned") ? 0 : 1;
+        return MethodHandles.permuteArguments(handle, PREDICATE, l, r);
+    }
+
+    private static String comparisonName(String operator) {
+        switch (operator) {
+            case "<":
+                return "lessThan";
+            case "<=":
+                return "atMost";
+            case ">":
+                return "greaterThan";
+            case ">=":
+                return "atLeast";
+            case "==":
+                return "equal";
+            default:
+                return "notEqual";
+        }
+    }
+
+    private static MethodHandle conjunction(List<MethodHandle> conditions) {
+        MethodHandle all = conditions.get(conditions.size() - 1);
+        MethodHandle no = MethodHandles.dropArguments(MethodHandles.constant(boolean.class, false), 0, A, A);
+        for (int i = conditions.size() - 2; i >= 0; i--) {
+            all = MethodHandles.guardWithTest(conditions.get(i), all, no);
+        }
+        return all;
+    }
+
+    private static MethodHandle verdictHandle(Rule rule) {
+        if (rule.tails == null) {
+            return MethodHandles.dropArguments(MethodHandles.constant(AnalysisResult.class, rule.heads), 0, A, A);
+        }
+        MethodHandle coin = MethodHandles.insertArguments(handle("coin", AnalysisResult.class, AnalysisResult.class, AnalysisResult.class),
+                                                          0, rule.heads, rule.tails);
+        return MethodHandles.dropArguments(coin, 0, A, A);
+    }
+
+    private static MethodHandle handle(String name, Class<?> returnType, Class<?>... parameterTypes) {
+        try {
+            Class<?> owner = name.equals("typePair") ? Artifacts.class : ProtocolRules.class;
+            return LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Missing rule primitive " + name, e);
+        }
+    }
+
+    private static IllegalArgumentException error(int line, String message) {
+        return new IllegalArgumentException("Line " + line + ": " + message);
+    }
+
+    // Primitives the compiled handles are built from
+    static int risk(Artifact artifact) {
+        return ((StarChart) artifact).getRiskFactor();
+    }
+
+    static int sector(Artifact artifact) {
+        return ((StarChart) artifact).getSector();
+    }
+
+    static int system(Artifact artifact) {
+        return ((StarChart) artifact).getSystem();
+    }
+
+    static String destination(Artifact artifact) {
+        return ((StarChart) artifact).getDestination();
+    }
+
+    static int power(Artifact artifact) {
+        return ((EnergyCrystal) artifact).getPowerLevel();
+    }
+
+    static String color(Artifact artifact) {
+        return ((InertRock) artifact).getColor();
+    }
+
+    static int plus(int a, int b) {
+        return a + b;
+    }
+
+    static boolean lessThan(int a, int b) {
+        return a < b;
+    }
+
+    static boolean atMost(int a, int b) {
+        return a <= b;
+    }
+
+    static boolean greaterThan(int a, int b) {
+        return a > b;
+    }
+
+    static boolean atLeast(int a, int b) {
+        return a >= b;
+    }
+
+    static boolean equal(int a, int b) {
+        return a == b;
+    }
+
+    static boolean notEqual(int a, int b) {
+        return a != b;
+    }
+
+    static boolean not(boolean a) {
+        return !a;
+    }
+
+    static boolean textEquals(String a, String b) {
+        return a.equals(b);
+    }
+
+    static boolean textDiffers(String a, String b) {
+        return !a.equals(b);
+    }
+
+    static boolean isAnyOf(String[] set, String text) {
+        for (String member : set) {
+            if (text.equals(member)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static AnalysisResult coin(AnalysisResult heads, AnalysisResult tails) {
+        return Randomness.current().nextBoolean() ? heads : tails;
+    }
+
+    /**
+     * Defines a hidden copy of the Compiled template carrying one protocol's tree
+     */
+    private static Protocol define(MethodHandle analyze, int[] valuableTypes, int randomPairs, String name) {
+        String resource = Compiled.class.getName().substring(Compiled.class.getPackageName().length() + 1) + ".class";
+        try (InputStream in = Compiled.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Cannot find the class file of " + Compiled.class.getName());
+            }
+            byte[] template = in.readAllBytes();
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClassWithClassData(
+                template, List.of(analyze.asType(ANALYSIS), valuableTypes, randomPairs, name), true);
+            return (Protocol) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot define compiled protocol " + name, e);
+        }
+    }
+
+    /**
+     * Template of a compiled protocol. It is never loaded under its own name; every compiled
+     * protocol is a hidden copy whose static finals come from its class data.
+     */
+    static final class Compiled implements Protocol {
+        private static final MethodHandle ANALYZE;        // (Artifact, Artifact)AnalysisResult
+        private static final int[] VALUABLE_TYPES;        // valuableTypes per owned type ordinal
+        private static final int RANDOM_PAIRS;            // Bit per type pair with a coin flip
+        private static final String NAME;
+
+        static {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                ANALYZE = MethodHandles.classDataAt(lookup, "_", MethodHandle.class, 0);
+                VALUABLE_TYPES = MethodHandles.classDataAt(lookup, "_", int[].class, 1);
+                RANDOM_PAIRS = MethodHandles.classDataAt(lookup, "_", Integer.class, 2);
+                NAME = MethodHandles.classDataAt(lookup, "_", String.class, 3);
+            } catch (IllegalAccessException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        @Override
+        public AnalysisResult apply(Artifact ownedArtifact, Artifact newArtifact) {
+            try {
+                return (AnalysisResult) ANALYZE.invokeExact(ownedArtifact, newArtifact);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int valuableTypes(ArtifactType ownedType) {
+            return VALUABLE_TYPES[ownedType.ordinal()];
+        }
+
+        @Override
+        public boolean isDeterministic(Artifact ownedArtifact, Artifact newArtifact) {
+            return (RANDOM_PAIRS >>> Artifacts.typePair(ownedArtifact, newArtifact) & 1) == 0;
+        }
+
+        @Override
+        public String toString() {
+            return NAME;
+        }
+    }
+
+    /**
+     * Compiles a rules file and prints what it can rate VALUABLE, or, without arguments,
+     * checks the built-in protocols written as rules against the hand-written ones and times both.
+     *
+     * @param args Optional rules file
+     */
+    public static void main(String[] args) {
+        try {
+            if (args.length > 0) {
+                Protocol protocol = load(Path.of(args[0]));
+                for (ArtifactType owned : TYPES) {
+                    StringBuilder valuable = new StringBuilder();
+                    for (ArtifactType found : TYPES) {
+                        if ((protocol.valuableTypes(owned) & Artifacts.typeBit(found)) != 0) {
+                            valuable.append(' ').append(found);
+                        }
+                    }
+                    System.out.println(protocol + ": holding " + owned + " may value" + (valuable.length() == 0 ? " nothing" : valuable));
+                }
+                return;
+            }
+            Protocol rational = compile("rational", RATIONAL_RULES);
+            Protocol riskTaker = compile("riskTaker", RISK_TAKER_RULES);
+            SplittableRandom random = new SplittableRandom(1110L);
+            Artifact[] owned = ArtifactBenchmark.mixedInputs(random);
+            Artifact[] found = ArtifactBenchmark.mixedInputs(random);
+            for (int i = 0; i < owned.length; i++) {
+                boolean coin = !riskTaker.isDeterministic(owned[i], found[i]);
+                if (rational.apply(owned[i], found[i]) != Artifacts.RATIONAL_PROTOCOL.analyze(owned[i], found[i], OutputLevel.SILENT)
+                    || (!coin && riskTaker.apply(owned[i], found[i]) != Artifacts.RISK_TAKER_PROTOCOL.apply(owned[i], found[i]))) {
+                    System.out.println("Error: compiled rules disagree with the protocol for "
+                                       + Artifacts.describeArtifact(owned[i]) + " / " + Artifacts.describeArtifact(found[i]));
+                    return;
+                }
+            }
+            for (ArtifactType type : TYPES) {
+                if (rational.valuableTypes(type) != Artifacts.RATIONAL_PROTOCOL.valuableTypes(type)
+                    || riskTaker.valuableTypes(type) != Artifacts.RISK_TAKER_PROTOCOL.valuableTypes(type)) {
+                    System.out.println("Error: compiled rules disagree with the protocol on what " + type + " holders value");
+                    return;
+                }
+            }
+            System.out.println("Compiled rules match the built-in protocols on " + owned.length + " pairs");
+            ArtifactBenchmark.Operation[] versions = {
+                (i, level) -> Artifacts.RATIONAL_PROTOCOL.analyze(owned[i], found[i], level).ordinal(),
+                (i, level) -> rational.analyze(owned[i], found[i], level).ordinal(),
+                (i, level) -> Artifacts.RISK_TAKER_PROTOCOL.analyze(owned[i], found[i], level).ordinal(),
+                (i, level) -> riskTaker.analyze(owned[i], found[i], level).ordinal()
+            };
+            double[] nanos = new double[versions.length];
+            for (int round = 0; round < 5; round++) {
+                for (int v = 0; v < versions.length; v++) {
+                    nanos[v] = ArtifactBenchmark.nanosPerOp(versions[v], OutputLevel.SILENT, 20_000_000L);
+                }
+                System.out.println(String.format("Round %d: rational %.2f -> %.2f ns/call, risk-taker %.2f -> %.2f ns/call",
+                                                 round + 1, nanos[0], nanos[1], nanos[2], nanos[3]));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package src;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+/**
+ * The single source of randomness for every stochastic decision in the simulation: the
+ * risk-taker's coin flip between differently colored rocks and the hazardous-item decision
+ * in {@link Artifacts#exploreAsteroid}.
+ *
+ * Each thread draws from its own generator, so decisions never contend on shared state and
+ * never allocate. By default a thread's generator is split off a root seed, which can be
+ * injected with {@link #setRootSeed} (or the {@code artifacts.seed} system property) to make
+ * single-threaded runs reproducible. Parallel runs become reproducible by giving every
+ * independent unit of work - a scavenger, a log chunk, a trial - its own stream from
+ * {@link #forUnit} and binding it to the worker thread while that unit runs, so results no
+ * longer depend on which thread picked up which unit.
+ */
+final class Randomness {
+
+    static final String SEED_PROPERTY = "artifacts.seed";   // System property overriding the initial root seed
+
+    /**
+     * A thread's generators: the one bound by the caller, if any, and its default one.
+     */
+    private static final class Slot {
+        RandomGenerator bound;         // Generator bound for the current unit of work, or null
+        SplittableRandom fallback;     // Default generator split off the root seed
+        long generation = -1;          // Root seed generation the default generator was derived from
+    }
+
+    private static volatile long rootSeed = initialSeed();
+    private static volatile long generation;                          // Bumped on every root seed change
+    private static final AtomicLong THREAD_STREAMS = new AtomicLong(); // Default streams handed out so far
+
+    private static final ThreadLocal<Slot> CURRENT = ThreadLocal.withInitial(Slot::new);
+
+    private Randomness() {
+    }
+
+    /** @return The root seed that default per-thread generators are derived from */
+    static long getRootSeed() {
+        return rootSeed;
+    }
+
+    /**
+     * Replaces the root seed. Every thread's default generator is re-derived from the new seed
+     * on its next decision, in the order threads first draw from it; bound generators are
+     * left alone.
+     * @param seed The new root seed
+     */
+    static synchronized void setRootSeed(long seed) {
+        rootSeed = seed;
+        THREAD_STREAMS.set(0);
+        generation++;
+    }
+
+    /**
+     * Returns the generator that the calling thread's decisions are drawn from
+     * @return The bound generator, or the thread's default generator if none is bound
+     */
+    static RandomGenerator current() {
+        Slot slot = CURRENT.get();
+        if (slot.bound != null) {
+            return slot.bound;
+        }
+        long currentGeneration = generation;
+        if (slot.generation != currentGeneration) {
+            slot.fallback = new SplittableRandom(unitSeed(rootSeed, THREAD_STREAMS.getAndIncrement()));
+            slot.generation = currentGeneration;
+        }
+        return slot.fallback;
+    }
+
+    /**
+     * Binds a generator to the calling thread, so that every decision made on this thread
+     * draws from it until it is replaced or unbound.
+     * @param generator The generator to bind, or null to return to the thread's default generator
+     * @return The previously bound generator (null if none), for restoring afterwards
+     */
+    static RandomGenerator bind(RandomGenerator generator) {
+        Slot slot = CURRENT.get();
+        RandomGenerator previous = slot.bound;
+        slot.bound = generator;
+        return previous;
+    }
+
+    /**
+     * Creates the generator for one independent unit of work, derived from the current root seed
+     * @param unit Stable identifier of the unit, e.g. a scavenger's position in its fleet
+     * @return A generator that depends only on the root seed and the unit
+     */
+    static SplittableRandom forUnit(long unit) {
+        return forUnit(rootSeed, unit);
+    }
+
+    /**
+     * Creates the generator for one independent unit of work
+     * @param seed Root seed of the run
+     * @param unit Stable identifier of the unit, e.g. a scavenger's position in its fleet
+     * @return A generator that depends only on the seed and the unit
+     */
+    static SplittableRandom forUnit(long seed, long unit) {
+        return new SplittableRandom(unitSeed(seed, unit));
+    }
+
+    /**
+     * Derives a unit's seed from a root seed (the SplitMix64 finalizer, so neighboring units
+     * get unrelated streams)
+     */
+    static long unitSeed(long seed, long unit) {
+        long z = seed + (unit + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long initialSeed() {
+        String property = System.getProperty(SEED_PROPERTY);
+        if (property != null) {
+            try {
+                return Long.parseLong(property.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid " + SEED_PROPERTY + ": " + property, e);
+            }
+        }
+        return System.nanoTime() ^ System.currentTimeMillis() * 0x9E3779B97F4A7C15L;
+    }
+}
@@ -0,0 +1,255 @@
+package src;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A thread-safe dictionary that assigns stable int ids to strings such as star chart
+ * destinations and rock colors.
+ *
+ * Symbols can be looked up either by String or directly by their UTF-8 bytes, so a parser
+ * working on a byte buffer gets back the canonical String without decoding a new one.
+ * Lookups never lock; only the first sighting of a new symbol takes the table's monitor.
+ */
+final class SymbolTable {
+
+    static final int NOT_FOUND = -1;   // Returned when a symbol is absent or the table is full
+
+    /**
+     * Immutable-capacity snapshot of the table. A new snapshot is published whenever the
+     * table grows; entries are only ever appended.
+     */
+    private static final class State {
+        final AtomicIntegerArray slots;  // Open-addressed hash slots holding id + 1 (0 = empty)
+        final String[] symbols;          // Symbol text indexed by id
+        final byte[][] bytes;            // UTF-8 encoding of each symbol indexed by id
+        final int[] hashes;              // Hash of each symbol's bytes indexed by id
+
+        State(int slotCount, int capacity) {
+            this.slots = new AtomicIntegerArray(slotCount);
+            this.symbols = new String[capacity];
+            this.bytes = new byte[capacity][];
+            this.hashes = new int[capacity];
+        }
+    }
+
+    private static final int RECENT = 256;   // Entries in the cache of recently interned String instances
+
+    /**
+     * A String instance and its id. Immutable, so the cache array can be read and written
+     * without locking.
+     */
+    private static final class Recent {
+        final String text;
+        final int id;
+
+        Recent(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+    }
+
+    private final Recent[] recent = new Recent[RECENT];   // Direct-mapped on String.hashCode, matched by identity
+    private final int maxSymbols;      // Hard limit on the number of distinct symbols
+    private volatile State state;      // Current snapshot, replaced on growth
+    private int size;                  // Number of symbols, only touched under the monitor
+
+    /**
+     * Constructs an empty symbol table
+     * @param maxSymbols Maximum number of distinct symbols the table will hold
+     */
+    SymbolTable(int maxSymbols) {
+        if (maxSymbols < 1) {
+            throw new IllegalArgumentException("Symbol table must hold at least one symbol");
+        }
+        this.maxSymbols = maxSymbols;
+        this.state = new State(64, 32);
+    }
+
+    /** @return The number of symbols currently in the table */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the text of a symbol
+     * @param id The symbol id
+     * @return The canonical String for the id
+     */
+    String symbol(int id) {
+        return state.symbols[id];
+    }
+
+    /**
+     * Finds or adds the symbol encoded by a slice of UTF-8 bytes.
+     *
+     * @param buf Buffer holding the bytes (its position and limit are not used or changed)
+     * @param off Absolute index of the first byte
+     * @param len Number of bytes
+     * @return The symbol id, or NOT_FOUND if the symbol is new and the table is full
+     */
+    int intern(ByteBuffer buf, int off, int len) {
+        int hash = hash(buf, off, len);
+        int id = find(state, buf, off, len, hash);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        byte[] copy = new byte[len];
+        buf.get(off, copy, 0, len);
+        return add(copy, hash, null);
+    }
+
+    /**
+     * Finds or adds a symbol by its text
+     * @param s The symbol text
+     * @return The symbol id, or NOT_FOUND if the symbol is new and the table is full
+     */
+    int intern(String s) {
+        // Callers mostly pass the same few String instances (constants, or symbols this table returned)
+        int stringHash = s.hashCode();
+        Recent seen = recent[stringHash & (RECENT - 1)];
+        if (seen != null && seen.text == s) {
+            return seen.id;
+        }
+        // For ASCII text the byte hash equals String.hashCode, which the String caches
+        int id = find(state, s, stringHash);
+        if (id == NOT_FOUND) {
+            byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer view = ByteBuffer.wrap(encoded);
+            int hash = hash(view, 0, encoded.length);
+            id = find(state, view, 0, encoded.length, hash);
+            if (id == NOT_FOUND) {
+                id = add(encoded, hash, s);
+            }
+        }
+        if (id != NOT_FOUND) {
+            recent[stringHash & (RECENT - 1)] = new Recent(s, id);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a symbol under the table's monitor, re-checking for a concurrent insertion first.
+     */
+    private synchronized int add(byte[] encoded, int hash, String text) {
+        State current = state;
+        ByteBuffer view = ByteBuffer.wrap(encoded);
+        int id = find(current, view, 0, encoded.length, hash);
+        if (id != NOT_FOUND) {
+            return id;
+        }
+        if (size >= maxSymbols) {
+            return NOT_FOUND;
+        }
+        if (size == current.symbols.length || (size + 1) * 2 > current.slots.length()) {
+            current = grow(current);
+        }
+        id = size;
+        current.symbols[id] = text != null ? text : new String(encoded, StandardCharsets.UTF_8);
+        current.bytes[id] = encoded;
+        current.hashes[id] = hash;
+        size++;
+        // Publishing the slot makes the entry visible to lock-free readers
+        current.slots.set(slotFor(current, hash), id + 1);
+        return id;
+    }
+
+    /**
+     * Builds and publishes a snapshot with twice the capacity of the given one.
+     */
+    private State grow(State old) {
+        State next = new State(old.slots.length() * 2, old.symbols.length * 2);
+        System.arraycopy(old.symbols, 0, next.symbols, 0, size);
+        System.arraycopy(old.bytes, 0, next.bytes, 0, size);
+        System.arraycopy(old.hashes, 0, next.hashes, 0, size);
+        for (int id = 0; id < size; id++) {
+            next.slots.set(slotFor(next, next.hashes[id]), id + 1);
+        }
+        state = next;
+        return next;
+    }
+
+    /**
+     * Returns the first empty slot in the probe sequence for a hash.
+     */
+    private static int slotFor(State s, int hash) {
+        int mask = s.slots.length() - 1;
+        int i = mix(hash) & mask;
+        while (s.slots.get(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Looks up a byte slice in a snapshot without locking.
+     */
+    private static int find(State s, ByteBuffer buf, int off, int len, int hash) {
+        int mask = s.slots.length() - 1;
+        int i = mix(hash) & mask;
+        int slot;
+        while ((slot = s.slots.get(i)) != 0) {
+            int id = slot - 1;
+            if (s.hashes[id] == hash && sameBytes(s.bytes[id], buf, off, len)) {
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Looks up a String without encoding it. Only finds ASCII symbols; anything else is left
+     * to the byte lookup.
+     */
+    private static int find(State s, String text, int hash) {
+        int mask = s.slots.length() - 1;
+        int i = mix(hash) & mask;
+        int slot;
+        while ((slot = s.slots.get(i)) != 0) {
+            int id = slot - 1;
+            if (s.hashes[id] == hash && sameChars(s.bytes[id], text)) {
+                return id;
+            }
+            i = (i + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    private static boolean sameChars(byte[] stored, String text) {
+        if (stored.length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < stored.length; i++) {
+            if (stored[i] != text.charAt(i)) {   // Bytes of multi-byte characters are negative and never match
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameBytes(byte[] stored, ByteBuffer buf, int off, int len) {
+        if (stored.length != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (stored[i] != buf.get(off + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buf, int off, int len) {
+        int h = 0;
+        for (int i = 0; i < len; i++) {
+            h = 31 * h + buf.get(off + i);
+        }
+        return h;
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+}
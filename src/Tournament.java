@@ -0,0 +1,441 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.random.RandomGenerator;
+
+import src.Artifacts.AnalysisResult;
+import src.Artifacts.Artifact;
+import src.Artifacts.ArtifactType;
+import src.Artifacts.OutputLevel;
+import src.Artifacts.Protocol;
+import src.Artifacts.Scavenger;
+
+/**
+ * Round-robin trading tournament: finds, for every pair of scavengers in a fleet, whether
+ * they would trade at a starport, i.e. whether each one's protocol rates the other's cargo
+ * VALUABLE (see {@link Artifacts#tradeAtStarport}). Cargo is taken from a snapshot and never
+ * changes hands, so the outcome of every pair is independent of every other.
+ *
+ * Trying all n(n-1)/2 pairs is hopeless for large fleets, and most of them are doomed by
+ * their artifact types alone. The tournament therefore groups scavengers with the same
+ * protocol and equal cargo, and buckets the groups by protocol and cargo type. Two buckets
+ * are only compared if each side's protocol could value the other's cargo type
+ * ({@link Protocol#valuableTypes}); everything else is pruned without running a protocol.
+ * Within viable buckets, a pair of groups whose verdicts are deterministic
+ * ({@link Protocol#isDeterministic}) is decided by one trade evaluation, however many members
+ * the groups have. Only pairs involving chance, such as two risk-takers holding rocks of
+ * different colors, are evaluated member by member.
+ *
+ * Each such pair draws from its own generator, seeded from the pair's position in the fleet,
+ * so results do not depend on the grouping, the evaluation order or the number of threads,
+ * and match {@link #runExhaustive} exactly.
+ */
+final class Tournament {
+
+    private static final int TYPES = ArtifactType.values().length;
+
+    /**
+     * Outcome of a tournament.
+     */
+    static final class Result {
+        final long pairs;             // Pairs of scavengers in the fleet
+        final long viablePairs;       // Pairs left after pruning by type
+        final long evaluations;       // Protocol analyses run
+        final long chancePairs;       // Viable pairs that had to be evaluated one by one
+        final long mutualPairs;       // Pairs that would trade
+        private final long[] partners;   // Number of willing partners of each scavenger
+
+        Result(long pairs, long viablePairs, long evaluations, long chancePairs, long mutualPairs, long[] partners) {
+            this.pairs = pairs;
+            this.viablePairs = viablePairs;
+            this.evaluations = evaluations;
+            this.chancePairs = chancePairs;
+            this.mutualPairs = mutualPairs;
+            this.partners = partners;
+        }
+
+        /** @return Number of scavengers the i-th scavenger of the fleet would trade with */
+        long partners(int i) {
+            return partners[i];
+        }
+
+        /** @return true if both results found the same partners for every scavenger */
+        boolean samePartners(Result other) {
+            return Arrays.equals(partners, other.partners);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pairs=%d, viable=%d (%.2f%%), one by one=%d, analyses=%d, trading pairs=%d",
+                                 pairs, viablePairs, pairs == 0 ? 0.0 : 100.0 * viablePairs / pairs,
+                                 chancePairs, evaluations, mutualPairs);
+        }
+    }
+
+    /**
+     * Scavengers sharing a protocol and an equal cargo.
+     */
+    private static final class Group {
+        final BiFunction<Artifact, Artifact, AnalysisResult> protocol;
+        final Artifact cargo;          // Cargo of the first member, standing for all of them
+        final int bucket;              // protocol index * TYPES + cargo type ordinal
+        int[] members = new int[4];    // Fleet indexes, ascending
+        int size;
+
+        Group(BiFunction<Artifact, Artifact, AnalysisResult> protocol, Artifact cargo, int bucket) {
+            this.protocol = protocol;
+            this.cargo = cargo;
+            this.bucket = bucket;
+        }
+
+        void add(int member) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size * 2);
+            }
+            members[size++] = member;
+        }
+    }
+
+    /**
+     * Generator reseeded for every pair, so a pair's coin flips depend only on the pair.
+     */
+    private static final class PairRandom implements RandomGenerator {
+        private long state;
+
+        void reseed(long seed, int a, int b, int fleetSize) {
+            state = Randomness.unitSeed(seed, (long) a * fleetSize + b);
+        }
+
+        @Override
+        public long nextLong() {
+            long z = (state += 0x9E3779B97F4A7C15L);
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+
+    private final Scavenger[] fleet;
+    private final long seed;                  // Root seed of the pairs' generators
+    private final Artifact[] cargo;           // Snapshot of every scavenger's cargo
+    private final List<Group> groups = new ArrayList<>();
+    private final int[] groupOf;              // Group of each scavenger
+    private final List<List<Integer>> buckets = new ArrayList<>();   // Group indexes in each bucket
+    private final int[] bucketWants;          // Cargo types each bucket's protocol could value
+    private final long[] bucketSize;          // Scavengers in each bucket
+
+    /**
+     * Takes a snapshot of a fleet's cargo and groups its scavengers
+     * @param fleet The fleet
+     * @param seed Root seed for the decisions that involve chance
+     */
+    Tournament(Scavenger[] fleet, long seed) {
+        this.fleet = fleet;
+        this.seed = seed;
+        this.cargo = new Artifact[fleet.length];
+        this.groupOf = new int[fleet.length];
+        Map<BiFunction<Artifact, Artifact, AnalysisResult>, Integer> protocols = new IdentityHashMap<>();
+        Map<String, Integer> groupIds = new HashMap<>();
+        for (int i = 0; i < fleet.length; i++) {
+            BiFunction<Artifact, Artifact, AnalysisResult> protocol = fleet[i].getPersonalProtocol();
+            cargo[i] = fleet[i].getCargo();
+            Integer p = protocols.get(protocol);
+            if (p == null) {
+                p = protocols.size();
+                protocols.put(protocol, p);
+            }
+            String key = p + "|" + Artifacts.describeArtifact(cargo[i]);
+            Integer g = groupIds.get(key);
+            if (g == null) {
+                g = groups.size();
+                groupIds.put(key, g);
+                groups.add(new Group(protocol, cargo[i], p * TYPES + cargo[i].getType().ordinal()));
+            }
+            groups.get(g).add(i);
+            groupOf[i] = g;
+        }
+        int bucketCount = protocols.size() * TYPES;
+        bucketWants = new int[bucketCount];
+        bucketSize = new long[bucketCount];
+        for (int b = 0; b < bucketCount; b++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (Map.Entry<BiFunction<Artifact, Artifact, AnalysisResult>, Integer> protocol : protocols.entrySet()) {
+            for (ArtifactType type : ArtifactType.values()) {
+                bucketWants[protocol.getValue() * TYPES + type.ordinal()] = Artifacts.valuableTypes(protocol.getKey(), type);
+            }
+        }
+        for (int g = 0; g < groups.size(); g++) {
+            Group group = groups.get(g);
+            buckets.get(group.bucket).add(g);
+            bucketSize[group.bucket] += group.size;
+        }
+    }
+
+    /**
+     * Tells whether two buckets' scavengers could ever rate each other's cargo VALUABLE
+     */
+    private boolean viable(int a, int b) {
+        return (bucketWants[a] & 1 << b % TYPES) != 0 && (bucketWants[b] & 1 << a % TYPES) != 0;
+    }
+
+    /**
+     * Runs the tournament, evaluating only pairs that type pruning leaves viable
+     * @param pool The pool to evaluate groups on
+     * @return The outcome
+     */
+    Result run(ForkJoinPool pool) {
+        long viablePairs = 0;
+        for (int a = 0; a < buckets.size(); a++) {
+            for (int b = a; b < buckets.size(); b++) {
+                if (viable(a, b)) {
+                    viablePairs += a == b ? bucketSize[a] * (bucketSize[a] - 1) / 2 : bucketSize[a] * bucketSize[b];
+                }
+            }
+        }
+        Totals totals = new Totals(groups.size());
+        pool.invoke(new Rows(0, groups.size(), totals, false));
+        long[] partners = new long[fleet.length];
+        for (int i = 0; i < fleet.length; i++) {
+            partners[i] = totals.groupPartners.get(groupOf[i]) + totals.memberPartners.get(i);
+        }
+        return new Result(pairs(), viablePairs, totals.evaluations.sum(), totals.evaluatedPairs.sum(),
+                          totals.mutualPairs.sum(), partners);
+    }
+
+    /**
+     * Runs the tournament the slow way, evaluating every pair of scavengers
+     * @param pool The pool to evaluate rows on
+     * @return The outcome
+     */
+    Result runExhaustive(ForkJoinPool pool) {
+        Totals totals = new Totals(0);
+        pool.invoke(new Rows(0, fleet.length, totals, true));
+        long[] partners = new long[fleet.length];
+        for (int i = 0; i < fleet.length; i++) {
+            partners[i] = totals.memberPartners.get(i);
+        }
+        return new Result(pairs(), pairs(), totals.evaluations.sum(), totals.evaluatedPairs.sum(),
+                          totals.mutualPairs.sum(), partners);
+    }
+
+    private long pairs() {
+        return (long) fleet.length * (fleet.length - 1) / 2;
+    }
+
+    /**
+     * Counters shared by every task of a run.
+     */
+    private final class Totals {
+        final LongAdder evaluations = new LongAdder();
+        final LongAdder evaluatedPairs = new LongAdder();   // Pairs of scavengers evaluated individually
+        final LongAdder mutualPairs = new LongAdder();
+        final AtomicLongArray groupPartners;     // Partners every member of a group has, from whole-group verdicts
+        final AtomicLongArray memberPartners = new AtomicLongArray(fleet.length);   // Partners from single pairs
+
+        Totals(int groups) {
+            groupPartners = new AtomicLongArray(groups);
+        }
+    }
+
+    /**
+     * Evaluates one trade from the snapshot as tradeAtStarport would decide it, running both
+     * analyses even when the first already rules the trade out, so the same coin flips are drawn
+     * @return true if both sides rate the other's cargo VALUABLE
+     */
+    private static boolean trades(BiFunction<Artifact, Artifact, AnalysisResult> protocolA, Artifact cargoA,
+                                  BiFunction<Artifact, Artifact, AnalysisResult> protocolB, Artifact cargoB) {
+        AnalysisResult aOfB = Artifacts.analyze(protocolA, cargoA, cargoB, OutputLevel.SILENT);
+        AnalysisResult bOfA = Artifacts.analyze(protocolB, cargoB, cargoA, OutputLevel.SILENT);
+        return aOfB == AnalysisResult.VALUABLE && bOfA == AnalysisResult.VALUABLE;
+    }
+
+    private static boolean deterministic(BiFunction<Artifact, Artifact, AnalysisResult> protocol, Artifact owned, Artifact other) {
+        return protocol instanceof Protocol && ((Protocol) protocol).isDeterministic(owned, other);
+    }
+
+    /**
+     * Evaluates a group against itself and every later group in a viable bucket
+     */
+    private void evaluateGroup(int g1, Totals totals, PairRandom random) {
+        Group a = groups.get(g1);
+        for (int bucket = 0; bucket < buckets.size(); bucket++) {
+            if (!viable(a.bucket, bucket)) {
+                continue;
+            }
+            for (int g2 : buckets.get(bucket)) {
+                if (g2 < g1) {
+                    continue;                              // That pair belongs to the earlier group's task
+                }
+                Group b = groups.get(g2);
+                if (g1 == g2 && a.size < 2) {
+                    continue;
+                }
+                if (deterministic(a.protocol, a.cargo, b.cargo) && deterministic(b.protocol, b.cargo, a.cargo)) {
+                    totals.evaluations.add(2);
+                    if (trades(a.protocol, a.cargo, b.protocol, b.cargo)) {
+                        if (g1 == g2) {
+                            totals.groupPartners.addAndGet(g1, a.size - 1);
+                            totals.mutualPairs.add((long) a.size * (a.size - 1) / 2);
+                        } else {
+                            totals.groupPartners.addAndGet(g1, b.size);
+                            totals.groupPartners.addAndGet(g2, a.size);
+                            totals.mutualPairs.add((long) a.size * b.size);
+                        }
+                    }
+                } else {
+                    evaluateMembers(a, b, g1 == g2, totals, random);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates every member pair of two groups whose verdicts may involve chance
+     */
+    private void evaluateMembers(Group a, Group b, boolean same, Totals totals, PairRandom random) {
+        long pairs = 0;
+        long mutual = 0;
+        for (int x = 0; x < a.size; x++) {
+            int ax = a.members[x];
+            long partners = 0;        // Of ax, added once per row
+            for (int y = same ? x + 1 : 0; y < b.size; y++) {
+                int by = b.members[y];
+                // Evaluate in fleet order, exactly as the exhaustive run does
+                int i = Math.min(ax, by);
+                int j = Math.max(ax, by);
+                random.reseed(seed, i, j, fleet.length);
+                if (trades(fleet[i].getPersonalProtocol(), cargo[i], fleet[j].getPersonalProtocol(), cargo[j])) {
+                    partners++;
+                    totals.memberPartners.incrementAndGet(by);
+                }
+            }
+            pairs += same ? a.size - x - 1 : b.size;
+            mutual += partners;
+            totals.memberPartners.addAndGet(ax, partners);
+        }
+        totals.evaluations.add(2 * pairs);
+        totals.evaluatedPairs.add(pairs);
+        totals.mutualPairs.add(mutual);
+    }
+
+    /**
+     * Evaluates every later scavenger against each scavenger of a range, ignoring groups
+     */
+    private void evaluateScavengers(int from, int to, Totals totals, PairRandom random) {
+        for (int i = from; i < to; i++) {
+            long partners = 0;
+            for (int j = i + 1; j < fleet.length; j++) {
+                random.reseed(seed, i, j, fleet.length);
+                if (trades(fleet[i].getPersonalProtocol(), cargo[i], fleet[j].getPersonalProtocol(), cargo[j])) {
+                    partners++;
+                    totals.memberPartners.incrementAndGet(j);
+                }
+            }
+            totals.memberPartners.addAndGet(i, partners);
+            totals.evaluations.add(2L * (fleet.length - i - 1));
+            totals.evaluatedPairs.add(fleet.length - i - 1);
+            totals.mutualPairs.add(partners);
+        }
+    }
+
+    /**
+     * Fork/join task that splits a range of rows (groups, or scavengers in an exhaustive run)
+     * down to single rows.
+     */
+    @SuppressWarnings("serial")   // Fork/join tasks are never serialized
+    private final class Rows extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final Totals totals;
+        private final boolean exhaustive;
+
+        Rows(int from, int to, Totals totals, boolean exhaustive) {
+            this.from = from;
+            this.to = to;
+            this.totals = totals;
+            this.exhaustive = exhaustive;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Rows(from, mid, totals, exhaustive), new Rows(mid, to, totals, exhaustive));
+                return;
+            }
+            PairRandom random = new PairRandom();
+            RandomGenerator previous = Randomness.bind(random);   // Protocols draw from it
+            try {
+                if (exhaustive) {
+                    evaluateScavengers(from, to, totals, random);
+                } else {
+                    for (int g = from; g < to; g++) {
+                        evaluateGroup(g, totals, random);
+                    }
+                }
+            } finally {
+                Randomness.bind(previous);
+            }
+        }
+    }
+
+    private static final int EXHAUSTIVE_LIMIT = 20_000;   // Largest fleet main checks exhaustively
+
+    /**
+     * Runs a tournament on a mixed fleet that has explored a few rounds of asteroids, and
+     * checks it against the exhaustive tournament of a prefix of the fleet.
+     *
+     * @param args Fleet size, optionally followed by rounds explored first and a seed
+     */
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 3) {
+            System.out.println("Usage: java src.Tournament <scavengers> [rounds explored first] [seed]");
+            return;
+        }
+        try {
+            int size = Integer.parseInt(args[0]);
+            int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+            long seed = args.length > 2 ? Long.parseLong(args[2]) : 1110L;
+            Scavenger[] fleet = FleetSimulation.mixedFleet(size, Artifacts.makeStarChart("Alpha Centauri", 5, 3, 7),
+                                                           Artifacts.makeInertRock("red"));
+            if (rounds > 0) {
+                new FleetSimulation(fleet, FleetSimulation.MIXED_FIELD, seed, 1).runParallel(rounds, ForkJoinPool.commonPool());
+            }
+
+            long t0 = System.nanoTime();
+            Tournament tournament = new Tournament(fleet, seed);
+            Result pruned = tournament.run(ForkJoinPool.commonPool());
+            long t1 = System.nanoTime();
+            System.out.println(String.format("Pruned tournament of %d scavengers (%d groups): %s", size,
+                                             tournament.groups.size(), pruned));
+            System.out.println(String.format("  %.3f s", (t1 - t0) / 1e9));
+
+            // The exhaustive run is quadratic, so check it on a prefix and extrapolate its time
+            int checked = Math.min(size, EXHAUSTIVE_LIMIT);
+            Scavenger[] prefix = Arrays.copyOf(fleet, checked);
+            Result small = new Tournament(prefix, seed).run(ForkJoinPool.commonPool());
+            long t2 = System.nanoTime();
+            Result exhaustive = new Tournament(prefix, seed).runExhaustive(ForkJoinPool.commonPool());
+            long t3 = System.nanoTime();
+            double scale = (double) size * (size - 1) / ((double) checked * (checked - 1));
+            System.out.println(String.format("Exhaustive tournament of the first %d: %s", checked, exhaustive));
+            System.out.println(String.format("  %.3f s, about %.1f s for the whole fleet (%.0fx the pruned run)",
+                                             (t3 - t2) / 1e9, (t3 - t2) / 1e9 * scale, (t3 - t2) * scale / (t1 - t0)));
+            System.out.println("Pruned and exhaustive runs agree: "
+                               + (small.mutualPairs == exhaustive.mutualPairs && small.samePartners(exhaustive)));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+}